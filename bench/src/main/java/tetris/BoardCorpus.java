@@ -0,0 +1,150 @@
+package tetris;
+
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import tetris.Piece.PieceType;
+
+/**
+ * Mid-game boards recorded from the default brain's own seeded games, so the benchmarks measure the engine on the
+ * stacks it really sees instead of on empty or random boards. Each board is written as one line,
+ * <pre>piece|held piece or -|x,y|rows</pre>
+ * where the piece has just spawned at x,y and the rows run from the bottom up to the top of the stack, each cell
+ * being '.' or the ordinal of the piece type that filled it, rows separated by '/'.
+ * Usage: BoardCorpus [file] [games] [every n pieces] [pieces per game]
+ */
+public class BoardCorpus {
+    public static final String RESOURCE = "boards.txt";
+    // The trainer's default BOARD_PERCENTAGE, repeated so recording does not load JTetrisBrainTrainer and Swing
+    private static final double BOARD_PERCENTAGE = 0.75;
+
+    private List<String> lines = new ArrayList<>();
+    private List<TetrisBoard> boards = new ArrayList<>();
+
+    /**
+     * Plays seeded games with the default weights and keeps a board every few pieces, skipping each game's opening
+     * @param games, the number of games, on seeds 1 to games
+     * @param every, the number of pieces between two recorded boards
+     * @param pieces, the number of pieces to play per game at most
+     * @return the recorded corpus
+     */
+    public static BoardCorpus record(int games, int every, int pieces) {
+        BoardCorpus corpus = new BoardCorpus();
+        double[] weights = new TetrisBrain().getPopulation()[0].getWeights();
+        for (long seed = 1; seed <= games; seed++) {
+            HeadlessTetris tetris = new HeadlessTetris(weights, seed, BOARD_PERCENTAGE);
+            tetris.startGame();
+            for (int placed = every; placed <= pieces && tetris.playUntil(placed); placed += every) {
+                if (tetris.getBoard().getCurrentPiece() != null) corpus.add(encode(tetris.getBoard()));
+            }
+        }
+        return corpus;
+    }
+
+    /**
+     * Loads the corpus shipped with the benchmarks
+     * @return the corpus
+     * @throws IOException if the resource is missing or cannot be read
+     */
+    public static BoardCorpus load() throws IOException {
+        InputStream in = BoardCorpus.class.getResourceAsStream(RESOURCE);
+        if (in == null) throw new IOException("missing resource " + RESOURCE + ", run BoardCorpus to record it");
+        BoardCorpus corpus = new BoardCorpus();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isEmpty() && !line.startsWith("#")) corpus.add(line);
+            }
+        }
+        return corpus;
+    }
+
+    private void add(String line) {
+        lines.add(line);
+        boards.add(decode(line));
+    }
+
+    /**
+     * Writes the board the way it is stored in the corpus
+     * @param board, a board with a freshly spawned piece
+     * @return the line
+     */
+    public static String encode(TetrisBoard board) {
+        StringBuilder line = new StringBuilder();
+        line.append(board.getCurrentPiece().getType().ordinal()).append('|');
+        line.append(board.getHeldPieceType() == null ? "-" : String.valueOf(board.getHeldPieceType().ordinal())).append('|');
+        Point location = board.getCurrentPiecePosition();
+        line.append(location.x).append(',').append(location.y).append('|');
+        for (int y = 0; y < board.getMaxHeight(); y++) {
+            if (y > 0) line.append('/');
+            for (int x = 0; x < board.getWidth(); x++) {
+                PieceType type = board.getGrid(x, y);
+                line.append(type == null ? '.' : (char)('0' + type.ordinal()));
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Rebuilds a board from its line. Scores and cleared rows are not kept, since no board operation depends on them.
+     * @param line, a line written by encode
+     * @return the board, with its piece spawned where it was recorded
+     */
+    public static TetrisBoard decode(String line) {
+        String[] fields = line.split("\\|", -1);
+        PieceType[] types = PieceType.values();
+        TetrisBoard board = new TetrisBoard(JTetris.WIDTH, JTetris.HEIGHT + JTetris.TOP_SPACE);
+
+        PieceType[][] grid = new PieceType[board.getWidth()][board.getHeight()];
+        String[] rows = fields[3].isEmpty() ? new String[0] : fields[3].split("/");
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < board.getWidth(); x++) {
+                char cell = rows[y].charAt(x);
+                if (cell != '.') grid[x][y] = types[cell - '0'];
+            }
+        }
+        board.setGrid(grid);
+        if (!fields[1].equals("-")) board.setHeldPieceType(types[Integer.parseInt(fields[1])]);
+
+        String[] location = fields[2].split(",");
+        board.nextPiece(TetrisPiece.getPiece(types[Integer.parseInt(fields[0])]),
+                new Point(Integer.parseInt(location[0]), Integer.parseInt(location[1])));
+        return board;
+    }
+
+    /**
+     * Fetches the boards; callers that change a board must clone it first
+     * @return the boards in recorded order
+     */
+    public List<TetrisBoard> getBoards() { return boards; }
+
+    public int size() { return boards.size(); }
+
+    public static void main(String[] args) throws IOException {
+        String file = args.length > 0 ? args[0] : "bench/src/main/resources/tetris/" + RESOURCE;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int every = args.length > 2 ? Integer.parseInt(args[2]) : 37;
+        int pieces = args.length > 3 ? Integer.parseInt(args[3]) : 1500;
+
+        BoardCorpus corpus = record(games, every, pieces);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("# " + corpus.size() + " boards: default TetrisBrain() weights, seeds 1-" + games + ", every "
+                    + every + " pieces up to " + pieces + ", height " + BOARD_PERCENTAGE);
+            for (String line : corpus.lines) writer.println(line);
+        }
+        int total = 0, max = 0;
+        for (TetrisBoard board : corpus.boards) {
+            total += board.getMaxHeight();
+            max = Math.max(max, board.getMaxHeight());
+        }
+        System.out.printf("Recorded %d boards to %s, stack height mean %.1f, max %d%n", corpus.size(), file,
+                (double)total / Math.max(1, corpus.size()), max);
+    }
+}
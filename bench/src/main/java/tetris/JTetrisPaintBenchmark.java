@@ -0,0 +1,68 @@
+package tetris;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times one frame of JTetris.paintComponent, the work the event dispatch thread does for every repaint while
+ * JTetrisBrain plays, drawing the BoardCorpus boards with their falling piece into an offscreen image. The
+ * component is never shown, so the JVM runs headless and the frame's cost is the painting code and Java2D's
+ * software fills, without the copy to the screen.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class JTetrisPaintBenchmark {
+    // How many times the component's preferred size the window is
+    @Param({"1", "3"})
+    public int scale;
+
+    private TetrisBoard[] boards;
+    private JTetris tetris;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        List<TetrisBoard> corpus = BoardCorpus.load().getBoards();
+        boards = corpus.toArray(new TetrisBoard[0]);
+        tetris = new JTetris();
+        int width = tetris.getPreferredSize().width * scale, height = tetris.getPreferredSize().height * scale;
+        tetris.setSize(width, height);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        tetris.board = boards[next++ % boards.length];
+        tetris.paintComponent(graphics);
+        return image;
+    }
+}
@@ -0,0 +1,269 @@
+package tetris;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs a fixed subset of the benchmarks (board operations, nextMove, a seeded game) and compares them with the
+ * baseline committed in bench/baseline.txt, failing when the hot path got slower or allocates more.
+ * A time is a regression only when it is worse by more than the threshold (15% by default) and, by Welch's t test
+ * over the per-iteration samples of both runs, is worse by more than half the threshold with t above 3. Iterations
+ * of one fork are not fully independent, so the margin keeps run-to-run noise of a few percent from failing the gate
+ * while a real slowdown of the threshold's size still does. Allocation per call (per piece for the game) comes from
+ * JMH's gc profiler and is nearly deterministic, so any rise of more than 2% and 16 bytes fails.
+ *
+ * The baseline file is plain text, one benchmark per line:
+ *   benchmark|parameters|unit|higher is better|mean|standard deviation|samples|bytes allocated per call or piece
+ * Baselines are only comparable on the machine and JVM they were recorded on; the file's header names both.
+ * Usage: PerformanceGate [--record] [--baseline file] [--threshold fraction] [--forks n] [--iterations n]
+ */
+public class PerformanceGate {
+    public static final String DEFAULT_BASELINE = "bench/baseline.txt";
+    // The benchmarks the gate runs, as JMH include patterns
+    public static final String[] SUBSET = {
+        "TetrisBoardBenchmark\\.(cloneBoard|placePiece|placePieceClearingRows|testPlacement|isIntersect)$",
+        "TetrisBoardBenchmark\\.move$",
+        "TetrisBrainBenchmark\\.(nextMove|getBoardInfo|game)$"
+    };
+    private static final double T_LIMIT = 3;
+    private static final double ALLOCATION_TOLERANCE = 0.02;
+    private static final double ALLOCATION_SLACK = 16;
+
+    /**
+     * One benchmark's result, as stored in the baseline
+     */
+    public static class Measurement {
+        private String benchmark;
+        private String params;
+        private String unit;
+        private boolean higherIsBetter;
+        private double mean;
+        private double sd;
+        private long samples;
+        private double allocation;
+
+        Measurement(String benchmark, String params, String unit, boolean higherIsBetter, double mean, double sd, long samples,
+                    double allocation) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+            this.mean = mean;
+            this.sd = sd;
+            this.samples = samples;
+            this.allocation = allocation;
+        }
+
+        static Measurement of(RunResult run) {
+            BenchmarkParams params = run.getParams();
+            String name = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.', params.getBenchmark().lastIndexOf('.') - 1) + 1);
+            StringBuilder keys = new StringBuilder();
+            for (String key : params.getParamsKeys()) keys.append(keys.length() == 0 ? "" : " ").append(key).append('=').append(params.getParam(key));
+
+            Result<?> primary = run.getPrimaryResult();
+            Map<String, Result> secondary = run.getSecondaryResults();
+            double allocation = secondary.containsKey("gc.alloc.rate.norm") ? secondary.get("gc.alloc.rate.norm").getScore() : Double.NaN;
+            // The game allocates per game; per piece is what stays comparable when the pieces per game change
+            if (secondary.containsKey("pieces") && primary.getScore() > 0) {
+                allocation /= secondary.get("pieces").getScore() / primary.getScore();
+            }
+            return new Measurement(name, keys.toString(), primary.getScoreUnit(), params.getMode().shortLabel().equals("thrpt"),
+                    primary.getStatistics().getMean(), primary.getStatistics().getStandardDeviation(), primary.getStatistics().getN(),
+                    allocation);
+        }
+
+        String key() { return benchmark + (params.isEmpty() ? "" : " " + params); }
+
+        String toLine() {
+            return String.format(Locale.ROOT, "%s|%s|%s|%b|%.6g|%.6g|%d|%.1f", benchmark, params, unit, higherIsBetter, mean, sd,
+                    samples, allocation);
+        }
+
+        static Measurement parse(String line) {
+            String[] f = line.split("\\|", -1);
+            return new Measurement(f[0], f[1], f[2], Boolean.parseBoolean(f[3]), Double.parseDouble(f[4]), Double.parseDouble(f[5]),
+                    Long.parseLong(f[6]), Double.parseDouble(f[7]));
+        }
+
+        /**
+         * How much worse this is than a baseline, as a fraction: 0.1 means 10% slower
+         */
+        double slowdown(Measurement base) {
+            return higherIsBetter ? base.mean / mean - 1 : mean / base.mean - 1;
+        }
+
+        /**
+         * Welch's t statistic of the difference beyond a margin, positive when this is worse than the baseline by more
+         * than the margin
+         * @param margin, the fraction of the baseline's mean a difference must exceed
+         */
+        double t(Measurement base, double margin) {
+            double se = Math.sqrt(sd * sd / Math.max(1, samples) + base.sd * base.sd / Math.max(1, base.samples));
+            double worse = (higherIsBetter ? base.mean - mean : mean - base.mean) - margin * base.mean;
+            return se == 0 ? (worse == 0 ? 0 : Math.signum(worse) * Double.POSITIVE_INFINITY) : worse / se;
+        }
+
+        public String getBenchmark() { return benchmark; }
+
+        public double getMean() { return mean; }
+
+        public double getAllocation() { return allocation; }
+    }
+
+    /**
+     * Runs the subset with the gc profiler
+     * @param forks, the JVMs to run each benchmark in
+     * @param iterations, the measured iterations of one second per fork
+     * @return the measurements in the order JMH ran them
+     * @throws RunnerException if JMH fails
+     */
+    public static List<Measurement> run(int forks, int iterations) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        for (String pattern : SUBSET) builder.include(pattern);
+        Options options = builder
+                .param("action", "DROP", "LEFT")
+                .param("piece", "T", "STICK")
+                .addProfiler(GCProfiler.class)
+                .forks(forks)
+                .warmupIterations(3).warmupTime(TimeValue.seconds(1))
+                .measurementIterations(iterations).measurementTime(TimeValue.seconds(1))
+                .jvmArgsAppend("-Djava.awt.headless=true")
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        List<Measurement> measurements = new ArrayList<>();
+        for (RunResult result : results) measurements.add(Measurement.of(result));
+        return measurements;
+    }
+
+    /**
+     * Compares a run with a baseline and lays the comparison out as a table
+     * @param baseline, the baseline measurements by key
+     * @param current, the measurements of this run
+     * @param threshold, the fraction a time may get worse by before it can fail
+     * @param report, where to write the table
+     * @return the number of regressions
+     */
+    public static int compare(Map<String, Measurement> baseline, List<Measurement> current, double threshold, StringBuilder report) {
+        int regressions = 0;
+        report.append(String.format("%-58s %12s %12s %8s %7s %11s %11s  %s%n", "benchmark", "baseline", "now", "change", "t",
+                "alloc base", "alloc now", "verdict"));
+        for (Measurement now : current) {
+            Measurement base = baseline.get(now.key());
+            if (base == null) {
+                report.append(String.format(Locale.ROOT, "%-58s %12s %12.4g %8s %7s %11s %11.0f  new%n", now.key(), "-", now.mean,
+                        "", "", "", now.allocation));
+                continue;
+            }
+            double slowdown = now.slowdown(base), t = now.t(base, threshold / 2);
+            List<String> verdict = new ArrayList<>();
+            if (slowdown > threshold && t > T_LIMIT) verdict.add("SLOWER");
+            else if (slowdown > threshold) verdict.add("slower but within noise");
+            else if (slowdown < -threshold && now.t(base, -threshold / 2) < -T_LIMIT) verdict.add("faster");
+            if (now.allocation > base.allocation * (1 + ALLOCATION_TOLERANCE) + ALLOCATION_SLACK) verdict.add("ALLOCATES MORE");
+            else if (now.allocation < base.allocation * (1 - ALLOCATION_TOLERANCE) - ALLOCATION_SLACK) verdict.add("allocates less");
+            if (verdict.contains("SLOWER") || verdict.contains("ALLOCATES MORE")) regressions++;
+
+            report.append(String.format(Locale.ROOT, "%-58s %12.4g %12.4g %+7.1f%% %7.1f %11.0f %11.0f  %s%n", now.key() + " " + now.unit,
+                    base.mean, now.mean, 100 * slowdown, t, base.allocation, now.allocation, verdict.isEmpty() ? "ok" : String.join(", ", verdict)));
+        }
+        for (String key : baseline.keySet()) {
+            boolean ran = current.stream().anyMatch(m -> m.key().equals(key));
+            if (!ran) report.append(String.format("%-58s not run%n", key));
+        }
+        return regressions;
+    }
+
+    /**
+     * Reads a baseline file
+     * @param fileName, the file
+     * @return the measurements by key, in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static Map<String, Measurement> readBaseline(String fileName) throws IOException {
+        Map<String, Measurement> baseline = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("#") || line.isBlank()) continue;
+                Measurement m = Measurement.parse(line);
+                baseline.put(m.key(), m);
+            }
+        }
+        return baseline;
+    }
+
+    private static String machine() {
+        return String.format("java %s, %s %s, %d cpus", System.getProperty("java.version"), System.getProperty("os.name"),
+                System.getProperty("os.arch"), Runtime.getRuntime().availableProcessors());
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        boolean record = false;
+        String fileName = DEFAULT_BASELINE;
+        double threshold = 0.15;
+        int forks = 2, iterations = 5;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--record": record = true; break;
+                case "--baseline": fileName = args[++a]; break;
+                case "--threshold": threshold = Double.parseDouble(args[++a]); break;
+                case "--forks": forks = Integer.parseInt(args[++a]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++a]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[a]);
+            }
+        }
+        if (!record && !new File(fileName).exists()) {
+            System.err.println("No baseline at " + fileName + "; record one with --record");
+            System.exit(2);
+        }
+
+        List<Measurement> current = run(forks, iterations);
+        if (record) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))) {
+                writer.println("# machine: " + machine());
+                writer.println("# benchmark|parameters|unit|higher is better|mean|sd|samples|bytes allocated per call (per piece for game)");
+                for (Measurement m : current) writer.println(m.toLine());
+            }
+            System.out.println("Recorded " + current.size() + " benchmarks to " + fileName);
+            return;
+        }
+
+        String recordedOn = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String first = reader.readLine();
+            if (first != null && first.startsWith("# machine: ")) recordedOn = first.substring("# machine: ".length());
+        }
+        if (recordedOn != null && !recordedOn.equals(machine())) {
+            System.out.println("Warning: the baseline was recorded on " + recordedOn + ", this is " + machine());
+        }
+
+        StringBuilder report = new StringBuilder();
+        int regressions = compare(readBaseline(fileName), current, threshold, report);
+        System.out.print(report);
+        if (regressions > 0) {
+            System.out.printf("%d regression(s) against %s (worse by over %.0f%%, and over %.1f%% with t > %.0f)%n", regressions,
+                    fileName, 100 * threshold, 50 * threshold, T_LIMIT);
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + fileName);
+    }
+}
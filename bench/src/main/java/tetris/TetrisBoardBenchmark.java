@@ -0,0 +1,134 @@
+package tetris;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tetris.Board.Action;
+
+/**
+ * Times the TetrisBoard operations the brain and the games spend their time in, on the recorded BoardCorpus.
+ * Every call takes the next board of the corpus, so a score is the average over the whole corpus rather than one
+ * lucky board. Operations that change the board work on a fresh clone each call: their scores include one
+ * cloneBoard, which the cloneBoard benchmark measures on its own so it can be subtracted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TetrisBoardBenchmark {
+    private TetrisBoard[] boards;
+    // The boards with their piece lowered onto the stack, split by whether placing it there clears rows
+    private TetrisBoard[] landed;
+    private TetrisBoard[] clearing;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        List<TetrisBoard> corpus = BoardCorpus.load().getBoards();
+        boards = corpus.toArray(new TetrisBoard[0]);
+
+        List<TetrisBoard> plain = new ArrayList<>(), clears = new ArrayList<>();
+        for (TetrisBoard board : corpus) {
+            TetrisBoard lowered = board.cloneBoard();
+            lowered.getCurrentPiecePosition().y -= lowered.dropHeightReal(lowered.getCurrentPiecePosition().x);
+            TetrisBoard placed = lowered.cloneBoard();
+            placed.placePiece();
+            (placed.getRowsCleared() > 0 ? clears : plain).add(lowered);
+        }
+        landed = plain.toArray(new TetrisBoard[0]);
+        clearing = clears.toArray(new TetrisBoard[0]);
+        if (clearing.length == 0) throw new IllegalStateException("the corpus has no board whose piece clears a row");
+    }
+
+    private int next(int length) {
+        if (++next >= length) next = 0;
+        return next;
+    }
+
+    /**
+     * The action for the move benchmark, kept apart so the other benchmarks are not run once per action
+     */
+    @State(Scope.Thread)
+    public static class Move {
+        @Param({"LEFT", "RIGHT", "DOWN", "DROP", "CLOCKWISE", "COUNTERCLOCKWISE", "NOTHING", "HOLD"})
+        public Action action;
+    }
+
+    @Benchmark
+    public Board.Result move(Move move) {
+        return boards[next(boards.length)].cloneBoard().move(move.action);
+    }
+
+    @Benchmark
+    public TetrisBoard cloneBoard() {
+        return boards[next(boards.length)].cloneBoard();
+    }
+
+    @Benchmark
+    public TetrisBoard placePiece() {
+        TetrisBoard board = landed[next(landed.length)].cloneBoard();
+        board.placePiece();
+        return board;
+    }
+
+    @Benchmark
+    public TetrisBoard placePieceClearingRows() {
+        TetrisBoard board = clearing[next(clearing.length)].cloneBoard();
+        board.placePiece();
+        return board;
+    }
+
+    /**
+     * Tries the current piece in every column, as the brain does for each rotation
+     */
+    @Benchmark
+    public void testPlacement(Blackhole blackhole) {
+        TetrisBoard board = boards[next(boards.length)];
+        Piece piece = board.getCurrentPiece();
+        for (int x = -2; x < board.getWidth(); x++) blackhole.consume(board.testPlacement(piece, x));
+    }
+
+    @Benchmark
+    public void dropHeight(Blackhole blackhole) {
+        TetrisBoard board = boards[next(boards.length)];
+        Piece piece = board.getCurrentPiece();
+        for (int x = 0; x <= board.getWidth() - piece.getWidth(); x++) blackhole.consume(board.dropHeight(piece, x));
+    }
+
+    @Benchmark
+    public int dropHeightReal() {
+        TetrisBoard board = boards[next(boards.length)];
+        return board.dropHeightReal(board.getCurrentPiecePosition().x);
+    }
+
+    /**
+     * Checks the current piece one step in each direction, as every LEFT, RIGHT and DOWN does
+     */
+    @Benchmark
+    public void isIntersect(Blackhole blackhole) {
+        TetrisBoard board = boards[next(boards.length)];
+        Point[] body = board.getCurrentPiece().getBody();
+        blackhole.consume(board.isIntersect(body, -1, 0));
+        blackhole.consume(board.isIntersect(body, 1, 0));
+        blackhole.consume(board.isIntersect(body, 0, -1));
+    }
+}
@@ -0,0 +1,156 @@
+package tetris;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tetris.Board.Action;
+import tetris.Piece.PieceType;
+
+/**
+ * Times the brain on the recorded BoardCorpus: a whole decision (nextMove for a freshly spawned piece), the board
+ * features and fitness of one placement, breeding, and a headless game end to end. Run with -prof gc (as
+ * scripts/bench.sh does) to get the bytes allocated per call next to each time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TetrisBrainBenchmark {
+    private TetrisBrain brain = new TetrisBrain();
+    // The corpus boards after the default brain's placement of their piece, as calcFitness sees them
+    private TetrisBoard[] placed;
+    private JTetrisBrainIndividual[] parents;
+    private Random random = new Random(1);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        List<TetrisBoard> corpus = BoardCorpus.load().getBoards();
+        List<TetrisBoard> boards = new ArrayList<>();
+        for (TetrisBoard board : corpus) {
+            TetrisBoard played = board.cloneBoard();
+            brain.clearMoves();
+            while (played.getScore() == board.getScore()) played.move(brain.nextMove(played));
+            boards.add(played);
+        }
+        placed = boards.toArray(new TetrisBoard[0]);
+
+        parents = new JTetrisBrainIndividual[64];
+        for (int i = 0; i < parents.length; i++) parents[i] = new JTetrisBrainIndividual();
+    }
+
+    private int next(int length) {
+        if (++next >= length) next = 0;
+        return next;
+    }
+
+    /**
+     * The corpus boards with a given piece just spawned, and a held piece or none
+     */
+    @State(Scope.Thread)
+    public static class Decision {
+        @Param({"T", "SQUARE", "STICK", "LEFT_L", "RIGHT_L", "LEFT_DOG", "RIGHT_DOG"})
+        public PieceType piece;
+
+        @Param({"false", "true"})
+        public boolean held;
+
+        private TetrisBoard[] boards;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            PieceType[] types = PieceType.values();
+            List<TetrisBoard> corpus = BoardCorpus.load().getBoards();
+            boards = new TetrisBoard[corpus.size()];
+            for (int i = 0; i < boards.length; i++) {
+                TetrisBoard board = corpus.get(i).cloneBoard();
+                Piece spawned = TetrisPiece.getPiece(piece);
+                board.nextPiece(spawned, new Point(board.getWidth() / 2 - spawned.getWidth() / 2, JTetris.HEIGHT));
+                // Holds a piece other than the current one, so every board has a second piece to try
+                board.setHeldPieceType(held ? types[(piece.ordinal() + 1 + i % (types.length - 1)) % types.length] : null);
+                board.setHold(false);
+                boards[i] = board;
+            }
+        }
+    }
+
+    /**
+     * Decides where a freshly spawned piece goes: every rotation and column, and those of the held piece if any
+     */
+    @Benchmark
+    public Action nextMove(Decision decision) {
+        brain.clearMoves();
+        return brain.nextMove(decision.boards[next(decision.boards.length)]);
+    }
+
+    @Benchmark
+    public double[] getBoardInfo() {
+        return brain.getBoardInfo(placed[next(placed.length)]);
+    }
+
+    @Benchmark
+    public double calcFitness() {
+        return brain.calcFitness(placed[next(placed.length)]);
+    }
+
+    @Benchmark
+    public JTetrisBrainIndividual crossOver() {
+        return brain.crossOver(parents[random.nextInt(parents.length)], parents[random.nextInt(parents.length)]);
+    }
+
+    @Benchmark
+    public JTetrisBrainIndividual mutate() {
+        JTetrisBrainIndividual child = parents[next(parents.length)];
+        brain.mutate(child, JTetrisBrainTrainer.MUTATION_RATE);
+        return child;
+    }
+
+    /**
+     * Counts the pieces placed by the game benchmark, so JMH reports them per second next to games per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Pieces {
+        public long pieces;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            pieces = 0;
+        }
+    }
+
+    /**
+     * Plays one seeded headless game of the default weights, 1000 pieces long unless it tops out first. The seeds
+     * cycle through 1 to 10 so every run plays the same games.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int game(Pieces pieces) {
+        HeadlessTetris tetris = new HeadlessTetris(brain, 1 + next(10), 0.75);
+        tetris.startGame();
+        tetris.playUntil(1000);
+        pieces.pieces += tetris.getPiecesPlaced();
+        return tetris.getRowsCleared();
+    }
+}
@@ -0,0 +1,13 @@
+#!/bin/bash
+# Builds the JMH benchmarks in bench/ and runs them, writing JMH's JSON results to bench/results/<commit>.json so
+# runs of different versions can be compared. JMH's gc profiler is always on, so every result also has the bytes
+# allocated per call (gc.alloc.rate.norm). Extra arguments go to JMH, e.g. a benchmark regex.
+# Usage: scripts/bench.sh [JMH options...]
+set -e
+cd "$(dirname "$0")/.."
+
+mvn -B -q -f bench/pom.xml package
+mkdir -p bench/results
+RESULT="bench/results/$(git rev-parse --short HEAD 2>/dev/null || echo local)$(git diff --quiet 2>/dev/null || echo -dirty).json"
+java -Djava.awt.headless=true -jar bench/target/benchmarks.jar -rf json -rff "$RESULT" -prof gc "$@"
+echo "Results: $RESULT"
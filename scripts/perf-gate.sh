@@ -0,0 +1,10 @@
+#!/bin/bash
+# Builds the benchmarks and runs PerformanceGate against the committed bench/baseline.txt, exiting non-zero when a
+# benchmark got significantly slower or allocates more. Runs offline once Maven's repository has the JMH artifacts.
+# Pass --record to replace the baseline with this machine's numbers, e.g. after an intended change.
+# Usage: scripts/perf-gate.sh [--record] [--threshold fraction] [--forks n] [--iterations n]
+set -e
+cd "$(dirname "$0")/.."
+
+mvn -B -q -o -f bench/pom.xml package 2>/dev/null || mvn -B -q -f bench/pom.xml package
+java -cp bench/target/benchmarks.jar tetris.PerformanceGate "$@"
@@ -0,0 +1,32 @@
+#!/bin/bash
+# Builds out/tetris.jar and a class-data-sharing archive (out/worker.jsa) for JTetrisBrainWorker, then compares the
+# worker's time to first piece with and without the archive and lists any AWT/Swing classes it loads.
+# AppCDS only archives classes loaded from jars, so workers must be started with out/tetris.jar as their classpath
+# for the archive to help; JTetrisBrainTrainer passes it to local workers when it is itself run from out/tetris.jar.
+# Usage: scripts/worker-cds.sh [runs]
+set -e
+cd "$(dirname "$0")/.."
+RUNS=${1:-5}
+
+rm -rf out/classes && mkdir -p out/classes
+javac -encoding UTF-8 -d out/classes $(find src -name '*.java')
+jar cf out/tetris.jar -C out/classes .
+
+# Record every class a worker loads up to its first pieces
+rm -f out/worker.jsa
+java -XX:ArchiveClassesAtExit=out/worker.jsa -Xlog:cds=off -cp out/tetris.jar tetris.JTetrisBrainWorker --startup > /dev/null
+
+measure() {
+    for i in $(seq "$RUNS"); do
+        java -Djava.awt.headless=true "$@" -cp out/tetris.jar tetris.JTetrisBrainWorker --startup "$(date +%s%3N)"
+    done
+}
+echo "Without archive:"
+measure -Xshare:auto
+echo "With out/worker.jsa:"
+measure -XX:SharedArchiveFile=out/worker.jsa
+
+# java.awt.Point and Point2D are deliberately kept: pieces are made of Points, which are plain geometry and start no toolkit
+echo "AWT/Swing classes loaded by a worker, besides java.awt.Point and java.awt.geom.Point2D:"
+java -verbose:class -cp out/tetris.jar tetris.JTetrisBrainWorker --startup | grep -E 'java\.awt|javax\.swing|sun\.awt' \
+    | grep -vE 'java\.awt\.(geom\.Point2D|Point) ' || echo "none"
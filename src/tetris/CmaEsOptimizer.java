@@ -0,0 +1,241 @@
+package tetris;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * The covariance matrix adaptation evolution strategy (CMA-ES). Candidates are drawn from a multivariate Gaussian;
+ * each generation the mean moves toward the best half of the candidates, the covariance learns which directions
+ * have been paying off, and the step size grows or shrinks depending on how far the mean has been travelling.
+ * Uses the default parameter settings from Hansen's CMA-ES tutorial.
+ */
+public class CmaEsOptimizer implements Optimizer {
+    private int n;
+    private int lambda;
+    private int mu;
+    private double[] recombination;
+    private double mueff;
+    private double cc, cs, c1, cmu, damps, chiN;
+
+    private double[] mean;
+    private double sigma;
+    private double[][] c;
+    private double[][] b;
+    private double[] d;
+    private double[] pc;
+    private double[] ps;
+    private int generation;
+    private Random random = new Random();
+
+    /**
+     * Creates a CMA-ES search with the default number of candidates per generation for the weight count
+     * @param start, the starting mean
+     * @param sigma, the starting step size
+     */
+    public CmaEsOptimizer(double[] start, double sigma) {
+        this(start, sigma, 4 + (int)(3 * Math.log(start.length)));
+    }
+
+    /**
+     * Creates a CMA-ES search
+     * @param start, the starting mean
+     * @param sigma, the starting step size
+     * @param lambda, the number of candidates per generation
+     */
+    public CmaEsOptimizer(double[] start, double sigma, int lambda) {
+        n = start.length;
+        this.lambda = Math.max(4, lambda);
+        mu = this.lambda / 2;
+        mean = start.clone();
+        this.sigma = sigma;
+
+        // Log-rank recombination weights for the best mu candidates
+        recombination = new double[mu];
+        double sum = 0, squares = 0;
+        for (int i = 0; i < mu; i++) {
+            recombination[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+            sum += recombination[i];
+        }
+        for (int i = 0; i < mu; i++) {
+            recombination[i] /= sum;
+            squares += recombination[i] * recombination[i];
+        }
+        mueff = 1 / squares;
+
+        cc = (4 + mueff / n) / (n + 4 + 2 * mueff / n);
+        cs = (mueff + 2) / (n + mueff + 5);
+        c1 = 2 / ((n + 1.3) * (n + 1.3) + mueff);
+        cmu = Math.min(1 - c1, 2 * (mueff - 2 + 1 / mueff) / ((n + 2) * (n + 2) + mueff));
+        damps = 1 + 2 * Math.max(0, Math.sqrt((mueff - 1) / (n + 1)) - 1) + cs;
+        chiN = Math.sqrt(n) * (1 - 1.0 / (4 * n) + 1.0 / (21 * n * n));
+
+        c = new double[n][n];
+        b = new double[n][n];
+        d = new double[n];
+        for (int i = 0; i < n; i++) {
+            c[i][i] = 1;
+            b[i][i] = 1;
+            d[i] = 1;
+        }
+        pc = new double[n];
+        ps = new double[n];
+    }
+
+    @Override
+    public JTetrisBrainIndividual[] ask() {
+        JTetrisBrainIndividual[] batch = new JTetrisBrainIndividual[lambda];
+        for (int k = 0; k < lambda; k++) {
+            double[] z = new double[n];
+            for (int i = 0; i < n; i++) z[i] = d[i] * random.nextGaussian();
+            double[] y = multiply(b, z);
+            double[] x = new double[n];
+            for (int i = 0; i < n; i++) x[i] = mean[i] + sigma * y[i];
+            batch[k] = new JTetrisBrainIndividual(x);
+        }
+        return batch;
+    }
+
+    @Override
+    public void tell(JTetrisBrainIndividual[] evaluated) {
+        // Steps are taken back from the candidates' weights rather than remembered from ask, so candidates may come
+        // back in any order, or from elsewhere, like a generation restored from a checkpoint
+        double[][] steps = new double[evaluated.length][n];
+        for (int k = 0; k < evaluated.length; k++) {
+            double[] x = evaluated[k].getWeights();
+            for (int i = 0; i < n; i++) steps[k][i] = (x[i] - mean[i]) / sigma;
+        }
+
+        Integer[] order = new Integer[evaluated.length];
+        for (int k = 0; k < order.length; k++) order[k] = k;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer k1, Integer k2) {
+                return Double.compare(evaluated[k2].getScore(), evaluated[k1].getScore());
+            }
+        });
+
+        // Moves the mean to the weighted average of the best candidates; yw is that move in units of sigma
+        double[] yw = new double[n];
+        for (int r = 0; r < mu; r++) {
+            double[] y = steps[order[r]];
+            for (int i = 0; i < n; i++) yw[i] += recombination[r] * y[i];
+        }
+        for (int i = 0; i < n; i++) mean[i] += sigma * yw[i];
+
+        // Evolution path of the step size, measured in the whitened space C^-1/2
+        double[] whitened = multiply(b, divide(multiplyTransposed(b, yw), d));
+        double psFactor = Math.sqrt(cs * (2 - cs) * mueff);
+        for (int i = 0; i < n; i++) ps[i] = (1 - cs) * ps[i] + psFactor * whitened[i];
+        double psNorm = norm(ps);
+        generation++;
+        boolean hsig = psNorm / Math.sqrt(1 - Math.pow(1 - cs, 2 * generation)) / chiN < 1.4 + 2.0 / (n + 1);
+
+        double pcFactor = hsig ? Math.sqrt(cc * (2 - cc) * mueff) : 0;
+        for (int i = 0; i < n; i++) pc[i] = (1 - cc) * pc[i] + pcFactor * yw[i];
+
+        // Rank-one update from the evolution path plus rank-mu update from this generation's best steps
+        double stall = hsig ? 0 : c1 * cc * (2 - cc);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double rankMu = 0;
+                for (int r = 0; r < mu; r++) {
+                    double[] y = steps[order[r]];
+                    rankMu += recombination[r] * y[i] * y[j];
+                }
+                c[i][j] = (1 - c1 - cmu) * c[i][j] + c1 * pc[i] * pc[j] + stall * c[i][j] + cmu * rankMu;
+                c[j][i] = c[i][j];
+            }
+        }
+
+        sigma *= Math.exp((cs / damps) * (psNorm / chiN - 1));
+        decompose();
+    }
+
+    @Override
+    public JTetrisBrainIndividual getBest() {
+        return new JTetrisBrainIndividual(mean.clone());
+    }
+
+    @Override
+    public String getName() {
+        return "CMA-ES";
+    }
+
+    /**
+     * Fetches the current step size
+     * @return sigma
+     */
+    public double getSigma() {
+        return sigma;
+    }
+
+    /**
+     * Recomputes B and D so that C = B diag(D^2) B^T, using Jacobi rotations since C is small and symmetric.
+     */
+    private void decompose() {
+        double[][] a = new double[n][];
+        for (int i = 0; i < n; i++) a[i] = c[i].clone();
+        double[][] v = new double[n][n];
+        for (int i = 0; i < n; i++) v[i][i] = 1;
+
+        for (int sweep = 0; sweep < 50; sweep++) {
+            double off = 0;
+            for (int i = 0; i < n; i++) for (int j = i + 1; j < n; j++) off += a[i][j] * a[i][j];
+            if (off < 1e-30) break;
+
+            for (int p = 0; p < n; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    if (Math.abs(a[p][q]) < 1e-300) continue;
+                    double theta = (a[q][q] - a[p][p]) / (2 * a[p][q]);
+                    double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    if (theta == 0) t = 1;
+                    double cos = 1 / Math.sqrt(t * t + 1);
+                    double sin = t * cos;
+                    for (int k = 0; k < n; k++) {
+                        double akp = a[k][p], akq = a[k][q];
+                        a[k][p] = cos * akp - sin * akq;
+                        a[k][q] = sin * akp + cos * akq;
+                    }
+                    for (int k = 0; k < n; k++) {
+                        double apk = a[p][k], aqk = a[q][k];
+                        a[p][k] = cos * apk - sin * aqk;
+                        a[q][k] = sin * apk + cos * aqk;
+                    }
+                    for (int k = 0; k < n; k++) {
+                        double vkp = v[k][p], vkq = v[k][q];
+                        v[k][p] = cos * vkp - sin * vkq;
+                        v[k][q] = sin * vkp + cos * vkq;
+                    }
+                }
+            }
+        }
+
+        b = v;
+        for (int i = 0; i < n; i++) d[i] = Math.sqrt(Math.max(a[i][i], 1e-20));
+    }
+
+    private static double[] multiply(double[][] m, double[] x) {
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) for (int j = 0; j < x.length; j++) y[i] += m[i][j] * x[j];
+        return y;
+    }
+
+    private static double[] multiplyTransposed(double[][] m, double[] x) {
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) for (int j = 0; j < x.length; j++) y[i] += m[j][i] * x[j];
+        return y;
+    }
+
+    private static double[] divide(double[] x, double[] by) {
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) y[i] = x[i] / by[i];
+        return y;
+    }
+
+    private static double norm(double[] x) {
+        double sum = 0;
+        for (double v : x) sum += v * v;
+        return Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,98 @@
+package tetris;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * The noisy cross-entropy method: weights are drawn from an independent Gaussian per weight, the mean and variance
+ * are refitted to the best few samples, and a decreasing amount of extra variance is added each generation so the
+ * distribution does not collapse before it has found good weights.
+ */
+public class CrossEntropyOptimizer implements Optimizer {
+    private double[] mean;
+    private double[] variance;
+    private int samples;
+    private int elites;
+    private double noise;
+    private double noiseDecay;
+    private int generation;
+    private Random random = new Random();
+
+    /**
+     * Creates a cross-entropy search centered on zero
+     * @param samples, the number of candidates drawn per generation
+     * @param eliteRate, the fraction of candidates the distribution is refitted to
+     * @param initialVariance, the starting variance of every weight
+     * @param noise, the extra variance added in the first generation
+     * @param noiseDecay, how much the extra variance shrinks each generation, never going below zero
+     */
+    public CrossEntropyOptimizer(int samples, double eliteRate, double initialVariance, double noise, double noiseDecay) {
+        this(new double[JTetrisBrainTrainer.WEIGHT_COUNT], samples, eliteRate, initialVariance, noise, noiseDecay);
+    }
+
+    /**
+     * Creates a cross-entropy search centered on given weights
+     * @param start, the starting mean
+     * @param samples, the number of candidates drawn per generation
+     * @param eliteRate, the fraction of candidates the distribution is refitted to
+     * @param initialVariance, the starting variance of every weight
+     * @param noise, the extra variance added in the first generation
+     * @param noiseDecay, how much the extra variance shrinks each generation, never going below zero
+     */
+    public CrossEntropyOptimizer(double[] start, int samples, double eliteRate, double initialVariance, double noise,
+                                 double noiseDecay) {
+        this.samples = samples;
+        this.elites = Math.max(2, (int)(samples * eliteRate));
+        this.noise = noise;
+        this.noiseDecay = noiseDecay;
+        mean = start.clone();
+        variance = new double[start.length];
+        Arrays.fill(variance, initialVariance);
+    }
+
+    @Override
+    public JTetrisBrainIndividual[] ask() {
+        JTetrisBrainIndividual[] batch = new JTetrisBrainIndividual[samples];
+        for (int i = 0; i < samples; i++) {
+            double[] weights = new double[mean.length];
+            for (int j = 0; j < mean.length; j++) weights[j] = mean[j] + Math.sqrt(variance[j]) * random.nextGaussian();
+            batch[i] = new JTetrisBrainIndividual(weights);
+        }
+        return batch;
+    }
+
+    @Override
+    public void tell(JTetrisBrainIndividual[] evaluated) {
+        JTetrisBrainIndividual[] sorted = evaluated.clone();
+        Arrays.sort(sorted, new Comparator<JTetrisBrainIndividual>() {
+            @Override
+            public int compare(JTetrisBrainIndividual i1, JTetrisBrainIndividual i2) {
+                return Double.compare(i2.getScore(), i1.getScore());
+            }
+        });
+
+        int top = Math.min(elites, sorted.length);
+        double extra = Math.max(0, noise - noiseDecay * generation);
+        for (int j = 0; j < mean.length; j++) {
+            double sum = 0;
+            for (int i = 0; i < top; i++) sum += sorted[i].getWeights()[j];
+            double m = sum / top;
+            double squares = 0;
+            for (int i = 0; i < top; i++) squares += (sorted[i].getWeights()[j] - m) * (sorted[i].getWeights()[j] - m);
+            mean[j] = m;
+            variance[j] = squares / top + extra;
+        }
+        generation++;
+    }
+
+    @Override
+    public JTetrisBrainIndividual getBest() {
+        return new JTetrisBrainIndividual(mean.clone());
+    }
+
+    @Override
+    public String getName() {
+        return "Cross-entropy";
+    }
+}
@@ -0,0 +1,64 @@
+package tetris;
+
+import java.util.Arrays;
+
+/**
+ * The placements a brain chose in one game, one per piece, each with a safety radius: how far (in Euclidean distance
+ * over the weights) another brain's weights may be from the weights that played the game and still be guaranteed
+ * to choose the same placement on the same board. A brain following the trace can skip searching every placement
+ * while it stays within the radius, since the boards stay identical until the first decision that differs.
+ */
+public class DecisionTrace {
+    private double[] weights;
+    private long seed;
+    private int[] decisions = new int[256];
+    private float[] radii = new float[256];
+    private int size;
+
+    /**
+     * Starts an empty trace for a game
+     * @param weights, the weights of the brain playing the game; the radii are distances from these
+     * @param seed, the seed of the game's piece sequence
+     */
+    public DecisionTrace(double[] weights, long seed) {
+        this.weights = weights.clone();
+        this.seed = seed;
+    }
+
+    /**
+     * Appends the decision for the next piece
+     * @param decision, the placement, as encoded by TetrisBrain
+     * @param radius, the distance from this trace's weights within which the decision is certain not to change
+     */
+    public void add(int decision, double radius) {
+        if (size == decisions.length) {
+            decisions = Arrays.copyOf(decisions, 2 * size);
+            radii = Arrays.copyOf(radii, 2 * size);
+        }
+        decisions[size] = decision;
+        // Rounded down so the stored radius never promises more than the computed one
+        float r = (float)radius;
+        radii[size++] = r > radius ? Math.nextDown(r) : r;
+    }
+
+    public int getDecision(int index) { return decisions[index]; }
+
+    public double getRadius(int index) { return radii[index]; }
+
+    public int size() { return size; }
+
+    public long getSeed() { return seed; }
+
+    public double[] getWeights() { return weights; }
+
+    /**
+     * Measures how far a brain's weights are from the weights that played this trace
+     * @param other, the other brain's weights
+     * @return the Euclidean distance
+     */
+    public double distanceTo(double[] other) {
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) sum += (weights[i] - other[i]) * (weights[i] - other[i]);
+        return Math.sqrt(sum);
+    }
+}
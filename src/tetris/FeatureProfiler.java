@@ -0,0 +1,330 @@
+package tetris;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import tetris.Board.Action;
+import tetris.Board.Result;
+
+/**
+ * Splits the cost of TetrisBrain.getBoardInfo between its nine features, and any registered later, to show which
+ * features are worth making incremental or dropping. getBoardInfo computes the features in one fused loop, so
+ * they cannot be timed inside it; instead the profiler keeps a uniform sample of the boards getBoardInfo was called
+ * on, then times each feature on its own over that sample, running getBoardInfo's loop with the other features
+ * switched off, and counts the cells and column heights it reads through a counting Board. Times are scaled to the whole run by the number of calls.
+ *
+ * Next to its cost, each feature gets its influence on the fitness: the weight's magnitude times the standard
+ * deviation of the feature over the sample, since a large weight on a feature that barely varies decides little.
+ *
+ * Opt-in for a whole run with -Dtetris.profileFeatures=true (JTetrisBrainTrainer then prints the breakdown once,
+ * after the first generation it plays), or standalone on seeded games:
+ * Usage: FeatureProfiler [games] [pieces per game] [weight file]
+ */
+public class FeatureProfiler {
+    public static final boolean ENABLED = Boolean.getBoolean("tetris.profileFeatures");
+    // The profiler getBoardInfo reports to when ENABLED
+    public static final FeatureProfiler RUN = ENABLED ? new FeatureProfiler(4096) : null;
+    // One call in this many is offered to the sample, so observing stays cheap next to getBoardInfo itself
+    private static final int SAMPLE_EVERY = 64;
+    // Each feature runs this long before it is timed, so it is compiled again after the counting pass deoptimized it
+    private static final long WARM_UP_NANOS = 200_000_000;
+    private static final int PASSES = 10;
+    // Keeps the JIT from dropping the timed feature calls as unused
+    private static volatile double sink;
+
+    /**
+     * A value computed from a board, like one entry of getBoardInfo
+     */
+    public interface Feature {
+        double evaluate(Board board);
+    }
+
+    private List<String> names = new ArrayList<>();
+    private List<Feature> features = new ArrayList<>();
+    private LongAdder calls = new LongAdder();
+    private List<Board> sample = new ArrayList<>();
+    private int sampleSize;
+    private long offered;
+    private Random random = new Random(1);
+
+    /**
+     * Creates a profiler with the nine features of getBoardInfo
+     * @param sampleSize, the most boards kept to time the features on
+     */
+    public FeatureProfiler(int sampleSize) {
+        this.sampleSize = sampleSize;
+        String[] builtIn = {"max height diff", "pillars", "holes", "cells above holes", "bumpiness", "rows cleared",
+                "row transitions", "max height", "column transitions"};
+        for (int i = 0; i < builtIn.length; i++) register(builtIn[i], feature(i));
+    }
+
+    /**
+     * Adds a feature to profile next to the built-in ones
+     * @param name, the name it is reported under
+     * @param feature, the feature
+     */
+    public synchronized void register(String name, Feature feature) {
+        names.add(name);
+        features.add(feature);
+    }
+
+    /**
+     * Counts a call of getBoardInfo and offers its board to the sample now and then
+     * @param board, the board the features are computed for
+     */
+    public void observe(Board board) {
+        calls.increment();
+        if (ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) != 0) return;
+        // The game's own board changes after the call, so a copy is kept
+        Board copy = board instanceof TetrisBoard ? ((TetrisBoard)board).cloneBoard() : board;
+        synchronized (this) {
+            offered++;
+            if (sample.size() < sampleSize) sample.add(copy);
+            else {
+                long slot = (long)(random.nextDouble() * offered);
+                if (slot < sampleSize) sample.set((int)slot, copy);
+            }
+        }
+    }
+
+    /**
+     * Fetches one of the nine features of getBoardInfo on its own, computed by getBoardInfo's loop with every other
+     * feature switched off
+     * @param index, the index of the feature in getBoardInfo's result
+     * @return the feature
+     */
+    public static Feature feature(int index) {
+        if (index < 0 || index >= JTetrisBrainTrainer.WEIGHT_COUNT) throw new IllegalArgumentException("getBoardInfo has no feature " + index);
+        int only = 1 << index;
+        return board -> TetrisBrain.getBoardInfo(board, only)[index];
+    }
+
+    /**
+     * What one feature costs and how much it decides
+     */
+    public static class Cost {
+        private String name;
+        private double weight;
+        private double nanos;
+        private double cells;
+        private double heights;
+        private double mean;
+        private double sd;
+        private long calls;
+
+        Cost(String name, double weight, long calls) {
+            this.name = name;
+            this.weight = weight;
+            this.calls = calls;
+        }
+
+        public String getName() { return name; }
+
+        public double getWeight() { return weight; }
+
+        public double getNanos() { return nanos; }
+
+        public double getCells() { return cells; }
+
+        public double getColumnHeights() { return heights; }
+
+        public double getMean() { return mean; }
+
+        public double getStandardDeviation() { return sd; }
+
+        public double getInfluence() { return Double.isNaN(weight) ? Double.NaN : Math.abs(weight) * sd; }
+
+        public double getTotalSeconds() { return nanos * calls / 1e9; }
+    }
+
+    /**
+     * Times every feature over the sample, most expensive first, followed by the fused getBoardInfo for comparison
+     * @param weights, the weights of the built-in features, or null
+     * @return the costs; the last one is getBoardInfo itself
+     */
+    public List<Cost> profile(double[] weights) {
+        List<Board> boards;
+        List<String> profiledNames;
+        List<Feature> profiled;
+        synchronized (this) {
+            boards = new ArrayList<>(sample);
+            profiledNames = new ArrayList<>(names);
+            profiled = new ArrayList<>(features);
+        }
+        long total = calls.sum();
+        List<Cost> costs = new ArrayList<>();
+        if (boards.isEmpty()) return costs;
+
+        // Everything is counted before anything is timed: the counting Board deoptimizes the code it passes through
+        Counting counting = new Counting();
+        for (int f = 0; f < profiled.size(); f++) {
+            Feature feature = profiled.get(f);
+            Cost cost = new Cost(profiledNames.get(f), weights != null && f < weights.length ? weights[f] : Double.NaN, total);
+
+            double sum = 0, squares = 0;
+            for (Board board : boards) {
+                counting.board = board;
+                double value = feature.evaluate(counting);
+                sum += value;
+                squares += value * value;
+            }
+            cost.mean = sum / boards.size();
+            cost.sd = Math.sqrt(Math.max(0, squares / boards.size() - cost.mean * cost.mean));
+            cost.cells = (double)counting.cells / boards.size();
+            cost.heights = (double)counting.heights / boards.size();
+            counting.cells = counting.heights = 0;
+            costs.add(cost);
+        }
+
+        Cost fused = new Cost("getBoardInfo (all nine, fused)", Double.NaN, total);
+        for (Board board : boards) {
+            counting.board = board;
+            TetrisBrain.getBoardInfo(counting, TetrisBrain.ALL_FEATURES);
+        }
+        fused.cells = (double)counting.cells / boards.size();
+        fused.heights = (double)counting.heights / boards.size();
+
+        // Timed in two rounds, keeping each feature's faster one: in the first, the features timed early still
+        // share the CPU with the JIT compiling the ones after them
+        Feature fusedFeature = b -> TetrisBrain.getBoardInfo(b, TetrisBrain.ALL_FEATURES)[0];
+        fused.nanos = Double.POSITIVE_INFINITY;
+        for (Cost cost : costs) cost.nanos = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < 2; round++) {
+            for (int f = 0; f < profiled.size(); f++) costs.get(f).nanos = Math.min(costs.get(f).nanos, time(profiled.get(f), boards));
+            fused.nanos = Math.min(fused.nanos, time(fusedFeature, boards));
+        }
+        costs.sort((a, b) -> Double.compare(b.nanos, a.nanos));
+        costs.add(fused);
+        return costs;
+    }
+
+    /**
+     * The fastest of a few timed passes over the boards, in nanoseconds per board, after running them to warm up
+     */
+    private static double time(Feature feature, List<Board> boards) {
+        double sum = 0, best = Double.POSITIVE_INFINITY;
+        long warmUp = System.nanoTime() + WARM_UP_NANOS;
+        while (System.nanoTime() < warmUp) {
+            for (Board board : boards) sum += feature.evaluate(board);
+        }
+        for (int pass = 0; pass < PASSES; pass++) {
+            long start = System.nanoTime();
+            for (Board board : boards) sum += feature.evaluate(board);
+            best = Math.min(best, (double)(System.nanoTime() - start) / boards.size());
+        }
+        sink = sum;
+        return best;
+    }
+
+    /**
+     * Lays a profile out as a ranked table
+     * @param costs, the result of profile()
+     * @return the table
+     */
+    public static String table(List<Cost> costs) {
+        double features = 0;
+        for (int i = 0; i < costs.size() - 1; i++) features += costs.get(i).nanos;
+        StringBuilder table = new StringBuilder(String.format("%-32s %9s %7s %8s %8s %9s %9s %10s %11s%n", "feature", "ns/call",
+                "share", "cells", "heights", "weight", "sd", "influence", "run seconds"));
+        for (Cost cost : costs) {
+            table.append(String.format(Locale.ROOT, "%-32s %9.1f %6.1f%% %8.1f %8.1f %9s %9.2f %10s %11.2f%n", cost.name, cost.nanos,
+                    100 * cost.nanos / features, cost.cells, cost.heights,
+                    Double.isNaN(cost.weight) ? "-" : String.format(Locale.ROOT, "%.3f", cost.weight), cost.sd,
+                    Double.isNaN(cost.getInfluence()) ? "-" : String.format(Locale.ROOT, "%.2f", cost.getInfluence()), cost.getTotalSeconds()));
+        }
+        return table.toString();
+    }
+
+    public long getCalls() { return calls.sum(); }
+
+    public synchronized int getSampleSize() { return sample.size(); }
+
+    /**
+     * A Board that passes everything on to the board it wraps, counting the grid cells and column heights read through it
+     */
+    private static class Counting implements Board {
+        private Board board;
+        private long cells;
+        private long heights;
+
+        @Override
+        public Piece.PieceType getGrid(int x, int y) {
+            cells++;
+            return board.getGrid(x, y);
+        }
+
+        @Override
+        public int getColumnHeight(int x) {
+            heights++;
+            return board.getColumnHeight(x);
+        }
+
+        @Override
+        public int getRowWidth(int y) { return board.getRowWidth(y); }
+
+        @Override
+        public int getRowsCleared() { return board.getRowsCleared(); }
+
+        @Override
+        public int getWidth() { return board.getWidth(); }
+
+        @Override
+        public int getHeight() { return board.getHeight(); }
+
+        @Override
+        public int getMaxHeight() { return board.getMaxHeight(); }
+
+        @Override
+        public Result move(Action act) { return board.move(act); }
+
+        @Override
+        public Board testMove(Action act) { return board.testMove(act); }
+
+        @Override
+        public Piece getCurrentPiece() { return board.getCurrentPiece(); }
+
+        @Override
+        public Point getCurrentPiecePosition() { return board.getCurrentPiecePosition(); }
+
+        @Override
+        public void nextPiece(Piece p, Point startingPosition) { board.nextPiece(p, startingPosition); }
+
+        @Override
+        public Result getLastResult() { return board.getLastResult(); }
+
+        @Override
+        public Action getLastAction() { return board.getLastAction(); }
+
+        @Override
+        public int dropHeight(Piece piece, int x) { return board.dropHeight(piece, x); }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int pieces = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        double[] weights = args.length > 2 ? JTetrisBrainHallOfFame.readWeights(args[2], 1).get(0)
+                : new TetrisBrain().getPopulation()[0].getWeights();
+
+        FeatureProfiler profiler = new FeatureProfiler(4096);
+        TetrisBrain brain = new TetrisBrain(weights) {
+            @Override
+            public double[] getBoardInfo(Board board) {
+                profiler.observe(board);
+                return super.getBoardInfo(board);
+            }
+        };
+        for (long seed = 1; seed <= games; seed++) {
+            HeadlessTetris tetris = new HeadlessTetris(brain, seed, 0.75);
+            tetris.startGame();
+            tetris.playUntil(pieces);
+        }
+        System.out.printf("%d getBoardInfo calls, %d boards sampled%n", profiler.getCalls(), profiler.getSampleSize());
+        System.out.print(table(profiler.profile(weights)));
+    }
+}
@@ -0,0 +1,14 @@
+package tetris;
+
+/**
+ * Notified whenever an individual finishes a game during a generation, so the game can be logged before the generation ends.
+ */
+public interface GameRecorder {
+    /**
+     * Called once per complete game
+     * @param individual, the index of the individual in the population array
+     * @param trial, which of the individual's games this was, counting from 0
+     * @param result, the outcome of the game
+     */
+    void gameFinished(int individual, int trial, GameResult result);
+}
@@ -0,0 +1,54 @@
+package tetris;
+
+/**
+ * The outcome of a single headless game played by one brain on one seed.
+ */
+public class GameResult {
+    private long seed;
+    private int rowsCleared;
+    private int piecesPlaced;
+    private double fitness;
+
+    /**
+     * Records the outcome of a finished game
+     * @param seed, the seed used to generate the piece sequence
+     * @param rowsCleared, the total number of rows cleared during the game
+     * @param piecesPlaced, the number of pieces placed before the game ended
+     * @param fitness, the brain's fitness of the final board
+     */
+    public GameResult(long seed, int rowsCleared, int piecesPlaced, double fitness) {
+        this.seed = seed;
+        this.rowsCleared = rowsCleared;
+        this.piecesPlaced = piecesPlaced;
+        this.fitness = fitness;
+    }
+
+    /**
+     * Retrieves the seed the game was played on
+     * @return the piece sequence seed
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Retrieves the total rows cleared, which is what the trainer uses as the game's score
+     * @return the total number of rows cleared
+     */
+    public int getRowsCleared() { return rowsCleared; }
+
+    /**
+     * Retrieves the number of pieces placed before the game ended
+     * @return the number of pieces placed
+     */
+    public int getPiecesPlaced() { return piecesPlaced; }
+
+    /**
+     * Retrieves the fitness of the final board
+     * @return the fitness calculated from calcFitness
+     */
+    public double getFitness() { return fitness; }
+
+    @Override
+    public String toString() {
+        return "seed " + seed + ": " + rowsCleared + " rows, " + piecesPlaced + " pieces";
+    }
+}
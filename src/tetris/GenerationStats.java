@@ -0,0 +1,46 @@
+package tetris;
+
+/**
+ * Running totals of the games played while evaluating one generation, used by the trainer's generation summary.
+ */
+public class GenerationStats {
+    int games;
+    int cachedGames;
+    long piecesSimulated;
+    int maxRowsCleared = 0, maxPiecesPlaced = 0;
+    int minRowsCleared = Integer.MAX_VALUE, minPiecesPlaced = Integer.MAX_VALUE;
+
+    /**
+     * Adds a finished (or stopped) game to the totals
+     * @param result, the outcome of the game
+     */
+    public void record(GameResult result) {
+        games++;
+        piecesSimulated += result.getPiecesPlaced();
+        updateExtremes(result);
+    }
+
+    /**
+     * Adds a game whose result was reused instead of played; it counts towards the extremes but not the work done
+     * @param result, the stored outcome of the game
+     */
+    public void recordCached(GameResult result) {
+        cachedGames++;
+        updateExtremes(result);
+    }
+
+    private void updateExtremes(GameResult result) {
+        maxRowsCleared = Math.max(maxRowsCleared, result.getRowsCleared());
+        minRowsCleared = Math.min(minRowsCleared, result.getRowsCleared());
+        maxPiecesPlaced = Math.max(maxPiecesPlaced, result.getPiecesPlaced());
+        minPiecesPlaced = Math.min(minPiecesPlaced, result.getPiecesPlaced());
+    }
+
+    public int getGames() { return games; }
+    public int getCachedGames() { return cachedGames; }
+    public long getPiecesSimulated() { return piecesSimulated; }
+    public int getMaxRowsCleared() { return maxRowsCleared; }
+    public int getMinRowsCleared() { return minRowsCleared; }
+    public int getMaxPiecesPlaced() { return maxPiecesPlaced; }
+    public int getMinPiecesPlaced() { return minPiecesPlaced; }
+}
@@ -0,0 +1,68 @@
+package tetris;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * The trainer's genetic algorithm behind the Optimizer interface: the whole population is scored every generation,
+ * then survivors, crossover, mutation and immigrants are applied with the trainer's rates.
+ */
+public class GeneticOptimizer implements Optimizer {
+    private JTetrisBrainIndividual[] pop;
+    private TetrisBrain brain;
+    private Random random = new Random();
+    private JTetrisBrainIndividual best;
+
+    /**
+     * Creates a genetic algorithm over a random population
+     * @param size, the number of brains in the population
+     */
+    public GeneticOptimizer(int size) {
+        this(randomPopulation(size));
+    }
+
+    /**
+     * Creates a genetic algorithm whose first generation is the given population
+     * @param pop, the brains of the first generation, e.g. read from the population file
+     */
+    public GeneticOptimizer(JTetrisBrainIndividual[] pop) {
+        this.pop = pop;
+        brain = new TetrisBrain(pop);
+    }
+
+    private static JTetrisBrainIndividual[] randomPopulation(int size) {
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[size];
+        for (int i = 0; i < size; i++) pop[i] = new JTetrisBrainIndividual();
+        return pop;
+    }
+
+    @Override
+    public JTetrisBrainIndividual[] ask() {
+        return pop;
+    }
+
+    @Override
+    public void tell(JTetrisBrainIndividual[] evaluated) {
+        pop = evaluated;
+        Arrays.sort(pop, new Comparator<JTetrisBrainIndividual>() {
+            @Override
+            public int compare(JTetrisBrainIndividual i1, JTetrisBrainIndividual i2) {
+                return Double.compare(i2.getScore(), i1.getScore());
+            }
+        });
+        best = new JTetrisBrainIndividual(pop[0].getWeights().clone());
+        best.setScore(pop[0].getScore());
+        JTetrisBrainTrainer.breed(brain, pop, random);
+    }
+
+    @Override
+    public JTetrisBrainIndividual getBest() {
+        return best == null ? pop[0] : best;
+    }
+
+    @Override
+    public String getName() {
+        return "GA";
+    }
+}
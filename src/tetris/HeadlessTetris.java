@@ -0,0 +1,227 @@
+package tetris;
+
+import java.awt.Point;
+import java.util.Random;
+
+import tetris.Piece.PieceType;
+
+/**
+ * Plays a game of Tetris with the brain without any of the Swing machinery in JTetris.
+ * Pieces come from a seeded random generator, so several brains can be compared on the exact same game,
+ * and the game can be advanced a few pieces at a time instead of all at once.
+ */
+public class HeadlessTetris {
+    // The 7 canonical tetris pieces, in the same order as JTetris so a seed produces the same game
+    public static final Piece[] PIECES = new Piece[] {
+        TetrisPiece.getPiece(PieceType.STICK),
+        TetrisPiece.getPiece(PieceType.SQUARE),
+        TetrisPiece.getPiece(PieceType.T),
+        TetrisPiece.getPiece(PieceType.LEFT_L),
+        TetrisPiece.getPiece(PieceType.RIGHT_L),
+        TetrisPiece.getPiece(PieceType.LEFT_DOG),
+        TetrisPiece.getPiece(PieceType.RIGHT_DOG)
+    };
+
+    protected TetrisBoard board;
+    protected TetrisBrain brain;
+    protected Random random;
+    protected long seed;
+    protected double boardPercentage;
+    protected int count;
+    protected boolean gameOn;
+    // The flight recorder event of the game being played, committed when it is over
+    private TetrisEvents.Game gameEvent;
+
+    /**
+     * Creates a game for a brain with the given weights on the given seed.
+     * @param weights, the weights of the brain playing the game
+     * @param seed, the seed of the piece sequence
+     * @param boardPercentage, the fraction of the board height the stack may reach before the game is over
+     */
+    public HeadlessTetris(double[] weights, long seed, double boardPercentage) {
+        this(new TetrisBrain(weights), seed, boardPercentage);
+    }
+
+    /**
+     * Creates a game for an existing brain on the given seed.
+     * The brain plays with whichever individual is currently selected in it.
+     * @param brain, the brain playing the game
+     * @param seed, the seed of the piece sequence
+     * @param boardPercentage, the fraction of the board height the stack may reach before the game is over
+     */
+    public HeadlessTetris(TetrisBrain brain, long seed, double boardPercentage) {
+        this.brain = brain;
+        this.seed = seed;
+        this.boardPercentage = boardPercentage;
+    }
+
+    /**
+     * Resets the board and the piece generator to the start of the seed and spawns the first piece.
+     */
+    public void startGame() {
+        board = new TetrisBoard(JTetris.WIDTH, JTetris.HEIGHT + JTetris.TOP_SPACE);
+        brain.clearMoves();
+        count = 0;
+        gameOn = true;
+        random = new Random(seed);
+        if (Metrics.ENABLED) Metrics.GAMES.increment();
+        gameEvent = new TetrisEvents.Game();
+        gameEvent.begin();
+        addNewPiece();
+    }
+
+    /**
+     * Lets the brain move until the current piece is placed or the game ends.
+     * @return whether the game is still going
+     */
+    public boolean playPiece() {
+        int placed = board.getScore();
+        while (gameOn && board.getScore() == placed) {
+            tick(brain.nextMove(board));
+        }
+        return gameOn;
+    }
+
+    /**
+     * Plays pieces until the given number of pieces has been placed or the game ends.
+     * @param pieces, the total number of placed pieces to stop at
+     * @return whether the game is still going
+     */
+    public boolean playUntil(int pieces) {
+        while (gameOn && board.getScore() < pieces) {
+            playPiece();
+        }
+        return gameOn;
+    }
+
+    /**
+     * Plays the game until it is over.
+     * @return the result of the finished game
+     */
+    public GameResult playToEnd() {
+        while (gameOn) {
+            tick(brain.nextMove(board));
+        }
+        return getResult();
+    }
+
+    /**
+     * Applies one action of the brain, mirroring JTetrisBrainTrainer.tick:
+     * the game stops when the stack grows past the allowed height, and a new piece is spawned after every placement.
+     * @param verb, the input action
+     */
+    protected void tick(Board.Action verb) {
+        Piece piece = board.getCurrentPiece();
+        Board.Result result = board.move(verb);
+
+        switch (result) {
+          case SUCCESS:
+            if (isOverHeight()) stopGame();
+            break;
+          case OUT_BOUNDS:
+            break;
+          case PLACE:
+            TetrisEvents.placed(board, piece);
+            if (isOverHeight()) stopGame();
+            else spawnAfterPlacement();
+            break;
+          case NO_PIECE:
+            spawnAfterPlacement();
+            break;
+        }
+    }
+
+    // Spawns the next piece once the last one is down, ending the game if the stack is now too high
+    private void spawnAfterPlacement() {
+        if (gameOn) {
+            addNewPiece();
+        }
+        if (isOverHeight()) stopGame();
+    }
+
+    /**
+     * Spawns the next piece at the middle of the spawning area, ending the game if it does not fit.
+     */
+    protected void addNewPiece() {
+        count++;
+        if (Metrics.ENABLED) Metrics.PIECES.increment();
+        Piece nextPiece = pickNextPiece();
+        board.nextPiece(nextPiece, new Point(board.getWidth() / 2 - nextPiece.getWidth() / 2, JTetris.HEIGHT));
+        if (board.getCurrentPiece() == null) stopGame();
+    }
+
+    /**
+     * Selects the next piece using the seeded random generator.
+     */
+    protected Piece pickNextPiece() {
+        return PIECES[random.nextInt(PIECES.length)];
+    }
+
+    /**
+     * Ends the game.
+     */
+    public void stopGame() {
+        gameOn = false;
+        if (gameEvent != null && gameEvent.shouldCommit()) {
+            gameEvent.seed = seed;
+            gameEvent.piecesPlaced = board.getScore();
+            gameEvent.rowsCleared = board.getTotalRowsCleared();
+            gameEvent.commit();
+        }
+        gameEvent = null;
+    }
+
+    private boolean isOverHeight() {
+        return board.getMaxHeight() > JTetris.HEIGHT * boardPercentage;
+    }
+
+    /**
+     * Summarizes the game so far; only final once the game is over.
+     * @return the rows cleared, pieces placed and final-board fitness of the game
+     */
+    public GameResult getResult() {
+        return new GameResult(seed, board.getTotalRowsCleared(), board.getScore(), brain.calcFitness(board));
+    }
+
+    /**
+     * Retrieves whether the game is still going
+     * @return true if the game has not ended
+     */
+    public boolean isGameOn() { return gameOn; }
+
+    /**
+     * Retrieves the board of the game
+     * @return the current TetrisBoard
+     */
+    public TetrisBoard getBoard() { return board; }
+
+    /**
+     * Retrieves the brain playing the game
+     * @return the TetrisBrain making the moves
+     */
+    public TetrisBrain getBrain() { return brain; }
+
+    /**
+     * Retrieves the seed of the piece sequence
+     * @return the seed
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Retrieves the number of pieces spawned so far, including the one in play
+     * @return the number of pieces spawned
+     */
+    public int getCount() { return count; }
+
+    /**
+     * Retrieves the number of pieces placed so far
+     * @return the number of pieces placed
+     */
+    public int getPiecesPlaced() { return board.getScore(); }
+
+    /**
+     * Retrieves the number of rows cleared so far
+     * @return the total number of rows cleared
+     */
+    public int getRowsCleared() { return board.getTotalRowsCleared(); }
+}
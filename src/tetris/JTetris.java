@@ -83,6 +83,16 @@ public class JTetris extends JComponent {
     // Board data structure
     protected Board board;
 
+    // Pixel tables for paintComponent, rebuilt when the component or the board changes size
+    private int tableWidth;
+    private int tableHeight;
+    private int[] xPixels;        // the left pixel of each column, and the right edge after the last
+    private int[] yPixels;        // the top pixel of each row
+    private int blockWidth;
+    private int blockHeight;
+    private boolean[] pieceCells; // the cells of the falling piece while a frame is painted, by x * height + y
+    private final Rectangle clipBounds = new Rectangle();
+
     // State of the game
     protected boolean gameOn;    // true if we are playing
     protected int count;        // how many pieces played so far
@@ -101,13 +111,13 @@ public class JTetris extends JComponent {
 
     // The 7 canonical tetris pieces.
     public final Piece[] PIECES = new Piece[] {
-        new TetrisPiece(PieceType.STICK),
-        new TetrisPiece(PieceType.SQUARE),
-        new TetrisPiece(PieceType.T),
-        new TetrisPiece(PieceType.LEFT_L),
-        new TetrisPiece(PieceType.RIGHT_L),
-        new TetrisPiece(PieceType.LEFT_DOG),
-        new TetrisPiece(PieceType.RIGHT_DOG)
+        TetrisPiece.getPiece(PieceType.STICK),
+        TetrisPiece.getPiece(PieceType.SQUARE),
+        TetrisPiece.getPiece(PieceType.T),
+        TetrisPiece.getPiece(PieceType.LEFT_L),
+        TetrisPiece.getPiece(PieceType.RIGHT_L),
+        TetrisPiece.getPiece(PieceType.LEFT_DOG),
+        TetrisPiece.getPiece(PieceType.RIGHT_DOG)
     };
 
     JTetris() {
@@ -214,6 +224,7 @@ public class JTetris extends JComponent {
         gameOn = true;
 
         random = new Random(); // diff seq each game
+        if (Metrics.ENABLED) Metrics.GAMES.increment();
 
         enableButtons();
         timeLabel.setText(" ");
@@ -256,6 +267,7 @@ public class JTetris extends JComponent {
      */
     public void addNewPiece() {
         count++;
+        if (Metrics.ENABLED) Metrics.PIECES.increment();
         Piece nextPiece = pickNextPiece();
         try {
             board.nextPiece(nextPiece, new Point(board.getWidth() / 2 - nextPiece.getWidth() / 2, HEIGHT));
@@ -327,49 +339,71 @@ public class JTetris extends JComponent {
         return(Math.round(getHeight() -1 - (y+1)*dY()));
     }
 
+    /**
+     * Rebuilds the pixel tables when the component or the board has changed size since they were last built,
+     * so painting a frame looks pixel coords up instead of recomputing them for every block.
+     */
+    private void updatePixelTables() {
+        int bWidth = board.getWidth();
+        int bHeight = board.getHeight();
+        if (xPixels != null && tableWidth == getWidth() && tableHeight == getHeight()
+                && xPixels.length == bWidth + 1 && yPixels.length == bHeight) {
+            return;
+        }
+        tableWidth = getWidth();
+        tableHeight = getHeight();
+        xPixels = new int[bWidth + 1];
+        for (int x = 0; x <= bWidth; x++) xPixels[x] = xPixel(x);
+        yPixels = new int[bHeight];
+        for (int y = 0; y < bHeight; y++) yPixels[y] = yPixel(y);
+        blockWidth = Math.round(dX() - 2);
+        blockHeight = Math.round(dY() - 2);
+        pieceCells = new boolean[bWidth * bHeight];
+    }
+
     /**
      * Draws the current board with a 1 pixel border
-     * around the whole thing. Uses the pixel helpers
-     * above to map board coords to pixel coords.
+     * around the whole thing. Uses the pixel tables
+     * built from the helpers above to map board coords
+     * to pixel coords, and allocates nothing per block.
      * Draws rows that are filled all the way across in green.
      */
     public void paintComponent(Graphics g) {
+        updatePixelTables();
 
         // Draw a rect around the whole thing
         g.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
 
         // Draw the line separating the top
-        int spacerY = yPixel(board.getHeight() - TOP_SPACE - 1);
+        int spacerY = yPixels[board.getHeight() - TOP_SPACE - 1];
         g.drawLine(0, spacerY, getWidth() - 1, spacerY);
 
-        // check if we are drawing with clipping
+        // check if we are drawing with clipping; without a clip the bounds stay the whole component
         Rectangle clip = null;
         if (DRAW_OPTIMIZE) {
-            clip = g.getClipBounds();
+            clip = clipBounds;
+            clip.setBounds(0, 0, getWidth(), getHeight());
+            g.getClipBounds(clip);
         }
 
         // Factor a few things out to help the optimizer
-        final int dx = Math.round(dX() - 2);
-        final int dy = Math.round(dY() - 2);
+        final int dx = blockWidth;
+        final int dy = blockHeight;
         final int bWidth = board.getWidth();
         final int bHeight = board.getHeight();
 
-        // Keep a set of the piece positions, so they can be rendered specially.
-        Set<Point> currentPiecePositions = new HashSet<>();
+        // Mark the piece positions, so they can be rendered specially.
         Piece currentPiece = board.getCurrentPiece();
-        if(currentPiece != null) {
-            Point position = board.getCurrentPiecePosition();
-            for(Point offset : currentPiece.getBody()) {
-                currentPiecePositions.add(new Point(position.x + offset.x, position.y + offset.y));
-            }
-        }
+        Point position = board.getCurrentPiecePosition();
+        if(currentPiece != null) markPiece(currentPiece, position, true);
 
         // Loop through and draw all the blocks: left-right, bottom-top
+        Color color = null;
         for (int x = 0; x < bWidth; x++) {
-            int left = xPixel(x); // the left pixel
+            int left = xPixels[x]; // the left pixel
 
             // right pixel (useful for clip optimization)
-            int right = xPixel(x + 1) - 1;
+            int right = xPixels[x + 1] - 1;
 
             // skip this x if it is outside the clip rect
             if (DRAW_OPTIMIZE && clip != null) {
@@ -381,17 +415,34 @@ public class JTetris extends JComponent {
             // draw from 0 up to the col height
             for (int y = 0; y < bHeight; y++) {
                 Piece.PieceType pieceType = board.getGrid(x, y);
-                
+
                 // Special case if this position is part of the currently active piece.
-                if(currentPiecePositions.contains(new Point(x, y))) pieceType = currentPiece.getType();
+                if(pieceCells[x * bHeight + y]) pieceType = currentPiece.getType();
 
                 if (pieceType != null) {
+                    // Blocks of a color are mostly next to each other, so the color rarely has to change
+                    if (pieceType.getColor() != color) {
+                        color = pieceType.getColor();
+                        g.setColor(color);
+                    }
                     // +1 to leave a white border
-                    g.setColor(pieceType.getColor());
-                    g.fillRect(left + 1, yPixel(y) + 1, dx, dy);
+                    g.fillRect(left + 1, yPixels[y] + 1, dx, dy);
                 }
             }
         }
+
+        if(currentPiece != null) markPiece(currentPiece, position, false);
+    }
+
+    // Sets or clears the cells of a piece in pieceCells, skipping the ones outside the board
+    private void markPiece(Piece piece, Point position, boolean mark) {
+        int bWidth = board.getWidth();
+        int bHeight = board.getHeight();
+        for(Point offset : piece.getBody()) {
+            int x = position.x + offset.x;
+            int y = position.y + offset.y;
+            if (x >= 0 && x < bWidth && y >= 0 && y < bHeight) pieceCells[x * bHeight + y] = mark;
+        }
     }
 
     /**
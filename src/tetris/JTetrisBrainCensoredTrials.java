@@ -0,0 +1,125 @@
+package tetris;
+
+/**
+ * Evaluates a population with a hard cap on the pieces any one game may place, so a single strong individual can no
+ * longer take most of a generation's time. A game stopped by the cap is right-censored: the individual was still
+ * alive, so its rows cleared understate how well it plays. Instead of ranking by raw rows, each individual is ranked
+ * by the rows it is expected to clear per game under a constant per-piece hazard of topping out, estimated from
+ * the games it actually lost and the pieces it survived in all of its games.
+ */
+public class JTetrisBrainCensoredTrials implements JTetrisBrainEvaluator {
+    private int pieceBudget;
+    private double boardPercentage;
+    private GameRecorder recorder;
+
+    /**
+     * Creates a capped evaluator
+     * @param pieceBudget, the most pieces a game may place before it is stopped and treated as censored
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     */
+    public JTetrisBrainCensoredTrials(int pieceBudget, double boardPercentage) {
+        this.pieceBudget = pieceBudget;
+        this.boardPercentage = boardPercentage;
+    }
+
+    /**
+     * Reports every game that is played
+     * @param recorder, the recorder to notify, or null for none
+     */
+    @Override
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Plays every individual's games up to the piece budget and sets its score to the estimated rows per game
+     * and its fitness to its mean final-board fitness.
+     * @param pop, the population to evaluate
+     * @param seeds, the seeds every individual plays
+     * @param finished, games already finished (e.g. restored from a checkpoint) by individual and trial, or null
+     * @return how many games were censored and what they cost
+     */
+    @Override
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished) {
+        Report report = new Report();
+        report.pieceBudget = pieceBudget;
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < pop.length; i++) {
+            GameResult[] games = new GameResult[seeds.length];
+            TrialStats stats = new TrialStats();
+            for (int t = 0; t < seeds.length; t++) {
+                games[t] = finished != null && t < finished[i].length ? finished[i][t] : null;
+                if (games[t] == null) {
+                    HeadlessTetris game = new HeadlessTetris(pop[i].getWeights(), seeds[t], boardPercentage);
+                    game.startGame();
+                    game.playUntil(pieceBudget);
+                    games[t] = game.getResult();
+                    if (recorder != null) recorder.gameFinished(i, t, games[t]);
+                    report.record(games[t]);
+                }
+                else report.recordCached(games[t]);
+                if (isCensored(games[t], pieceBudget)) report.censored++;
+                stats.add(games[t]);
+            }
+            pop[i].setScore(expectedRows(games, pieceBudget));
+            pop[i].setFitness(stats.getFitness());
+            report.bestEstimate = Math.max(report.bestEstimate, pop[i].getScore());
+        }
+        report.millis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /**
+     * Whether a game was stopped by the budget rather than lost. A game lost on exactly its last allowed piece
+     * cannot be told apart from one that was stopped, so it counts as censored too.
+     * @param result, the game
+     * @param pieceBudget, the budget it was played under
+     * @return true if the game reached the budget
+     */
+    public static boolean isCensored(GameResult result, int pieceBudget) {
+        return pieceBudget > 0 && result.getPiecesPlaced() >= pieceBudget;
+    }
+
+    /**
+     * Estimates the rows an individual clears in an uncapped game. The per-piece hazard is the number of games
+     * lost divided by the pieces placed over all games, and the expected game length is its inverse; when no game
+     * was lost, half a loss is assumed so the estimate stays finite but still beats anybody who did lose one.
+     * The expected length is turned into rows with the individual's observed rows per piece.
+     * Without censoring this is just the mean rows cleared.
+     * @param games, the individual's games
+     * @param pieceBudget, the budget they were played under
+     * @return the estimated rows cleared per game
+     */
+    public static double expectedRows(GameResult[] games, int pieceBudget) {
+        double losses = 0, pieces = 0, rows = 0;
+        for (GameResult g : games) {
+            if (!isCensored(g, pieceBudget)) losses++;
+            pieces += g.getPiecesPlaced();
+            rows += g.getRowsCleared();
+        }
+        if (pieces == 0) return 0;
+        if (losses == 0) losses = 0.5;
+
+        double expectedPieces = pieces / losses;
+        return rows / pieces * expectedPieces;
+    }
+
+    /**
+     * How many games hit the budget.
+     */
+    public static class Report extends GenerationStats {
+        int pieceBudget;
+        int censored;
+        double bestEstimate;
+        long millis;
+
+        public int getCensored() { return censored; }
+
+        @Override
+        public String toString() {
+            return String.format("Piece budget %d: %d of %d games censored, %d pieces in %.2fs, best estimated %.1f rows per game",
+                    pieceBudget, censored, games + cachedGames, piecesSimulated, millis / 1000.0, bestEstimate);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package tetris;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only binary history of a training run, so a crash loses at most the game that was being played.
+ *
+ * The file holds a small header followed by records, each written as a type byte, the payload length, the payload
+ * and a CRC32 of the type and payload:
+ * START (a generation's population and seeds, before any game is played), GAME (one finished game of an individual)
+ * and END (the generation's population sorted by score, like the text population file).
+ * A record is only trusted if its CRC matches, so a record torn by a crash is cut off the next time the file is opened.
+ *
+ * A side index file holds the offset of every START record (12 bytes per generation), so any generation can be
+ * loaded with one seek. It is rebuilt from the records if it is missing or behind.
+ *
+ * GAME records reach the operating system as soon as they are written, which is enough to survive the trainer crashing;
+ * the file is forced to disk at every generation boundary.
+ */
+public class JTetrisBrainCheckpoint implements Closeable {
+    private static final int MAGIC = 0x54424350; // "TBCP"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 10;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final byte START = 1, GAME = 2, END = 3;
+
+    private FileChannel data;
+    private FileChannel index;
+    private int weightCount;
+    private List<Long> startOffsets = new ArrayList<>();
+    private List<Integer> startGenerations = new ArrayList<>();
+
+    /**
+     * Opens (or creates) a checkpoint and its index, dropping any torn record at the end of the file
+     * @param fileName, the checkpoint file; the index is stored next to it with an ".idx" suffix
+     * @param weightCount, the number of weights per individual
+     * @throws IOException if the file cannot be read or written, or is not a checkpoint for this many weights
+     */
+    public JTetrisBrainCheckpoint(String fileName, int weightCount) throws IOException {
+        this.weightCount = weightCount;
+        Path path = Paths.get(fileName);
+        data = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(Paths.get(fileName + ".idx"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (data.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).putInt(weightCount).flip();
+            data.truncate(0);
+            writeFully(data, header, 0);
+            data.force(true);
+            index.truncate(0);
+            return;
+        }
+
+        ByteBuffer header = readFully(data, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getShort() != VERSION || header.getInt() != weightCount) {
+            throw new IOException(fileName + " is not a checkpoint for " + weightCount + " weights");
+        }
+        recover();
+    }
+
+    /**
+     * Loads the trusted part of the index, then scans the records after the last indexed START, adding any START the index
+     * missed and cutting the file at the first record that does not check out.
+     */
+    private void recover() throws IOException {
+        long scanFrom = HEADER_SIZE;
+        long entries = index.size() / INDEX_ENTRY_SIZE;
+        ByteBuffer all = entries == 0 ? ByteBuffer.allocate(0) : readFully(index, 0, (int)(entries * INDEX_ENTRY_SIZE));
+
+        for (long e = 0; e < entries; e++) {
+            int generation = all.getInt();
+            long offset = all.getLong();
+            Record record = offset < data.size() ? readRecord(offset) : null;
+            if (record == null || record.type != START || record.payload.getInt() != generation) break;
+
+            startGenerations.add(generation);
+            startOffsets.add(offset);
+            scanFrom = record.next;
+        }
+        index.truncate((long)startOffsets.size() * INDEX_ENTRY_SIZE);
+
+        long offset = scanFrom;
+        Record record;
+        while ((record = readRecord(offset)) != null) {
+            if (record.type == START) addToIndex(record.payload.getInt(), offset);
+            offset = record.next;
+        }
+        data.truncate(offset);
+    }
+
+    /**
+     * Records a generation's population and seeds before it plays, and forces everything written so far to disk
+     * @param generation, the generation number
+     * @param pop, the population in the order it is evaluated in
+     * @param seeds, the seeds the generation's games are played on
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void startGeneration(int generation, JTetrisBrainIndividual[] pop, long[] seeds) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(12 + 8 * seeds.length + 8 * weightCount * pop.length);
+        payload.putInt(generation).putInt(pop.length).putInt(seeds.length);
+        for (long seed : seeds) payload.putLong(seed);
+        for (JTetrisBrainIndividual individual : pop) {
+            for (int w = 0; w < weightCount; w++) payload.putDouble(individual.getWeights()[w]);
+        }
+
+        long offset = append(START, payload);
+        data.force(true);
+        addToIndex(generation, offset);
+        index.force(true);
+    }
+
+    /**
+     * Records one finished game of the current generation
+     * @param generation, the generation number
+     * @param individual, the index of the individual in the population the generation started with
+     * @param trial, which of the individual's games this was
+     * @param result, the outcome of the game
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void recordGame(int generation, int individual, int trial, GameResult result) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(36);
+        payload.putInt(generation).putInt(individual).putInt(trial).putLong(result.getSeed())
+            .putInt(result.getRowsCleared()).putInt(result.getPiecesPlaced()).putDouble(result.getFitness());
+        append(GAME, payload);
+    }
+
+    /**
+     * Records a generation's population sorted by score, the same snapshot the text population file gets
+     * @param generation, the generation number
+     * @param sorted, the population sorted from best to worst
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void endGeneration(int generation, JTetrisBrainIndividual[] sorted) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(8 + (8 * weightCount + 16) * sorted.length);
+        payload.putInt(generation).putInt(sorted.length);
+        for (JTetrisBrainIndividual individual : sorted) {
+            for (int w = 0; w < weightCount; w++) payload.putDouble(individual.getWeights()[w]);
+            payload.putDouble(individual.getScore()).putDouble(individual.getFitness());
+        }
+        append(END, payload);
+    }
+
+    /**
+     * Finds where training should pick up: the last generation that was started, with every game it finished.
+     * If that generation had already ended, it comes back with its sorted population, which the next generation
+     * is to be bred from; it is not to be played again.
+     * @return the generation to resume, or null if the checkpoint is empty
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized Generation resume() throws IOException {
+        if (startOffsets.isEmpty()) return null;
+        return loadGeneration(getLastGeneration());
+    }
+
+    /**
+     * Loads any recorded generation with a single seek through the index
+     * @param generation, the generation number
+     * @return the generation's starting population, seeds, finished games and, if it ended, its sorted population
+     * @throws IOException if the generation is not in the checkpoint or cannot be read
+     */
+    public synchronized Generation loadGeneration(int generation) throws IOException {
+        int position = startGenerations.lastIndexOf(generation);
+        if (position < 0) throw new IOException("generation " + generation + " is not in the checkpoint");
+
+        Record record = readRecord(startOffsets.get(position));
+        Generation loaded = new Generation();
+        loaded.started = true;
+        ByteBuffer payload = record.payload;
+        loaded.number = payload.getInt();
+        int size = payload.getInt();
+        loaded.seeds = new long[payload.getInt()];
+        for (int s = 0; s < loaded.seeds.length; s++) loaded.seeds[s] = payload.getLong();
+        loaded.population = new JTetrisBrainIndividual[size];
+        for (int i = 0; i < size; i++) loaded.population[i] = new JTetrisBrainIndividual(readWeights(payload));
+
+        List<int[]> slots = new ArrayList<>();
+        List<GameResult> games = new ArrayList<>();
+        int trials = loaded.seeds.length;
+        while ((record = readRecord(record.next)) != null && record.type != START) {
+            payload = record.payload;
+            if (payload.getInt() != generation) continue;
+
+            if (record.type == GAME) {
+                int individual = payload.getInt();
+                int trial = payload.getInt();
+                games.add(new GameResult(payload.getLong(), payload.getInt(), payload.getInt(), payload.getDouble()));
+                slots.add(new int[]{individual, trial});
+                trials = Math.max(trials, trial + 1);
+            }
+            else if (record.type == END) {
+                loaded.sorted = new JTetrisBrainIndividual[payload.getInt()];
+                for (int i = 0; i < loaded.sorted.length; i++) {
+                    loaded.sorted[i] = new JTetrisBrainIndividual(readWeights(payload));
+                    loaded.sorted[i].setScore(payload.getDouble());
+                    loaded.sorted[i].setFitness(payload.getDouble());
+                }
+            }
+        }
+
+        loaded.completed = new GameResult[size][trials];
+        for (int g = 0; g < games.size(); g++) loaded.completed[slots.get(g)[0]][slots.get(g)[1]] = games.get(g);
+        return loaded;
+    }
+
+    /**
+     * Retrieves the number of the first generation in the checkpoint
+     * @return the first generation, or -1 if there is none
+     */
+    public synchronized int getFirstGeneration() {
+        return startGenerations.isEmpty() ? -1 : startGenerations.get(0);
+    }
+
+    /**
+     * Retrieves the number of the last generation started in the checkpoint
+     * @return the last generation, or -1 if there is none
+     */
+    public synchronized int getLastGeneration() {
+        return startGenerations.isEmpty() ? -1 : startGenerations.get(startGenerations.size() - 1);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        data.force(true);
+        data.close();
+        index.close();
+    }
+
+    private double[] readWeights(ByteBuffer payload) {
+        double[] weights = new double[weightCount];
+        for (int w = 0; w < weightCount; w++) weights[w] = payload.getDouble();
+        return weights;
+    }
+
+    private void addToIndex(int generation, long offset) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putInt(generation).putLong(offset).flip();
+        writeFully(index, entry, (long)startOffsets.size() * INDEX_ENTRY_SIZE);
+        startGenerations.add(generation);
+        startOffsets.add(offset);
+    }
+
+    /**
+     * Appends a record in a single write at the end of the file
+     * @return the offset the record was written at
+     */
+    private long append(byte type, ByteBuffer payload) throws IOException {
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(9 + payload.remaining());
+        record.put(type).putInt(payload.remaining()).put(payload).putInt((int)crc.getValue()).flip();
+
+        long offset = data.size();
+        writeFully(data, record, offset);
+        return offset;
+    }
+
+    /**
+     * Reads the record at the given offset
+     * @return the record, or null if the file ends there or the record is torn or corrupt
+     */
+    private Record readRecord(long offset) throws IOException {
+        if (offset + 9 > data.size()) return null;
+        ByteBuffer head = readFully(data, offset, 5);
+        byte type = head.get();
+        int length = head.getInt();
+        if (length < 0 || offset + 9 + length > data.size()) return null;
+
+        ByteBuffer body = readFully(data, offset + 5, length + 4);
+        ByteBuffer payload = body.duplicate();
+        payload.limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload.duplicate());
+        if ((int)crc.getValue() != body.getInt(length)) return null;
+
+        Record record = new Record();
+        record.type = type;
+        record.payload = payload;
+        record.next = offset + 9 + length;
+        return record;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("unexpected end of checkpoint");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static class Record {
+        byte type;
+        ByteBuffer payload;
+        long next;
+    }
+
+    /**
+     * One generation as stored in the checkpoint.
+     */
+    public static class Generation {
+        int number;
+        boolean started;
+        long[] seeds;
+        JTetrisBrainIndividual[] population;
+        JTetrisBrainIndividual[] sorted;
+        GameResult[][] completed;
+
+        /**
+         * Retrieves the generation number
+         * @return the generation number
+         */
+        public int getNumber() { return number; }
+
+        /**
+         * Retrieves whether the generation's START record exists, i.e. it does not need to be started again
+         * @return true if the generation was started
+         */
+        public boolean isStarted() { return started; }
+
+        /**
+         * Retrieves the seeds the generation plays on
+         * @return the seeds
+         */
+        public long[] getSeeds() { return seeds; }
+
+        /**
+         * Retrieves the population in the order it is evaluated in
+         * @return the population
+         */
+        public JTetrisBrainIndividual[] getPopulation() { return population; }
+
+        /**
+         * Retrieves the population sorted by score
+         * @return the sorted population with scores, or null if the generation never ended
+         */
+        public JTetrisBrainIndividual[] getSorted() { return sorted; }
+
+        /**
+         * Retrieves whether the generation's END record exists, i.e. every game was played and it was sorted
+         * @return true if the generation ended
+         */
+        public boolean isEnded() { return sorted != null; }
+
+        /**
+         * Retrieves the games finished before the checkpoint was written, by individual and trial
+         * @return the finished games, with null for games that still have to be played
+         */
+        public GameResult[][] getCompleted() { return completed; }
+
+        /**
+         * Retrieves a finished game
+         * @param individual, the index of the individual
+         * @param trial, which of the individual's games
+         * @return the game, or null if it still has to be played
+         */
+        public GameResult getCompleted(int individual, int trial) {
+            if (individual >= completed.length || trial >= completed[individual].length) return null;
+            return completed[individual][trial];
+        }
+    }
+}
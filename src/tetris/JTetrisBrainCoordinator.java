@@ -0,0 +1,324 @@
+package tetris;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out (weights, seed) games to worker processes over TCP and collects their results, so a generation can use
+ * several JVMs and a crashed worker only costs the games it was playing. Every game given to a worker is leased:
+ * the worker must report back or send a heartbeat before the lease runs out, otherwise (or as soon as its connection
+ * drops) the game goes back to the front of the queue for another worker. Each hand-out is a lease of its own, so a
+ * worker whose lease ran out can neither extend nor give back the lease of the worker the game went to next. If a
+ * game ends up finished twice, the first result is kept.
+ */
+public class JTetrisBrainCoordinator implements Closeable {
+    // Sent by a worker when it connects
+    static final int MAGIC = 0x54425743;
+
+    // Message types, the first byte of every message; worker to coordinator
+    static final byte REQUEST = 1;
+    static final byte RESULT = 2;
+    static final byte HEARTBEAT = 3;
+    // Coordinator to worker
+    static final byte TASK = 1;
+    static final byte IDLE = 2;
+    static final byte SHUTDOWN = 3;
+
+    private ServerSocket server;
+    private long leaseMillis;
+    private volatile boolean open = true;
+    private LinkedBlockingDeque<Task> pending = new LinkedBlockingDeque<>();
+    private Map<Long, Lease> leased = new ConcurrentHashMap<>();
+    private List<Socket> connections = new ArrayList<>();
+    private GameRecorder recorder;
+    private long nextTaskId;
+    private volatile Generation current;
+
+    /**
+     * Starts listening for workers
+     * @param host, the address to listen on, e.g. "localhost" for workers on this machine only
+     * @param port, the port to listen on, or 0 for any free port
+     * @param leaseMillis, how long a worker may go without reporting on a game before it is handed to another worker
+     * @throws IOException if the port cannot be opened
+     */
+    public JTetrisBrainCoordinator(String host, int port, long leaseMillis) throws IOException {
+        this.leaseMillis = leaseMillis;
+        server = new ServerSocket(port, 50, InetAddress.getByName(host));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Retrieves the port workers should connect to
+     * @return the listening port
+     */
+    public int getPort() { return server.getLocalPort(); }
+
+    /**
+     * Reports every game as its first result arrives
+     * @param recorder, a thread-safe recorder to notify, or null for none
+     */
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Sends every game of the population to the workers and waits until all of them are back, then sets each
+     * individual's score to its mean rows cleared and its fitness to its mean final-board fitness.
+     * @param pop, the population to evaluate
+     * @param seeds, the seeds every individual plays
+     * @param finished, games already finished (e.g. restored from a checkpoint) by individual and trial, or null
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @return what the workers played and how many games had to be reassigned
+     * @throws InterruptedException if interrupted while waiting for results
+     */
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished, double boardPercentage)
+            throws InterruptedException {
+        List<Task> tasks = new ArrayList<>();
+        GameResult[][] results = new GameResult[pop.length][seeds.length];
+        for (int i = 0; i < pop.length; i++) {
+            for (int t = 0; t < seeds.length; t++) {
+                GameResult known = finished != null && t < finished[i].length ? finished[i][t] : null;
+                if (known != null) results[i][t] = known;
+                else tasks.add(new Task(nextTaskId++, i, t, pop[i].getWeights(), seeds[t], boardPercentage));
+            }
+        }
+
+        Report report = new Report();
+        Generation generation = new Generation(results, tasks, report);
+        current = generation;
+        long start = System.currentTimeMillis();
+        pending.addAll(tasks);
+
+        // Takes back games whose lease ran out while waiting for the rest
+        while (!generation.done.await(Math.max(10, leaseMillis / 4), TimeUnit.MILLISECONDS)) {
+            long now = System.currentTimeMillis();
+            for (Iterator<Lease> it = leased.values().iterator(); it.hasNext(); ) {
+                Lease lease = it.next();
+                if (lease.expires < now && leased.remove(lease.task.id, lease)) {
+                    synchronized (generation) { report.expired++; }
+                    pending.addFirst(lease.task);
+                }
+            }
+        }
+        current = null;
+        report.millis = System.currentTimeMillis() - start;
+
+        for (int i = 0; i < pop.length; i++) {
+            TrialStats stats = new TrialStats();
+            for (GameResult result : results[i]) stats.add(result);
+            pop[i].setScore(stats.getMean());
+            pop[i].setFitness(stats.getFitness());
+        }
+        return report;
+    }
+
+    /**
+     * Stops accepting workers and tells the connected ones to shut down
+     */
+    @Override
+    public void close() throws IOException {
+        open = false;
+        server.close();
+        synchronized (connections) {
+            for (Socket socket : connections) socket.close();
+        }
+    }
+
+    private void accept() {
+        while (open) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                synchronized (connections) { connections.add(socket); }
+                Thread handler = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                }, "coordinator-" + socket.getRemoteSocketAddress());
+                handler.setDaemon(true);
+                handler.start();
+            }
+            catch (IOException e) {
+                if (open) e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Talks to one worker until it disconnects, then puts back any game whose lease it still held.
+     */
+    private void serve(Socket socket) {
+        List<Lease> held = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            if (in.readInt() != MAGIC) return;
+            while (open) {
+                byte type = in.readByte();
+                if (type == REQUEST) {
+                    Task task = pending.poll(500, TimeUnit.MILLISECONDS);
+                    if (!open) break;
+                    if (task == null) {
+                        out.writeByte(IDLE);
+                        out.flush();
+                        continue;
+                    }
+                    Lease lease = new Lease(task, socket, System.currentTimeMillis() + leaseMillis);
+                    leased.put(task.id, lease);
+                    held.add(lease);
+                    out.writeByte(TASK);
+                    out.writeLong(task.id);
+                    out.writeDouble(task.boardPercentage);
+                    out.writeLong(task.seed);
+                    out.writeInt(task.weights.length);
+                    for (double w : task.weights) out.writeDouble(w);
+                    out.flush();
+                }
+                else if (type == HEARTBEAT) {
+                    Lease lease = leased.get(in.readLong());
+                    if (lease != null && lease.owner == socket) lease.expires = System.currentTimeMillis() + leaseMillis;
+                }
+                else if (type == RESULT) {
+                    long id = in.readLong();
+                    GameResult result = new GameResult(in.readLong(), in.readInt(), in.readInt(), in.readDouble());
+                    held.removeIf(l -> l.task.id == id);
+                    complete(id, result);
+                }
+                else return;
+            }
+            out.writeByte(SHUTDOWN);
+            out.flush();
+        }
+        catch (IOException | InterruptedException e) {
+            // The worker is gone; its games are handed out again below
+        }
+        finally {
+            // A lease that ran out may have been handed to another worker since; only the current one is given back
+            for (Lease lease : held) {
+                if (leased.remove(lease.task.id, lease)) {
+                    Generation generation = current;
+                    if (generation != null) synchronized (generation) { generation.report.reassigned++; }
+                    pending.addFirst(lease.task);
+                }
+            }
+            synchronized (connections) { connections.remove(socket); }
+        }
+    }
+
+    /**
+     * Keeps the first result of a game, even one whose lease had already run out, and drops any copy of the game
+     * still waiting to be handed out again. Whoever holds the game's lease is released, even when the game belongs
+     * to a generation that has already ended.
+     */
+    private void complete(long id, GameResult result) {
+        Lease lease = leased.remove(id);
+        Generation generation = current;
+        Task task = generation == null ? null : generation.tasks.get(id);
+        if (task == null) {
+            if (lease != null) pending.remove(lease.task);
+            return;
+        }
+        pending.remove(task);
+        synchronized (generation) {
+            if (generation.results[task.individual][task.trial] != null) return;
+            generation.results[task.individual][task.trial] = result;
+            generation.report.record(result);
+        }
+        if (recorder != null) recorder.gameFinished(task.individual, task.trial, result);
+        generation.done.countDown();
+    }
+
+    /**
+     * One game handed to the workers.
+     */
+    private static class Task {
+        long id;
+        int individual;
+        int trial;
+        double[] weights;
+        long seed;
+        double boardPercentage;
+
+        Task(long id, int individual, int trial, double[] weights, long seed, double boardPercentage) {
+            this.id = id;
+            this.individual = individual;
+            this.trial = trial;
+            this.weights = weights;
+            this.seed = seed;
+            this.boardPercentage = boardPercentage;
+        }
+    }
+
+    /**
+     * One hand-out of a game to one worker's connection; a game handed out again gets a new lease.
+     */
+    private static class Lease {
+        Task task;
+        Socket owner;
+        volatile long expires;
+
+        Lease(Task task, Socket owner, long expires) {
+            this.task = task;
+            this.owner = owner;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * The generation currently being evaluated.
+     */
+    private static class Generation {
+        GameResult[][] results;
+        Map<Long, Task> tasks = new ConcurrentHashMap<>();
+        CountDownLatch done;
+        Report report;
+
+        Generation(GameResult[][] results, List<Task> tasks, Report report) {
+            this.results = results;
+            for (Task task : tasks) this.tasks.put(task.id, task);
+            this.done = new CountDownLatch(tasks.size());
+            this.report = report;
+        }
+    }
+
+    /**
+     * What the workers played and how many games had to be handed out again.
+     */
+    public static class Report extends GenerationStats {
+        int reassigned;
+        int expired;
+        long millis;
+
+        public int getReassigned() { return reassigned; }
+
+        public int getExpired() { return expired; }
+
+        @Override
+        public String toString() {
+            return String.format("Coordinator: %d games, %d pieces in %.2fs, %d reassigned from lost workers, %d leases expired",
+                    games, piecesSimulated, millis / 1000.0, reassigned, expired);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package tetris;
+
+/**
+ * One way of playing a generation's games: the trainer picks an evaluator for its mode once and hands it every
+ * generation, so the modes only differ in which evaluator is picked.
+ */
+public interface JTetrisBrainEvaluator {
+    /**
+     * Plays the population's games, or takes them from what is already known, and sets every individual's
+     * fitness and score the way the trainer does
+     * @param pop, the population to evaluate
+     * @param seeds, the seeds of the generation, shared by every individual
+     * @param finished, games already finished (e.g. restored from a checkpoint) by individual and trial, or null
+     * @return the generation's totals; evaluators return their own report, which prints a summary
+     * @throws InterruptedException if the thread is interrupted while waiting for games played elsewhere
+     */
+    GenerationStats evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished) throws InterruptedException;
+
+    /**
+     * Sets the recorder notified of every game as it finishes
+     * @param recorder, the recorder, or null to stop recording
+     */
+    void setRecorder(GameRecorder recorder);
+}
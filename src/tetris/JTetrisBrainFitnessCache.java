@@ -0,0 +1,191 @@
+package tetris;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the result of every complete game by weight vector and seed, so survivors and children that are
+ * copies of a parent do not replay games they have already played.
+ *
+ * Weight vectors are keyed exactly, only rounded to drop floating point noise. A scaled copy of a vector is a
+ * different brain: calcFitness compares real scores with a fixed sentinel for impossible placements, so scaling every
+ * weight changes which moves it picks.
+ * Results are also keyed by the board percentage, since a game with a different game-over height is a different game.
+ */
+public class JTetrisBrainFitnessCache {
+    private static final double ROUNDING = 1e12;
+
+    private LinkedHashMap<Key, Entry> entries;
+
+    // Counters for the current generation
+    private int lookups;
+    private int hits;
+    private int partialHits;
+    private int gamesSaved;
+    private int gamesPlayed;
+
+    /**
+     * Creates a cache that forgets the least recently used weight vectors beyond the given capacity
+     * @param capacity, the maximum number of weight vectors remembered
+     */
+    public JTetrisBrainFitnessCache(int capacity) {
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Rounds away floating point noise, turning -0.0 into 0.0
+     * @param weights, the weights to round
+     * @return a new rounded array
+     */
+    public static double[] round(double[] weights) {
+        double[] rounded = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) rounded[i] = Math.round(weights[i] * ROUNDING) / ROUNDING + 0.0;
+        return rounded;
+    }
+
+    /**
+     * Plays the individual on every seed it has no stored result for and returns its statistics over every game on record,
+     * which includes games on older seeds as well as the requested ones.
+     * @param weights, the weights of the individual
+     * @param seeds, the seeds the individual must have played
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @param stats, the generation totals that played and cached games are added to
+     * @return the individual's statistics over every stored game
+     */
+    public TrialStats evaluate(double[] weights, long[] seeds, double boardPercentage, GenerationStats stats) {
+        return evaluate(weights, seeds, boardPercentage, stats, -1, null);
+    }
+
+    /**
+     * Plays the individual on every seed it has no stored result for, reporting each game it plays
+     * @param weights, the weights of the individual
+     * @param seeds, the seeds the individual must have played
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @param stats, the generation totals that played and cached games are added to
+     * @param individual, the index of the individual passed on to the recorder
+     * @param recorder, notified of every game played, or null
+     * @return the individual's statistics over every stored game
+     */
+    public TrialStats evaluate(double[] weights, long[] seeds, double boardPercentage, GenerationStats stats,
+                               int individual, GameRecorder recorder) {
+        GameResult[] known = lookup(weights, boardPercentage, seeds);
+        for (int t = 0; t < seeds.length; t++) {
+            if (known[t] != null) {
+                stats.recordCached(known[t]);
+                continue;
+            }
+            HeadlessTetris game = new HeadlessTetris(weights, seeds[t], boardPercentage);
+            game.startGame();
+            GameResult result = game.playToEnd();
+            put(weights, boardPercentage, result);
+            if (recorder != null) recorder.gameFinished(individual, t, result);
+            stats.record(result);
+        }
+        return getStats(weights, boardPercentage);
+    }
+
+    /**
+     * Looks up the stored results of an individual, counting the lookup towards this generation's hits
+     * @param weights, the weights of the individual
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @param seeds, the seeds to look up
+     * @return the stored result for each seed, or null where the individual has not played it
+     */
+    public synchronized GameResult[] lookup(double[] weights, double boardPercentage, long[] seeds) {
+        Entry entry = entries.get(new Key(weights, boardPercentage));
+        GameResult[] found = new GameResult[seeds.length];
+        int count = 0;
+        for (int t = 0; t < seeds.length; t++) {
+            found[t] = entry == null ? null : entry.results.get(seeds[t]);
+            if (found[t] != null) count++;
+        }
+
+        lookups++;
+        gamesSaved += count;
+        if (count == seeds.length) hits++;
+        else if (count > 0) partialHits++;
+        return found;
+    }
+
+    /**
+     * Stores the result of a complete game; a game that was stopped early must not be stored
+     * @param weights, the weights of the individual that played the game
+     * @param boardPercentage, the fraction of the board height the stack could reach before the game was over
+     * @param result, the outcome of the game
+     */
+    public synchronized void put(double[] weights, double boardPercentage, GameResult result) {
+        Key key = new Key(weights, boardPercentage);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        gamesPlayed++;
+        if (entry.results.put(result.getSeed(), result) == null) entry.stats.add(result);
+    }
+
+    /**
+     * Retrieves the statistics over every stored game of an individual
+     * @param weights, the weights of the individual
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @return the merged statistics, empty if nothing is stored
+     */
+    public synchronized TrialStats getStats(double[] weights, double boardPercentage) {
+        Entry entry = entries.get(new Key(weights, boardPercentage));
+        TrialStats stats = new TrialStats();
+        if (entry != null) stats.merge(entry.stats);
+        return stats;
+    }
+
+    /**
+     * Summarizes this generation's lookups and starts counting the next generation
+     * @return a one line summary of the hits
+     */
+    public synchronized String generationReport() {
+        String report = String.format("Fitness cache: %d/%d individuals fully cached, %d partially, %d games reused, %d played, %d vectors stored",
+                hits, lookups, partialHits, gamesSaved, gamesPlayed, entries.size());
+        lookups = hits = partialHits = gamesSaved = gamesPlayed = 0;
+        return report;
+    }
+
+    /**
+     * The rounded weights and board percentage identifying a set of games.
+     */
+    private static class Key {
+        private long[] bits;
+        private int hash;
+
+        Key(double[] weights, double boardPercentage) {
+            double[] rounded = round(weights);
+            bits = new long[rounded.length + 1];
+            for (int i = 0; i < rounded.length; i++) bits[i] = Double.doubleToLongBits(rounded[i]);
+            bits[rounded.length] = Double.doubleToLongBits(boardPercentage);
+            hash = Arrays.hashCode(bits);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(bits, ((Key)o).bits);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+
+    /**
+     * Every stored game of one weight vector, by seed, together with their merged statistics.
+     */
+    private static class Entry {
+        private HashMap<Long, GameResult> results = new HashMap<>();
+        private TrialStats stats = new TrialStats();
+    }
+}
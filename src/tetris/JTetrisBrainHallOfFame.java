@@ -0,0 +1,343 @@
+package tetris;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A store of named weight vectors and their games on a fixed, versioned suite of seeds, so weight files trained
+ * on different random games can be ranked against each other. Every game is played once and appended to the store
+ * file as soon as it finishes; scoring only plays the (entry, seed) games the store does not have yet, so adding a
+ * candidate or growing the suite costs just the new games.
+ *
+ * The store file is plain text, one record per line:
+ *   entry|name|w1 w2 ...
+ *   game|entry number|seed|game-over height|piece cap|rows cleared|pieces placed|fitness
+ * Usage: JTetrisBrainHallOfFame [--store file] [--suite version] [--seeds n] [--threads n] [--top n] [weight files...]
+ */
+public class JTetrisBrainHallOfFame {
+    public static final String DEFAULT_STORE = "hall-of-fame.txt";
+
+    private String fileName;
+    private List<Entry> entries = new ArrayList<>();
+    private Map<String, Entry> byWeights = new HashMap<>();
+
+    /**
+     * Opens a store, reading every entry and game already in the file; the file is created when first written
+     * @param fileName, the store file
+     * @throws IOException if the file exists but cannot be read
+     */
+    public JTetrisBrainHallOfFame(String fileName) throws IOException {
+        this.fileName = fileName;
+        if (!new File(fileName).exists()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\\|");
+                if (fields[0].equals("entry") && fields.length == 3) {
+                    double[] weights = Arrays.stream(fields[2].trim().split(" ")).mapToDouble(Double::parseDouble).toArray();
+                    Entry entry = new Entry(entries.size(), fields[1], weights);
+                    entries.add(entry);
+                    byWeights.put(Arrays.toString(weights), entry);
+                }
+                else if (fields[0].equals("game") && fields.length == 8) {
+                    Entry entry = entries.get(Integer.parseInt(fields[1]));
+                    long seed = Long.parseLong(fields[2]);
+                    entry.games.put(key(seed, Double.parseDouble(fields[3]), Integer.parseInt(fields[4])),
+                            new GameResult(seed, Integer.parseInt(fields[5]), Integer.parseInt(fields[6]), Double.parseDouble(fields[7])));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a weight vector under a name, unless the exact same weights are already stored
+     * @param name, a label such as the file the weights came from
+     * @param weights, the weights
+     * @return the new entry, or the existing one with these weights
+     * @throws IOException if the store cannot be written
+     */
+    public synchronized Entry add(String name, double[] weights) throws IOException {
+        Entry known = byWeights.get(Arrays.toString(weights));
+        if (known != null) return known;
+
+        Entry entry = new Entry(entries.size(), name.replace('|', '/'), weights.clone());
+        StringBuilder line = new StringBuilder("entry|" + entry.name + "|");
+        for (int i = 0; i < weights.length; i++) line.append(i == 0 ? "" : " ").append(weights[i]);
+        append(line.toString());
+        entries.add(entry);
+        byWeights.put(Arrays.toString(entry.weights), entry);
+        return entry;
+    }
+
+    /**
+     * Plays every game of the suite that some entry has not played yet, on a pool of threads
+     * @param suite, the seed suite
+     * @param threads, the threads to play on
+     * @return how many games were played and how many came from the store
+     * @throws InterruptedException if interrupted while waiting for the games
+     * @throws IOException if a result cannot be written
+     */
+    public Report score(Suite suite, int threads) throws InterruptedException, IOException {
+        Report report = new Report();
+        long start = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<?>> pending = new ArrayList<>();
+        for (Entry entry : entries) {
+            for (long seed : suite.seeds) {
+                String key = key(seed, suite.boardPercentage, suite.pieceCap);
+                // Under the lock record() holds, since games already submitted update the same report
+                synchronized (this) {
+                    GameResult known = entry.games.get(key);
+                    if (known != null) {
+                        report.recordCached(known);
+                        continue;
+                    }
+                }
+                pending.add(pool.submit(() -> {
+                    HeadlessTetris game = new HeadlessTetris(entry.weights, seed, suite.boardPercentage);
+                    game.startGame();
+                    if (suite.pieceCap > 0) game.playUntil(suite.pieceCap);
+                    else game.playToEnd();
+                    record(entry, key, game.getResult(), suite, report);
+                    return null;
+                }));
+            }
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> game : pending) game.get();
+        }
+        catch (ExecutionException e) {
+            pool.shutdownNow();
+            if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+            throw new IllegalStateException("a hall of fame game failed", e.getCause());
+        }
+        report.millis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    private synchronized void record(Entry entry, String key, GameResult result, Suite suite, Report report) throws IOException {
+        append(String.format(Locale.ROOT, "game|%d|%d|%s|%d|%d|%d|%s", entry.number, result.getSeed(), suite.boardPercentage,
+                suite.pieceCap, result.getRowsCleared(), result.getPiecesPlaced(), result.getFitness()));
+        entry.games.put(key, result);
+        report.record(result);
+    }
+
+    /**
+     * Ranks the entries by mean rows cleared over the suite; entries missing some of its games rank last
+     * @param suite, the seed suite
+     * @return the standings, best first
+     */
+    public synchronized List<Standing> leaderboard(Suite suite) {
+        List<Standing> standings = new ArrayList<>();
+        for (Entry entry : entries) {
+            Standing standing = new Standing(entry);
+            for (long seed : suite.seeds) {
+                GameResult result = entry.games.get(key(seed, suite.boardPercentage, suite.pieceCap));
+                if (result == null) continue;
+                standing.stats.add(result);
+                if (suite.pieceCap > 0 && result.getPiecesPlaced() >= suite.pieceCap) standing.capped++;
+            }
+            standing.complete = standing.stats.getTrials() == suite.seeds.length;
+            standings.add(standing);
+        }
+        standings.sort(Comparator.comparing((Standing s) -> !s.complete)
+                .thenComparing(Comparator.comparingDouble((Standing s) -> s.stats.getMean()).reversed()));
+        return standings;
+    }
+
+    /**
+     * Lays a leaderboard out as a text table
+     * @param suite, the suite the leaderboard is for
+     * @param standings, the standings from leaderboard()
+     * @return the table
+     */
+    public static String table(Suite suite, List<Standing> standings) {
+        StringBuilder table = new StringBuilder(String.format("Suite %s: %d seeds, height %.2f, cap %d pieces%n",
+                suite.version, suite.seeds.length, suite.boardPercentage, suite.pieceCap));
+        table.append(String.format("%4s %10s %9s %7s %6s  %s%n", "rank", "mean rows", "+/- 95%", "games", "capped", "name"));
+        for (int k = 0; k < standings.size(); k++) {
+            Standing s = standings.get(k);
+            table.append(String.format(Locale.ROOT, "%4s %10.1f %9.1f %7d %6d  %s%n", s.complete ? String.valueOf(k + 1) : "-",
+                    s.stats.getMean(), s.stats.getHalfWidth(1.96), s.stats.getTrials(), s.capped, s.entry.name));
+        }
+        return table.toString();
+    }
+
+    public synchronized List<Entry> getEntries() { return new ArrayList<>(entries); }
+
+    private void append(String line) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName, true))) {
+            writer.write(line + "\n");
+        }
+    }
+
+    private static String key(long seed, double boardPercentage, int pieceCap) {
+        return seed + "@" + boardPercentage + "/" + pieceCap;
+    }
+
+    /**
+     * Reads the best weight vectors of a population file in the format JTetrisBrainTrainer writes:
+     * a generation line followed by "weights | score" lines sorted best first
+     * @param fileName, the population file
+     * @param top, the number of vectors to read from the top of the file
+     * @return the weight vectors, best first
+     * @throws IOException if the file cannot be read
+     */
+    public static List<double[]> readWeights(String fileName, int top) throws IOException {
+        List<double[]> weights = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            reader.readLine();
+            String line;
+            while (weights.size() < top && (line = reader.readLine()) != null) {
+                int bar = line.indexOf('|');
+                if (bar < 0) continue;
+                weights.add(Arrays.stream(line.substring(0, bar).trim().split(" ")).mapToDouble(Double::parseDouble).toArray());
+            }
+        }
+        return weights;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String store = DEFAULT_STORE;
+        int version = 1, seeds = 10, threads = Runtime.getRuntime().availableProcessors(), top = 1;
+        List<String> files = new ArrayList<>();
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--store": store = args[++a]; break;
+                case "--suite": version = Integer.parseInt(args[++a]); break;
+                case "--seeds": seeds = Integer.parseInt(args[++a]); break;
+                case "--threads": threads = Integer.parseInt(args[++a]); break;
+                case "--top": top = Integer.parseInt(args[++a]); break;
+                default: files.add(args[a]);
+            }
+        }
+
+        JTetrisBrainHallOfFame hallOfFame = new JTetrisBrainHallOfFame(store);
+        hallOfFame.add("TetrisBrain()", new TetrisBrain().getPopulation()[0].getWeights());
+        for (String file : files) {
+            List<double[]> weights = readWeights(file, top);
+            for (int k = 0; k < weights.size(); k++) {
+                String name = file + "#" + (k + 1);
+                Entry entry = hallOfFame.add(name, weights.get(k));
+                if (!entry.getName().equals(name)) System.out.println(name + " is already stored as " + entry.getName());
+            }
+        }
+
+        Suite suite = Suite.version(version, seeds, JTetrisBrainTrainer.BOARD_PERCENTAGE, JTetrisBrainTrainer.PIECE_BUDGET);
+        System.out.println(hallOfFame.score(suite, threads));
+        System.out.print(table(suite, hallOfFame.leaderboard(suite)));
+    }
+
+    /**
+     * A fixed set of seeds played at a fixed game-over height and piece cap. The seeds of a version never change,
+     * and a suite with more seeds of the same version starts with the seeds of the smaller one.
+     */
+    public static class Suite {
+        private String version;
+        private long[] seeds;
+        private double boardPercentage;
+        private int pieceCap;
+
+        /**
+         * Creates a suite from explicit seeds
+         * @param version, a label for the suite
+         * @param seeds, the seeds
+         * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+         * @param pieceCap, the most pieces a game may place, or 0 for no cap
+         */
+        public Suite(String version, long[] seeds, double boardPercentage, int pieceCap) {
+            this.version = version;
+            this.seeds = seeds.clone();
+            this.boardPercentage = boardPercentage;
+            this.pieceCap = pieceCap;
+        }
+
+        /**
+         * Creates the numbered suite, whose seeds are drawn from a generator seeded with the version
+         * @param version, the suite version
+         * @param count, the number of seeds
+         * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+         * @param pieceCap, the most pieces a game may place, or 0 for no cap
+         * @return the suite
+         */
+        public static Suite version(int version, int count, double boardPercentage, int pieceCap) {
+            Random r = new Random(version);
+            long[] seeds = new long[count];
+            for (int k = 0; k < count; k++) seeds[k] = r.nextLong();
+            return new Suite("v" + version, seeds, boardPercentage, pieceCap);
+        }
+
+        public long[] getSeeds() { return seeds.clone(); }
+    }
+
+    /**
+     * A named weight vector and every game it has played.
+     */
+    public static class Entry {
+        private int number;
+        private String name;
+        private double[] weights;
+        private Map<String, GameResult> games = new LinkedHashMap<>();
+
+        Entry(int number, String name, double[] weights) {
+            this.number = number;
+            this.name = name;
+            this.weights = weights;
+        }
+
+        public String getName() { return name; }
+
+        public double[] getWeights() { return weights.clone(); }
+    }
+
+    /**
+     * An entry's results on one suite.
+     */
+    public static class Standing {
+        private Entry entry;
+        private TrialStats stats = new TrialStats();
+        private int capped;
+        private boolean complete;
+
+        Standing(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Entry getEntry() { return entry; }
+
+        public double getMean() { return stats.getMean(); }
+
+        public boolean isComplete() { return complete; }
+    }
+
+    /**
+     * How much of a scoring run came from the store.
+     */
+    public static class Report extends GenerationStats {
+        long millis;
+
+        @Override
+        public String toString() {
+            return String.format("Hall of fame: %d games played (%d pieces) in %.2fs, %d games from the store",
+                    games, piecesSimulated, millis / 1000.0, cachedGames);
+        }
+    }
+}
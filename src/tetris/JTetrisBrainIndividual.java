@@ -19,6 +19,7 @@ public class JTetrisBrainIndividual {
         private double[] weights = new double[JTetrisBrainTrainer.WEIGHT_COUNT];
         private double fitness;
         private double score;
+        private boolean estimated;
 
         /**
          * Creates a new Individual with randomized weights. 
@@ -83,6 +84,19 @@ public class JTetrisBrainIndividual {
          */
         public double getScore(){ return score; }
 
+        /**
+         * Fetches whether the score only ranks the Individual below the ones that were measured, because an evaluator
+         * judged it without playing its full games
+         * @return true if the score is not a mean of full games
+         */
+        public boolean isEstimated(){ return estimated; }
+
+        /**
+         * Marks the score as an estimate or as the mean of full games
+         * @param estimated, whether the score is only an estimate
+         */
+        public void setEstimated(boolean estimated){ this.estimated = estimated; }
+
         /**
          * Checks if two Individuals are the same through their weights, fitness, and score
          * @param o, the object to compare the Individual to
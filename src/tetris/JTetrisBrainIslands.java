@@ -0,0 +1,376 @@
+package tetris;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs the genetic algorithm as an island model: the population is split into subpopulations that each evolve
+ * on their own thread with the usual breeding rules, and every few generations an island sends copies of its best
+ * brains to its neighbours. Migrants travel through lock-free queues, so an island never waits for a slower one;
+ * it just takes whatever has arrived in its inbox when it breeds.
+ */
+public class JTetrisBrainIslands {
+    /**
+     * Which islands receive an island's migrants
+     */
+    public enum Topology {
+        // Only the next island, wrapping around
+        RING,
+        // Every other island
+        FULL,
+        // One other island picked at random each migration
+        RANDOM
+    }
+
+    private static final Comparator<JTetrisBrainIndividual> BEST_FIRST = new Comparator<JTetrisBrainIndividual>() {
+        @Override
+        public int compare(JTetrisBrainIndividual i1, JTetrisBrainIndividual i2) {
+            return Double.compare(i2.getScore(), i1.getScore());
+        }
+    };
+
+    private Island[] islands;
+    private int migrationInterval;
+    private int migrants;
+    private Topology topology;
+    private int trials;
+    private double boardPercentage;
+    private volatile boolean running;
+    private int maxGenerations;
+
+    /**
+     * Splits a population into islands, dealing the brains out in turn so every island gets a share of the best ones.
+     * @param pop, the starting population
+     * @param islandCount, the number of islands and threads
+     * @param migrationInterval, the number of generations between migrations, or 0 for isolated islands
+     * @param migrants, the number of best brains an island sends each migration
+     * @param topology, which islands receive the migrants
+     * @param trials, the number of games each brain plays per generation
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     */
+    public JTetrisBrainIslands(JTetrisBrainIndividual[] pop, int islandCount, int migrationInterval, int migrants,
+                               Topology topology, int trials, double boardPercentage) {
+        islandCount = Math.max(1, Math.min(islandCount, pop.length / 2));
+        this.migrationInterval = migrationInterval;
+        this.migrants = migrants;
+        this.topology = topology;
+        this.trials = Math.max(1, trials);
+        this.boardPercentage = boardPercentage;
+
+        islands = new Island[islandCount];
+        for (int k = 0; k < islandCount; k++) {
+            JTetrisBrainIndividual[] share = new JTetrisBrainIndividual[(pop.length - k + islandCount - 1) / islandCount];
+            for (int i = 0; i < share.length; i++) share[i] = copy(pop[k + i * islandCount]);
+            islands[k] = new Island(k, share);
+        }
+    }
+
+    /**
+     * Picks how many islands a population is split into: as many as fit with every island at least the minimum size,
+     * since an island smaller than that breeds from too few survivors and parents to hold on to its best brains
+     * @param populationSize, the size of the whole population
+     * @param minIslandSize, the fewest brains an island may have
+     * @return the number of islands, at least 1
+     */
+    public static int islandCount(int populationSize, int minIslandSize) {
+        return Math.max(1, populationSize / Math.max(1, minIslandSize));
+    }
+
+    /**
+     * Evolves every island on its own thread until the time runs out or every island reaches the generation limit.
+     * While the islands run, the best brains of all islands are merged and written to the population file periodically.
+     * @param millis, how long to run for
+     * @param maxGenerations, the most generations any island runs
+     * @param fileName, the population file to write snapshots to, or null for none
+     * @param snapshotMillis, the time between snapshots and progress lines
+     * @return the throughput and progress of the run
+     * @throws InterruptedException if interrupted while waiting for the islands
+     */
+    public Report run(long millis, int maxGenerations, String fileName, long snapshotMillis) throws InterruptedException {
+        this.maxGenerations = maxGenerations;
+        running = true;
+        Report report = new Report(islands.length);
+        long start = System.currentTimeMillis();
+        long deadline = millis == Long.MAX_VALUE ? Long.MAX_VALUE : start + millis;
+
+        Thread[] threads = new Thread[islands.length];
+        for (int k = 0; k < islands.length; k++) {
+            threads[k] = new Thread(islands[k], "island-" + k);
+            threads[k].setDaemon(true);
+            threads[k].start();
+        }
+
+        // The islands never wait on the monitor; it only reads what they have published
+        while (System.currentTimeMillis() < deadline && anyAlive(threads)) {
+            long now = System.currentTimeMillis();
+            long wake = Math.min(deadline, now + snapshotMillis);
+            for (Thread t : threads) {
+                t.join(Math.max(1, wake - System.currentTimeMillis()));
+                if (System.currentTimeMillis() >= wake) break;
+            }
+            snapshot(report, start, fileName, true);
+        }
+
+        running = false;
+        for (Thread t : threads) t.join();
+        snapshot(report, start, fileName, false);
+        report.millis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /**
+     * Merges the latest sorted population of every island, best first
+     * @return copies of the published brains of all islands
+     */
+    public JTetrisBrainIndividual[] merged() {
+        List<JTetrisBrainIndividual> all = new ArrayList<>();
+        for (Island island : islands) {
+            JTetrisBrainIndividual[] published = island.published;
+            if (published != null) all.addAll(Arrays.asList(published));
+        }
+        JTetrisBrainIndividual[] merged = all.toArray(new JTetrisBrainIndividual[0]);
+        Arrays.sort(merged, BEST_FIRST);
+        return merged;
+    }
+
+    /**
+     * Records the islands' progress, prints it and writes the merged population.
+     */
+    private void snapshot(Report report, long start, String fileName, boolean print) {
+        JTetrisBrainIndividual[] merged = merged();
+        if (merged.length == 0) return;
+
+        int generation = 0;
+        for (int k = 0; k < islands.length; k++) {
+            report.generations[k] = islands[k].generation;
+            report.games[k] = islands[k].games;
+            report.pieces[k] = islands[k].pieces;
+            report.migrantsReceived[k] = islands[k].migrantsReceived;
+            generation = Math.max(generation, islands[k].generation);
+        }
+        report.progress.add(new double[]{(System.currentTimeMillis() - start) / 1000.0, merged[0].getScore()});
+        if (print) System.out.println(report.progressLine());
+
+        if (fileName == null) return;
+        try {
+            JTetrisBrainTrainer.writePopulation(fileName, generation, merged);
+        }
+        catch (IOException e) {
+            System.err.println("could not write population snapshot " + fileName);
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean anyAlive(Thread[] threads) {
+        for (Thread t : threads) if (t.isAlive()) return true;
+        return false;
+    }
+
+    private static JTetrisBrainIndividual copy(JTetrisBrainIndividual individual) {
+        JTetrisBrainIndividual copy = new JTetrisBrainIndividual(individual.getWeights().clone());
+        copy.setScore(individual.getScore());
+        copy.setFitness(individual.getFitness());
+        return copy;
+    }
+
+    /**
+     * One subpopulation and the thread that evolves it. Only the island's own thread touches pop and brain;
+     * other threads see it through the inbox and the published fields.
+     */
+    private class Island implements Runnable {
+        private int id;
+        private JTetrisBrainIndividual[] pop;
+        private TetrisBrain brain;
+        private Random random;
+        private ConcurrentLinkedQueue<JTetrisBrainIndividual> inbox = new ConcurrentLinkedQueue<>();
+        private volatile JTetrisBrainIndividual[] published;
+        private volatile int generation;
+        private volatile long games;
+        private volatile long pieces;
+        private volatile int migrantsReceived;
+
+        Island(int id, JTetrisBrainIndividual[] pop) {
+            this.id = id;
+            this.pop = pop;
+            this.brain = new TetrisBrain(pop);
+            this.random = new Random();
+        }
+
+        @Override
+        public void run() {
+            while (running && generation < maxGenerations) {
+                long[] seeds = new long[trials];
+                for (int t = 0; t < trials; t++) seeds[t] = random.nextLong();
+
+                for (JTetrisBrainIndividual individual : pop) {
+                    // A generation cut short by the deadline is dropped; the last published one stands
+                    if (!running) return;
+                    TrialStats stats = new TrialStats();
+                    for (long seed : seeds) {
+                        HeadlessTetris game = new HeadlessTetris(individual.getWeights(), seed, boardPercentage);
+                        game.startGame();
+                        GameResult result = game.playToEnd();
+                        stats.add(result);
+                        games++;
+                        pieces += result.getPiecesPlaced();
+                    }
+                    individual.setScore(stats.getMean());
+                    individual.setFitness(stats.getFitness());
+                }
+
+                Arrays.sort(pop, BEST_FIRST);
+                JTetrisBrainIndividual[] sorted = new JTetrisBrainIndividual[pop.length];
+                for (int i = 0; i < pop.length; i++) sorted[i] = copy(pop[i]);
+                published = sorted;
+
+                boolean migrating = migrationInterval > 0 && islands.length > 1 && (generation + 1) % migrationInterval == 0;
+                if (migrating) emigrate();
+                JTetrisBrainTrainer.breed(brain, pop, random);
+                immigrate();
+                generation++;
+            }
+        }
+
+        /**
+         * Sends copies of this island's best brains to its neighbours' inboxes.
+         */
+        private void emigrate() {
+            List<Island> targets = new ArrayList<>();
+            switch (topology) {
+                case RING:
+                    targets.add(islands[(id + 1) % islands.length]);
+                    break;
+                case FULL:
+                    for (Island island : islands) if (island != this) targets.add(island);
+                    break;
+                case RANDOM:
+                    int other = random.nextInt(islands.length - 1);
+                    targets.add(islands[other >= id ? other + 1 : other]);
+                    break;
+            }
+            for (Island target : targets) {
+                for (int i = 0; i < Math.min(migrants, pop.length); i++) target.inbox.offer(copy(pop[i]));
+            }
+        }
+
+        /**
+         * Replaces the newest children at the bottom of the population with whatever migrants have arrived.
+         * Survivors are never replaced, and migrants that do not fit are dropped rather than left to go stale.
+         */
+        private void immigrate() {
+            int room = pop.length - Math.max(1, (int)(pop.length * JTetrisBrainTrainer.SURVIVOR_RATE));
+            int received = 0;
+            JTetrisBrainIndividual migrant;
+            while ((migrant = inbox.poll()) != null) {
+                if (received < room) pop[pop.length - 1 - received++] = migrant;
+            }
+            migrantsReceived += received;
+        }
+    }
+
+    /**
+     * How far the islands got and how the best score developed over the run.
+     */
+    public static class Report {
+        int[] generations;
+        long[] games;
+        long[] pieces;
+        int[] migrantsReceived;
+        List<double[]> progress = new ArrayList<>();
+        long millis;
+
+        Report(int islands) {
+            generations = new int[islands];
+            games = new long[islands];
+            pieces = new long[islands];
+            migrantsReceived = new int[islands];
+        }
+
+        public long getGames() {
+            long total = 0;
+            for (long g : games) total += g;
+            return total;
+        }
+
+        public long getPieces() {
+            long total = 0;
+            for (long p : pieces) total += p;
+            return total;
+        }
+
+        public int getGenerations() {
+            int total = 0;
+            for (int g : generations) total += g;
+            return total;
+        }
+
+        /**
+         * Fetches the best published score over time
+         * @return pairs of seconds since the start and best score
+         */
+        public List<double[]> getProgress() {
+            return progress;
+        }
+
+        String progressLine() {
+            double[] last = progress.get(progress.size() - 1);
+            return String.format("%6.1fs  best %.1f  generations %s  games %d", last[0], last[1], Arrays.toString(generations), getGames());
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(1, millis) / 1000.0;
+            return String.format("%d islands: %d generations %s, %d games (%.1f/s), %d pieces (%.0f/s), migrants received %s",
+                    generations.length, getGenerations(), Arrays.toString(generations), getGames(), getGames() / seconds,
+                    getPieces(), getPieces() / seconds, Arrays.toString(migrantsReceived));
+        }
+    }
+
+    /**
+     * Compares the island model with the single-population loop for the same wall time, starting both from the same
+     * random population. Since each island scores its brains on its own seeds, the best brain of each run is replayed
+     * on a shared set of held-out seeds for the convergence comparison.
+     * Usage: JTetrisBrainIslands [seconds] [islands]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 60;
+        int islandCount = args.length > 1 ? Integer.parseInt(args[1]) : JTetrisBrainTrainer.ISLAND_COUNT;
+        JTetrisBrainIndividual[] start = new JTetrisBrainIndividual[JTetrisBrainTrainer.INITIAL_POPULATION_SIZE];
+        for (int i = 0; i < start.length; i++) start[i] = new JTetrisBrainIndividual();
+
+        System.out.println("Single population, 1 thread, " + seconds + "s");
+        JTetrisBrainIslands single = new JTetrisBrainIslands(start, 1, 0, 0, Topology.RING,
+                JTetrisBrainTrainer.TRIALS, JTetrisBrainTrainer.BOARD_PERCENTAGE);
+        Report singleReport = single.run(seconds * 1000, Integer.MAX_VALUE, null, 10000);
+
+        System.out.println(islandCount + " islands, " + JTetrisBrainTrainer.TOPOLOGY + " topology, " + seconds + "s");
+        JTetrisBrainIslands model = new JTetrisBrainIslands(start, islandCount, JTetrisBrainTrainer.MIGRATION_INTERVAL,
+                JTetrisBrainTrainer.MIGRANTS, JTetrisBrainTrainer.TOPOLOGY, JTetrisBrainTrainer.TRIALS, JTetrisBrainTrainer.BOARD_PERCENTAGE);
+        Report islandReport = model.run(seconds * 1000, Integer.MAX_VALUE, null, 10000);
+
+        long[] heldOut = new long[10];
+        Random r = new Random(42);
+        for (int t = 0; t < heldOut.length; t++) heldOut[t] = r.nextLong();
+
+        System.out.println();
+        System.out.println("Single:  " + singleReport);
+        System.out.println("         best on held-out seeds: " + heldOutMean(single.merged()[0], heldOut));
+        System.out.println("Islands: " + islandReport);
+        System.out.println("         best on held-out seeds: " + heldOutMean(model.merged()[0], heldOut));
+    }
+
+    private static double heldOutMean(JTetrisBrainIndividual best, long[] seeds) {
+        TrialStats stats = new TrialStats();
+        for (long seed : seeds) {
+            HeadlessTetris game = new HeadlessTetris(best.getWeights(), seed, JTetrisBrainTrainer.BOARD_PERCENTAGE);
+            game.startGame();
+            stats.add(game.playToEnd());
+        }
+        return stats.getMean();
+    }
+}
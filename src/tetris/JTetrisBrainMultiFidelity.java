@@ -0,0 +1,331 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates a population in two stages. Every individual is first screened on cheap games, with a lower game-over
+ * height and a cap on the pieces placed; only the individuals that screen well are promoted to full games on the
+ * same seeds. Promoted individuals are scored by their full games and always rank strictly above the rest, which are
+ * ordered by their screening scores below the worst promoted score and marked as estimated, so their screening
+ * scores are never written out as full-game scores.
+ */
+public class JTetrisBrainMultiFidelity implements JTetrisBrainEvaluator {
+    private double screenPercentage;
+    private int screenPieceCap;
+    private double promoteRate;
+    private int minPromoted;
+    private double promoteRows;
+    private double boardPercentage;
+    private boolean audit;
+    private GameRecorder recorder;
+
+    /**
+     * Creates a two-stage evaluator.
+     * @param screenPercentage, the fraction of the board height the stack may reach in a screening game
+     * @param screenPieceCap, the most pieces a screening game may place, or 0 for no cap
+     * @param promoteRate, the fraction of the population promoted to full games
+     * @param minPromoted, the fewest individuals promoted, e.g. enough to cover every parent
+     * @param promoteRows, a screening score that earns promotion regardless of rank, or 0 for none
+     * @param boardPercentage, the fraction of the board height the stack may reach in a full game
+     * @param audit, whether to also play full games for individuals that were not promoted, to measure the
+     *               correlation between the stages over the whole population and the CPU actually saved
+     */
+    public JTetrisBrainMultiFidelity(double screenPercentage, int screenPieceCap, double promoteRate, int minPromoted,
+                                     double promoteRows, double boardPercentage, boolean audit) {
+        this.screenPercentage = screenPercentage;
+        this.screenPieceCap = screenPieceCap;
+        this.promoteRate = promoteRate;
+        this.minPromoted = minPromoted;
+        this.promoteRows = promoteRows;
+        this.boardPercentage = boardPercentage;
+        this.audit = audit;
+    }
+
+    /**
+     * Reports every full game that is played; screening games are not reported
+     * @param recorder, the recorder to notify, or null for none
+     */
+    @Override
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Screens the whole population, promotes the best, and sets every individual's score and fitness.
+     * @param pop, the population to evaluate
+     * @param seeds, the seeds every individual plays, in both stages
+     * @param finished, full games already finished (e.g. restored from a checkpoint) by individual and trial, or null
+     * @return what each stage cost and how well the stages agreed
+     */
+    @Override
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished) {
+        int n = pop.length;
+        Report report = new Report();
+        report.individuals = n;
+        report.audited = audit;
+        double[] screen = new double[n], screenFitness = new double[n];
+        long[] screenPieces = new long[n];
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            TrialStats stats = new TrialStats();
+            for (long seed : seeds) {
+                HeadlessTetris game = new HeadlessTetris(pop[i].getWeights(), seed, screenPercentage);
+                game.startGame();
+                if (screenPieceCap > 0) game.playUntil(screenPieceCap);
+                else game.playToEnd();
+                GameResult result = game.getResult();
+                stats.add(result);
+                screenPieces[i] += result.getPiecesPlaced();
+                report.screenPieces += result.getPiecesPlaced();
+                report.screenGames++;
+            }
+            screen[i] = stats.getMean();
+            screenFitness[i] = stats.getFitness();
+        }
+        report.screenMillis = System.currentTimeMillis() - start;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(screen[i2], screen[i1]);
+            }
+        });
+        int quota = Math.min(n, Math.max(minPromoted, (int)Math.ceil(n * promoteRate)));
+        boolean[] promoted = new boolean[n];
+        for (int r = 0; r < n; r++) {
+            int i = order[r];
+            promoted[i] = r < quota || (promoteRows > 0 && screen[i] >= promoteRows);
+        }
+
+        start = System.currentTimeMillis();
+        double[] full = new double[n];
+        long[] fullPieces = new long[n];
+        double lowestPromoted = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (!promoted[i] && !audit) continue;
+            TrialStats stats = new TrialStats();
+            for (int t = 0; t < seeds.length; t++) {
+                GameResult result = finished != null && t < finished[i].length ? finished[i][t] : null;
+                if (result == null) {
+                    HeadlessTetris game = new HeadlessTetris(pop[i].getWeights(), seeds[t], boardPercentage);
+                    game.startGame();
+                    result = game.playToEnd();
+                    if (recorder != null) recorder.gameFinished(i, t, result);
+                    if (promoted[i]) report.record(result);
+                    else report.auditPieces += result.getPiecesPlaced();
+                }
+                fullPieces[i] += result.getPiecesPlaced();
+                stats.add(result);
+            }
+            full[i] = stats.getMean();
+            if (promoted[i]) {
+                report.promoted++;
+                pop[i].setScore(full[i]);
+                pop[i].setFitness(stats.getFitness());
+                pop[i].setEstimated(false);
+                lowestPromoted = Math.min(lowestPromoted, full[i]);
+            }
+        }
+        report.fullMillis = System.currentTimeMillis() - start;
+
+        // In screening order, every score below the last so nobody ties a promoted individual or each other
+        double below = lowestPromoted;
+        for (int r = 0; r < n; r++) {
+            int i = order[r];
+            if (promoted[i]) continue;
+            below = Math.min(screen[i], Math.nextDown(below));
+            pop[i].setScore(below);
+            pop[i].setFitness(screenFitness[i]);
+            pop[i].setEstimated(true);
+        }
+
+        // Correlation of the two stages, over the promoted individuals (or everybody when audited)
+        List<double[]> pairs = new ArrayList<>();
+        long promotedScreenPieces = 0, promotedFullPieces = 0, otherScreenPieces = 0, otherFullPieces = 0;
+        for (int i = 0; i < n; i++) {
+            if (promoted[i] || audit) pairs.add(new double[]{screen[i], full[i]});
+            if (promoted[i]) {
+                promotedScreenPieces += screenPieces[i];
+                promotedFullPieces += fullPieces[i];
+            }
+            else {
+                otherScreenPieces += screenPieces[i];
+                otherFullPieces += fullPieces[i];
+            }
+        }
+        report.correlation = spearman(pairs);
+
+        // Without an audit the full games skipped are estimated from the promoted individuals' ratio of full to screening pieces
+        if (!audit) {
+            double ratio = promotedScreenPieces == 0 ? 1 : (double)promotedFullPieces / promotedScreenPieces;
+            otherFullPieces = (long)(otherScreenPieces * ratio);
+        }
+        report.skippedPieces = otherFullPieces;
+        return report;
+    }
+
+    /**
+     * Measures how well screening settings predict full games on a population file, to choose the screening
+     * defaults: every individual plays full games once, then each setting screens it on the same seeds. For each
+     * setting it prints the rank correlation with the full scores, the share of the full-game parents the
+     * promotion quota would keep, and what the screening costs relative to the full games.
+     * Usage: JTetrisBrainMultiFidelity [population file] [trials]
+     */
+    public static void main(String[] args) {
+        String file = args.length > 0 ? args[0] : JTetrisBrainTrainer.POPULATION_FILENAME;
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : JTetrisBrainTrainer.TRIALS;
+        double[] percentages = {0.4, 0.5, 0.6, 0.75};
+        int[] caps = {2000, 5000, 0};
+        JTetrisBrainIndividual[] pop = new TetrisBrain(file).getPopulation();
+        int n = pop.length;
+        int quota = Math.min(n, Math.max((int)(n * JTetrisBrainTrainer.PARENT_RATE), (int)Math.ceil(n * JTetrisBrainTrainer.PROMOTE_RATE)));
+        int parents = Math.max(1, (int)(n * JTetrisBrainTrainer.PARENT_RATE));
+        long[] seeds = new long[trials];
+        for (int t = 0; t < trials; t++) seeds[t] = t + 1;
+
+        double[] full = new double[n];
+        long fullPieces = 0;
+        for (int i = 0; i < n; i++) {
+            TrialStats stats = new TrialStats();
+            for (long seed : seeds) {
+                HeadlessTetris game = new HeadlessTetris(pop[i].getWeights(), seed, JTetrisBrainTrainer.BOARD_PERCENTAGE);
+                game.startGame();
+                GameResult result = game.playToEnd();
+                stats.add(result);
+                fullPieces += result.getPiecesPlaced();
+            }
+            full[i] = stats.getMean();
+        }
+        System.out.println(n + " individuals, " + trials + " trials, " + fullPieces + " full pieces, promoting " + quota 
+            + " to keep the best " + parents);
+
+        for (double percentage : percentages) {
+            for (int cap : caps) {
+                if (percentage >= JTetrisBrainTrainer.BOARD_PERCENTAGE && cap == 0) continue;
+                double[] screen = new double[n];
+                long screenPieces = 0;
+                for (int i = 0; i < n; i++) {
+                    TrialStats stats = new TrialStats();
+                    for (long seed : seeds) {
+                        HeadlessTetris game = new HeadlessTetris(pop[i].getWeights(), seed, percentage);
+                        game.startGame();
+                        if (cap > 0) game.playUntil(cap);
+                        else game.playToEnd();
+                        GameResult result = game.getResult();
+                        stats.add(result);
+                        screenPieces += result.getPiecesPlaced();
+                    }
+                    screen[i] = stats.getMean();
+                }
+                List<double[]> pairs = new ArrayList<>();
+                for (int i = 0; i < n; i++) pairs.add(new double[]{screen[i], full[i]});
+                boolean[] promoted = new boolean[n];
+                for (int i : rankOrder(screen, quota)) promoted[i] = true;
+                int kept = 0;
+                for (int i : rankOrder(full, parents)) if (promoted[i]) kept++;
+                System.out.println(String.format("height %.2f, cap %5d: correlation %.3f, parents kept %d/%d, screening costs %.1f%% of full", 
+                    percentage, cap, spearman(pairs), kept, parents, 100.0 * screenPieces / fullPieces));
+            }
+        }
+    }
+
+    private static int[] rankOrder(double[] values, int count) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(values[i2], values[i1]);
+            }
+        });
+        int[] top = new int[Math.min(count, order.length)];
+        for (int r = 0; r < top.length; r++) top[r] = order[r];
+        return top;
+    }
+
+    /**
+     * Spearman's rank correlation of the pairs, with tied values sharing their average rank
+     * @param pairs, the (x, y) pairs
+     * @return the correlation, or NaN with fewer than two pairs
+     */
+    static double spearman(List<double[]> pairs) {
+        int n = pairs.size();
+        if (n < 2) return Double.NaN;
+        double[] x = new double[n], y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = pairs.get(i)[0];
+            y[i] = pairs.get(i)[1];
+        }
+        double[] rx = ranks(x), ry = ranks(y);
+        double mean = (n + 1) / 2.0, sxy = 0, sxx = 0, syy = 0;
+        for (int i = 0; i < n; i++) {
+            sxy += (rx[i] - mean) * (ry[i] - mean);
+            sxx += (rx[i] - mean) * (rx[i] - mean);
+            syy += (ry[i] - mean) * (ry[i] - mean);
+        }
+        return sxx == 0 || syy == 0 ? Double.NaN : sxy / Math.sqrt(sxx * syy);
+    }
+
+    private static double[] ranks(double[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(values[i1], values[i2]);
+            }
+        });
+        double[] ranks = new double[values.length];
+        for (int r = 0; r < order.length; ) {
+            int end = r;
+            while (end + 1 < order.length && values[order[end + 1]] == values[order[r]]) end++;
+            for (int k = r; k <= end; k++) ranks[order[k]] = (r + end) / 2.0 + 1;
+            r = end + 1;
+        }
+        return ranks;
+    }
+
+    /**
+     * What the screening and full stages cost and how well they agreed.
+     */
+    public static class Report extends GenerationStats {
+        int individuals;
+        int promoted;
+        int screenGames;
+        long screenPieces;
+        long auditPieces;
+        long skippedPieces;
+        long screenMillis;
+        long fullMillis;
+        double correlation;
+        boolean audited;
+
+        /**
+         * Fetches the share of the pieces full games for everybody would have cost that the generation did not play
+         * @return the saved fraction, negative if screening cost more than it skipped
+         */
+        public double getSavedFraction() {
+            long spent = screenPieces + piecesSimulated;
+            long everybodyFull = piecesSimulated + skippedPieces;
+            return everybodyFull == 0 ? 0 : 1 - (double)spent / everybodyFull;
+        }
+
+        public double getCorrelation() { return correlation; }
+
+        public int getPromoted() { return promoted; }
+
+        @Override
+        public String toString() {
+            return String.format("Multi-fidelity: %d/%d promoted, screening %d pieces in %.2fs, full %d pieces in %.2fs, "
+                    + "screen/full rank correlation %.3f, %d pieces skipped, CPU saved %.1f%%%s", promoted, individuals,
+                    screenPieces, screenMillis / 1000.0, piecesSimulated, fullMillis / 1000.0, correlation, skippedPieces,
+                    100 * getSavedFraction(), audited ? " (audited)" : " (estimated)");
+        }
+    }
+}
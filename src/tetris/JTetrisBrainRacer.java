@@ -0,0 +1,320 @@
+package tetris;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Evaluates a whole population on shared seeds by racing the games against each other.
+ * Every game is advanced in lockstep, a checkpoint's worth of pieces at a time, and after each checkpoint
+ * an individual whose place relative to the survivor and parent cutoffs is already decided is stopped.
+ * Only which side of each cutoff an individual lands on matters to the trainer, so stopping it there
+ * cannot change the next generation.
+ */
+public class JTetrisBrainRacer implements JTetrisBrainEvaluator {
+    private int survivors;
+    private int parents;
+    private int checkpoint;
+    private double boardPercentage;
+    private boolean audit;
+    private JTetrisBrainFitnessCache cache;
+    private GameRecorder recorder;
+
+    /**
+     * Creates a racer for the given selection cutoffs.
+     * @param survivors, the number of top individuals copied into the next generation
+     * @param parents, the number of top individuals allowed to breed
+     * @param checkpoint, the number of pieces every game is advanced between two comparisons
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @param audit, whether to finish every stopped game afterwards to measure what racing saved and changed
+     */
+    public JTetrisBrainRacer(int survivors, int parents, int checkpoint, double boardPercentage, boolean audit) {
+        this.survivors = survivors;
+        this.parents = Math.max(parents, survivors);
+        this.checkpoint = checkpoint;
+        this.boardPercentage = boardPercentage;
+        this.audit = audit;
+    }
+
+    /**
+     * Lets the racer skip individuals that already played every seed and store the games that were played to the end
+     * @param cache, the fitness cache to use, or null for none
+     */
+    public void setCache(JTetrisBrainFitnessCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Reports every game that is played to the end
+     * @param recorder, the recorder to notify, or null for none
+     */
+    @Override
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Races the population with nothing known in advance
+     * @param pop, the population to evaluate
+     * @param seeds, one seed per trial, shared by every individual
+     * @return a summary of the race
+     */
+    public Report race(JTetrisBrainIndividual[] pop, long[] seeds) {
+        return race(pop, seeds, null);
+    }
+
+    /**
+     * Races the population, as the trainer's evaluator
+     * @see #race(JTetrisBrainIndividual[], long[], GameResult[][])
+     */
+    @Override
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished) {
+        return race(pop, seeds, finished);
+    }
+
+    /**
+     * Plays every individual on every seed, stopping games once the individual's selection is settled,
+     * and sets each individual's score and fitness the same way the trainer does (total rows cleared over the number of trials).
+     * Individuals that were stopped early keep the rows they had cleared when they were stopped.
+     * @param pop, the population to evaluate
+     * @param seeds, one seed per trial, shared by every individual
+     * @param known, games already finished (e.g. restored from a checkpoint) by individual and trial, or null;
+     *               an individual is only spared racing if every one of its games is known
+     * @return a summary of the race
+     */
+    public Report race(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] known) {
+        int n = pop.length;
+        Report report = new Report();
+        double[] rows = new double[n];
+        double[] fitness = new double[n];
+        int[] trialsPlayed = new int[n];
+        boolean[] stopped = new boolean[n];
+        HeadlessTetris[] games = new HeadlessTetris[n];
+        boolean[] cached = new boolean[n];
+        long start = System.currentTimeMillis();
+
+        // Individuals that already played every seed take part with their exact totals and never play
+        for (int i = 0; i < n; i++) {
+            GameResult[] results = new GameResult[seeds.length];
+            if (known != null) results = Arrays.copyOf(known[i], seeds.length);
+            if (cache != null && Arrays.asList(results).contains(null)) {
+                GameResult[] stored = cache.lookup(pop[i].getWeights(), boardPercentage, seeds);
+                for (int t = 0; t < seeds.length; t++) if (results[t] == null) results[t] = stored[t];
+            }
+            if (Arrays.asList(results).contains(null)) continue;
+
+            cached[i] = true;
+            for (GameResult result : results) {
+                rows[i] += result.getRowsCleared();
+                fitness[i] += result.getFitness();
+                trialsPlayed[i]++;
+                report.recordCached(result);
+            }
+        }
+
+        for (int t = 0; t < seeds.length; t++) {
+            boolean[] banked = cached.clone();
+            for (int i = 0; i < n; i++) {
+                if (stopped[i] || cached[i]) continue;
+                games[i] = new HeadlessTetris(pop[i].getWeights(), seeds[t], boardPercentage);
+                games[i].startGame();
+            }
+
+            int target = 0;
+            boolean running = true;
+            while (running) {
+                target += checkpoint;
+                running = false;
+
+                // Advances every live game to the checkpoint and banks the ones that ended on the way
+                for (int i = 0; i < n; i++) {
+                    if (stopped[i] || banked[i]) continue;
+                    if (games[i].playUntil(target)) {
+                        running = true;
+                        continue;
+                    }
+                    bank(pop[i], games[i], i, rows, fitness, trialsPlayed, report);
+                    banked[i] = true;
+                }
+
+                // Stops every live game whose place relative to both cutoffs can no longer change
+                for (int i = 0; i < n; i++) {
+                    if (stopped[i] || banked[i]) continue;
+                    if (isSettled(i, games, rows, trialsPlayed, stopped, banked, seeds.length)) {
+                        bank(pop[i], games[i], i, rows, fitness, trialsPlayed, report);
+                        banked[i] = true;
+                        stopped[i] = true;
+                        report.gamesStopped++;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            pop[i].setScore(rows[i] / seeds.length);
+            pop[i].setFitness(trialsPlayed[i] == 0 ? 0 : fitness[i] / trialsPlayed[i]);
+        }
+        report.raceMillis = System.currentTimeMillis() - start;
+
+        if (audit) audit(pop, seeds, games, rows, trialsPlayed, stopped, report);
+        return report;
+    }
+
+    /**
+     * Adds a game's rows cleared and fitness to its individual's totals and updates the race statistics.
+     * Games that ended on their own are complete and go into the cache; stopped games do not.
+     */
+    private void bank(JTetrisBrainIndividual individual, HeadlessTetris game, int i, double[] rows, double[] fitness, int[] trialsPlayed, Report report) {
+        GameResult result = game.getResult();
+        if (!game.isGameOn()) {
+            if (cache != null) cache.put(individual.getWeights(), boardPercentage, result);
+            if (recorder != null) recorder.gameFinished(i, trialsPlayed[i], result);
+        }
+        rows[i] += result.getRowsCleared();
+        fitness[i] += result.getFitness();
+        trialsPlayed[i]++;
+
+        report.record(result);
+    }
+
+    /**
+     * Checks whether an individual is certain to end up on the same side of both cutoffs no matter how the remaining games go.
+     * It is certainly inside a cutoff when fewer others than the cutoff could still reach its current total,
+     * and certainly outside when at least that many others have already passed the best total it could still reach.
+     */
+    private boolean isSettled(int i, HeadlessTetris[] games, double[] rows, int[] trialsPlayed,
+                              boolean[] stopped, boolean[] banked, int trials) {
+        double lower = lowerBound(i, games, rows, stopped, banked);
+        double upper = upperBound(i, rows, trialsPlayed, stopped, trials);
+
+        for (int cutoff : new int[]{survivors, parents}) {
+            int couldBeat = 0, haveBeaten = 0;
+            for (int j = 0; j < games.length; j++) {
+                if (j == i) continue;
+                if (upperBound(j, rows, trialsPlayed, stopped, trials) >= lower) couldBeat++;
+                if (lowerBound(j, games, rows, stopped, banked) > upper) haveBeaten++;
+            }
+            if (couldBeat >= cutoff && haveBeaten < cutoff) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The rows an individual has cleared so far across all of its trials; rows cleared never go down.
+     */
+    private double lowerBound(int i, HeadlessTetris[] games, double[] rows, boolean[] stopped, boolean[] banked) {
+        if (stopped[i] || banked[i] || games[i] == null) return rows[i];
+        return rows[i] + games[i].getRowsCleared();
+    }
+
+    /**
+     * The most rows an individual could still end up with. A game that is still going can clear any number of rows,
+     * so the bound is only finite once all of the individual's trials are over.
+     */
+    private double upperBound(int i, double[] rows, int[] trialsPlayed, boolean[] stopped, int trials) {
+        if (stopped[i] || trialsPlayed[i] < trials) return Double.POSITIVE_INFINITY;
+        return rows[i];
+    }
+
+    /**
+     * Finishes every stopped game and plays the trials it skipped, then compares the selection the race made
+     * with the selection that finishing every game would have made.
+     */
+    private void audit(JTetrisBrainIndividual[] pop, long[] seeds, HeadlessTetris[] games, double[] rows,
+                       int[] trialsPlayed, boolean[] stopped, Report report) {
+        long start = System.currentTimeMillis();
+        double[] fullRows = new double[pop.length];
+        long extraPieces = 0;
+
+        for (int i = 0; i < pop.length; i++) {
+            fullRows[i] = rows[i];
+            if (!stopped[i]) continue;
+
+            // The stopped game resumes exactly where it was stopped, so only its remainder is extra work
+            int stoppedAt = games[i].getPiecesPlaced();
+            int rowsAtStop = games[i].getRowsCleared();
+            GameResult finished = games[i].playToEnd();
+            if (cache != null) cache.put(pop[i].getWeights(), boardPercentage, finished);
+            fullRows[i] += finished.getRowsCleared() - rowsAtStop;
+            extraPieces += finished.getPiecesPlaced() - stoppedAt;
+
+            for (int t = trialsPlayed[i]; t < seeds.length; t++) {
+                HeadlessTetris game = new HeadlessTetris(pop[i].getWeights(), seeds[t], boardPercentage);
+                game.startGame();
+                GameResult result = game.playToEnd();
+                if (cache != null) cache.put(pop[i].getWeights(), boardPercentage, result);
+                fullRows[i] += result.getRowsCleared();
+                extraPieces += result.getPiecesPlaced();
+            }
+        }
+
+        double[] raceScores = new double[pop.length];
+        for (int i = 0; i < pop.length; i++) raceScores[i] = pop[i].getScore();
+        double[] fullScores = new double[pop.length];
+        for (int i = 0; i < pop.length; i++) fullScores[i] = fullRows[i] / seeds.length;
+
+        report.fullPieces = report.piecesSimulated + extraPieces;
+        report.survivorChanges = changedMembers(raceScores, fullScores, survivors);
+        report.parentChanges = changedMembers(raceScores, fullScores, parents);
+        report.auditMillis = System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Counts the individuals that make the top of one ranking but not the other.
+     * @param a, the scores of the first ranking
+     * @param b, the scores of the second ranking
+     * @param cutoff, how many of the top individuals are compared
+     * @return the number of individuals in the top of a that are missing from the top of b
+     */
+    static int changedMembers(double[] a, double[] b, int cutoff) {
+        boolean[] inA = topMembers(a, cutoff);
+        boolean[] inB = topMembers(b, cutoff);
+        int changed = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (inA[i] && !inB[i]) changed++;
+        }
+        return changed;
+    }
+
+    /**
+     * Marks the individuals the trainer's descending sort would put within the cutoff.
+     * Ties keep population order, as they do in the trainer's stable sort.
+     */
+    static boolean[] topMembers(double[] scores, int cutoff) {
+        Integer[] order = new Integer[scores.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(scores[i2], scores[i1]);
+            }
+        });
+
+        boolean[] top = new boolean[scores.length];
+        for (int i = 0; i < Math.min(cutoff, order.length); i++) top[order[i]] = true;
+        return top;
+    }
+
+    /**
+     * What a race did: how many games were played and stopped, how many pieces were simulated,
+     * and when audited, how much work finishing every game would have taken and which selections would have changed.
+     */
+    public static class Report extends GenerationStats {
+        int gamesStopped;
+        long fullPieces = -1;
+        int survivorChanges = -1;
+        int parentChanges = -1;
+        long raceMillis;
+        long auditMillis;
+
+        @Override
+        public String toString() {
+            String s = "Racing: " + gamesStopped + "/" + games + " games stopped early, "
+                    + piecesSimulated + " pieces simulated in " + raceMillis / 1000.0 + "s";
+            if (fullPieces < 0) return s;
+
+            double saved = fullPieces == 0 ? 0 : 100.0 * (fullPieces - piecesSimulated) / fullPieces;
+            return s + String.format("%nRacing audit: %d pieces to finish every game (%.1f%% saved, %.2fs more), "
+                    + "survivor changes %d, parent changes %d", fullPieces, saved, auditMillis / 1000.0, survivorChanges, parentChanges);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package tetris;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The training settings that JTetrisBrainTrainer keeps as constants, gathered in one immutable value so several
+ * trainings with different settings can run side by side, as in JTetrisBrainSweep.
+ */
+public class JTetrisBrainRecipe {
+    // The names accepted by with(), in the order toString() writes them
+    public static final String[] KEYS = {"mutation", "immigrants", "survivors", "parents", "trials", "population", "height"};
+
+    private double mutationRate;
+    private double immigrantRate;
+    private double survivorRate;
+    private double parentRate;
+    private int trials;
+    private int populationSize;
+    private double boardPercentage;
+
+    /**
+     * Creates a recipe
+     * @param mutationRate, the chance each weight of a child is nudged by a Gaussian
+     * @param immigrantRate, the share of each generation replaced by random brains
+     * @param survivorRate, the share of each generation carried over unchanged
+     * @param parentRate, the share of each generation parents are drawn from
+     * @param trials, the games each brain plays per generation
+     * @param populationSize, the number of brains per generation
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     */
+    public JTetrisBrainRecipe(double mutationRate, double immigrantRate, double survivorRate, double parentRate, int trials,
+                              int populationSize, double boardPercentage) {
+        this.mutationRate = mutationRate;
+        this.immigrantRate = immigrantRate;
+        this.survivorRate = survivorRate;
+        this.parentRate = parentRate;
+        this.trials = Math.max(1, trials);
+        this.populationSize = Math.max(2, populationSize);
+        this.boardPercentage = boardPercentage;
+    }
+
+    /**
+     * Fetches the trainer's own settings
+     * @return the recipe of JTetrisBrainTrainer's constants
+     */
+    public static JTetrisBrainRecipe defaults() {
+        return new JTetrisBrainRecipe(JTetrisBrainTrainer.MUTATION_RATE, JTetrisBrainTrainer.IMMIGRANT_RATE,
+                JTetrisBrainTrainer.SURVIVOR_RATE, JTetrisBrainTrainer.PARENT_RATE, JTetrisBrainTrainer.TRIALS,
+                JTetrisBrainTrainer.INITIAL_POPULATION_SIZE, JTetrisBrainTrainer.BOARD_PERCENTAGE);
+    }
+
+    /**
+     * Draws a recipe from ranges around the trainer's settings: rates log-uniformly or uniformly, sizes from a few
+     * typical choices
+     * @param r, the random generator
+     * @return a random recipe
+     */
+    public static JTetrisBrainRecipe random(Random r) {
+        int[] trials = {1, 2, 3, 5};
+        int[] sizes = {20, 50, 100, 200};
+        return new JTetrisBrainRecipe(Math.exp(Math.log(0.005) + r.nextDouble() * Math.log(0.3 / 0.005)), 0.1 * r.nextDouble(),
+                0.02 + 0.18 * r.nextDouble(), 0.1 + 0.4 * r.nextDouble(), trials[r.nextInt(trials.length)],
+                sizes[r.nextInt(sizes.length)], 0.3 + 0.45 * r.nextDouble());
+    }
+
+    /**
+     * Copies the recipe with one setting changed
+     * @param key, one of KEYS
+     * @param value, the new value
+     * @return the changed copy
+     * @throws IllegalArgumentException if the key is unknown
+     */
+    public JTetrisBrainRecipe with(String key, double value) {
+        switch (key) {
+            case "mutation": return new JTetrisBrainRecipe(value, immigrantRate, survivorRate, parentRate, trials, populationSize, boardPercentage);
+            case "immigrants": return new JTetrisBrainRecipe(mutationRate, value, survivorRate, parentRate, trials, populationSize, boardPercentage);
+            case "survivors": return new JTetrisBrainRecipe(mutationRate, immigrantRate, value, parentRate, trials, populationSize, boardPercentage);
+            case "parents": return new JTetrisBrainRecipe(mutationRate, immigrantRate, survivorRate, value, trials, populationSize, boardPercentage);
+            case "trials": return new JTetrisBrainRecipe(mutationRate, immigrantRate, survivorRate, parentRate, (int)value, populationSize, boardPercentage);
+            case "population": return new JTetrisBrainRecipe(mutationRate, immigrantRate, survivorRate, parentRate, trials, (int)value, boardPercentage);
+            case "height": return new JTetrisBrainRecipe(mutationRate, immigrantRate, survivorRate, parentRate, trials, populationSize, value);
+            default: throw new IllegalArgumentException("unknown setting " + key + ", expected one of " + String.join(", ", KEYS));
+        }
+    }
+
+    public double getMutationRate() { return mutationRate; }
+
+    public double getImmigrantRate() { return immigrantRate; }
+
+    public double getSurvivorRate() { return survivorRate; }
+
+    public double getParentRate() { return parentRate; }
+
+    public int getTrials() { return trials; }
+
+    public int getPopulationSize() { return populationSize; }
+
+    public double getBoardPercentage() { return boardPercentage; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "mutation=%.4f immigrants=%.3f survivors=%.3f parents=%.3f trials=%d population=%d height=%.2f",
+                mutationRate, immigrantRate, survivorRate, parentRate, trials, populationSize, boardPercentage);
+    }
+}
@@ -0,0 +1,293 @@
+package tetris;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays a generation's games on several threads so the generation ends as close to total work / threads as possible.
+ * Games are handed out longest first, using each individual's previous score (or its parents' for a child) as the
+ * predicted length, onto the thread with the least predicted work. Each game is played in chunks of pieces; between
+ * chunks the game, which keeps its own board and brain until it ends, goes to the back of its thread's queue, so a
+ * thread that runs out of work can steal a waiting game, started or not, from the back of the busiest thread's queue.
+ */
+public class JTetrisBrainScheduler implements JTetrisBrainEvaluator {
+    private int threads;
+    private int chunkPieces;
+    private boolean longestFirst;
+    private double boardPercentage;
+    private GameRecorder recorder;
+    private AtomicInteger remaining = new AtomicInteger();
+    private AtomicLong longestGame = new AtomicLong();
+
+    /**
+     * Creates a scheduler
+     * @param threads, the number of threads playing games
+     * @param chunkPieces, the pieces a game plays before it is requeued, or 0 to play games in one go
+     * @param longestFirst, whether to order games by predicted length; otherwise they are dealt out in population order
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     */
+    public JTetrisBrainScheduler(int threads, int chunkPieces, boolean longestFirst, double boardPercentage) {
+        this.threads = Math.max(1, threads);
+        this.chunkPieces = chunkPieces;
+        this.longestFirst = longestFirst;
+        this.boardPercentage = boardPercentage;
+    }
+
+    /**
+     * Reports every game that is played, from whichever thread finished it
+     * @param recorder, a thread-safe recorder to notify, or null for none
+     */
+    @Override
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Plays every individual's games and sets its score to its mean rows cleared and its fitness to its mean
+     * final-board fitness. The scores the individuals come in with are used as the predicted game lengths.
+     * @param pop, the population to evaluate
+     * @param seeds, the seeds every individual plays
+     * @param finished, games already finished (e.g. restored from a checkpoint) by individual and trial, or null
+     * @return how evenly the work was spread
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    @Override
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished) throws InterruptedException {
+        GameResult[][] results = new GameResult[pop.length][seeds.length];
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < pop.length; i++) {
+            for (int t = 0; t < seeds.length; t++) {
+                GameResult known = finished != null && t < finished[i].length ? finished[i][t] : null;
+                if (known != null) results[i][t] = known;
+                else jobs.add(new Job(i, t, pop[i].getWeights(), seeds[t], pop[i].getScore()));
+            }
+        }
+        if (longestFirst) {
+            Collections.sort(jobs, new Comparator<Job>() {
+                @Override
+                public int compare(Job j1, Job j2) {
+                    return Double.compare(j2.predicted, j1.predicted);
+                }
+            });
+        }
+
+        // Greedy longest-processing-time assignment: each game goes to the thread with the least predicted work so far
+        Worker[] workers = new Worker[threads];
+        for (int k = 0; k < threads; k++) workers[k] = new Worker(workers, results);
+        for (int j = 0; j < jobs.size(); j++) {
+            Worker target = workers[j % threads];
+            if (longestFirst) {
+                for (Worker w : workers) if (w.predicted < target.predicted) target = w;
+            }
+            target.queue.offerLast(jobs.get(j));
+            target.predicted += Math.max(1, jobs.get(j).predicted);
+        }
+
+        Report report = new Report();
+        report.threads = threads;
+        remaining.set(jobs.size());
+        longestGame.set(0);
+        long start = System.nanoTime();
+        Thread[] running = new Thread[threads];
+        for (int k = 0; k < threads; k++) {
+            running[k] = new Thread(workers[k], "scheduler-" + k);
+            running[k].start();
+        }
+        for (Thread t : running) t.join();
+        report.makespanNanos = System.nanoTime() - start;
+
+        for (Worker w : workers) {
+            report.busyNanos += w.busyNanos;
+            report.steals += w.steals;
+            report.chunks += w.chunks;
+        }
+        report.longestGameNanos = longestGame.get();
+        for (Job job : jobs) report.record(results[job.individual][job.trial]);
+
+        for (int i = 0; i < pop.length; i++) {
+            TrialStats stats = new TrialStats();
+            for (GameResult result : results[i]) stats.add(result);
+            pop[i].setScore(stats.getMean());
+            pop[i].setFitness(stats.getFitness());
+        }
+        return report;
+    }
+
+    /**
+     * Compares population-order scheduling with whole games against longest-first scheduling with chunked, stealable games
+     * on one generation of a population file, whose stored scores serve as the predictions.
+     * Usage: JTetrisBrainScheduler [population file] [threads] [chunk pieces]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String file = args.length > 0 ? args[0] : JTetrisBrainTrainer.POPULATION_FILENAME;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int chunk = args.length > 2 ? Integer.parseInt(args[2]) : JTetrisBrainTrainer.CHUNK_PIECES;
+        long[] seeds = new long[JTetrisBrainTrainer.TRIALS];
+        for (int t = 0; t < seeds.length; t++) seeds[t] = t + 1;
+
+        JTetrisBrainIndividual[] pop = new TetrisBrain(file).getPopulation();
+        double[] scores = readScores(file, pop.length);
+        for (int i = 0; i < pop.length; i++) pop[i].setScore(scores[i]);
+        System.out.println("Population order: " + new JTetrisBrainScheduler(threads, 0, false, JTetrisBrainTrainer.BOARD_PERCENTAGE)
+                .evaluate(pop, seeds, null));
+
+        for (int i = 0; i < pop.length; i++) pop[i].setScore(scores[i]);
+        System.out.println("Longest first:    " + new JTetrisBrainScheduler(threads, chunk, true, JTetrisBrainTrainer.BOARD_PERCENTAGE)
+                .evaluate(pop, seeds, null));
+    }
+
+    private static double[] readScores(String file, int count) {
+        double[] scores = new double[count];
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine();
+            String line;
+            for (int i = 0; i < count && (line = reader.readLine()) != null; i++) {
+                scores[i] = Double.parseDouble(line.substring(line.indexOf('|') + 1).trim());
+                // Brains that were only estimated were never played in full, so they are predicted to be short
+                if (Double.isNaN(scores[i])) scores[i] = 0;
+            }
+        }
+        catch (IOException | NumberFormatException e) {
+            System.err.println("could not read scores from " + file + ", predictions will be flat");
+        }
+        return scores;
+    }
+
+    /**
+     * One game of one individual, kept in play between chunks.
+     */
+    private static class Job {
+        int individual;
+        int trial;
+        double[] weights;
+        long seed;
+        double predicted;
+        HeadlessTetris game;
+        long nanos;
+
+        Job(int individual, int trial, double[] weights, long seed, double predicted) {
+            this.individual = individual;
+            this.trial = trial;
+            this.weights = weights;
+            this.seed = seed;
+            this.predicted = predicted;
+        }
+    }
+
+    private class Worker implements Runnable {
+        private LinkedBlockingDeque<Job> queue = new LinkedBlockingDeque<>();
+        private Worker[] workers;
+        private GameResult[][] results;
+        private double predicted;
+        private long busyNanos;
+        private int steals;
+        private int chunks;
+
+        Worker(Worker[] workers, GameResult[][] results) {
+            this.workers = workers;
+            this.results = results;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (remaining.get() > 0) {
+                    Job job = queue.pollFirst();
+                    if (job == null) job = steal();
+                    // Every game left is in the middle of a chunk on another thread; one may come back here, or
+                    // be left waiting in another queue to steal on the next pass
+                    if (job == null) job = queue.pollFirst(1, TimeUnit.MILLISECONDS);
+                    if (job != null) play(job);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Takes the game at the back of the queue of the thread with the most games waiting.
+         */
+        private Job steal() {
+            Worker victim = null;
+            int most = 0;
+            for (Worker w : workers) {
+                int size = w == this ? 0 : w.queue.size();
+                if (size > most) {
+                    most = size;
+                    victim = w;
+                }
+            }
+            Job job = victim == null ? null : victim.queue.pollLast();
+            if (job != null) steals++;
+            return job;
+        }
+
+        private void play(Job job) {
+            long start = System.nanoTime();
+            if (job.game == null) {
+                job.game = new HeadlessTetris(job.weights, job.seed, boardPercentage);
+                job.game.startGame();
+            }
+            HeadlessTetris game = job.game;
+            int placed = game.getPiecesPlaced();
+            if (chunkPieces > 0) game.playUntil(placed + chunkPieces);
+            else game.playToEnd();
+            boolean on = game.isGameOn();
+            chunks++;
+            long elapsed = System.nanoTime() - start;
+            busyNanos += elapsed;
+            job.nanos += elapsed;
+
+            if (on) {
+                queue.offerLast(job);
+                return;
+            }
+            job.game = null;
+
+            GameResult result = game.getResult();
+            results[job.individual][job.trial] = result;
+            if (recorder != null) recorder.gameFinished(job.individual, job.trial, result);
+            longestGame.accumulateAndGet(job.nanos, Math::max);
+            remaining.decrementAndGet();
+        }
+    }
+
+    /**
+     * How close the generation came to an even split of the work.
+     */
+    public static class Report extends GenerationStats {
+        int threads;
+        long makespanNanos;
+        long busyNanos;
+        long longestGameNanos;
+        int steals;
+        int chunks;
+
+        /**
+         * Fetches the ideal makespan over the actual one; a single game longer than the ideal caps what is reachable
+         * @return the efficiency between 0 and 1
+         */
+        public double getEfficiency() {
+            return makespanNanos == 0 ? 1 : (double)busyNanos / threads / makespanNanos;
+        }
+
+        public long getMakespanNanos() { return makespanNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("Scheduler: %d games, %d chunks, %d steals on %d threads, makespan %.2fs vs ideal %.2fs "
+                    + "(%.0f%% efficient, longest game %.2fs), %d pieces", games, chunks, steals, threads, makespanNanos / 1e9,
+                    busyNanos / 1e9 / threads, 100 * getEfficiency(), longestGameNanos / 1e9, piecesSimulated);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates a population with an adaptive number of games per individual instead of a fixed TRIALS.
+ * Every individual first plays a few games, then in rounds only the individuals whose confidence interval
+ * still contains a selection boundary (halfway between the last individual inside a cutoff and the first one outside it)
+ * get another game, until every rank is settled, they hit the trial limit, or the generation's game budget runs out.
+ * All individuals play their k-th game on the same seed, so differences come from the weights and not from the pieces.
+ */
+public class JTetrisBrainSequentialTrials implements JTetrisBrainEvaluator {
+    private int survivors;
+    private int parents;
+    private int minTrials;
+    private int maxTrials;
+    private int budget;
+    private double z;
+    private double boardPercentage;
+    private JTetrisBrainFitnessCache cache;
+    private GameRecorder recorder;
+
+    /**
+     * Creates an adaptive evaluator.
+     * @param survivors, the number of top individuals copied into the next generation
+     * @param parents, the number of top individuals allowed to breed
+     * @param minTrials, the number of games every individual plays before it can be considered settled
+     * @param maxTrials, the most games any individual plays
+     * @param budget, the total number of games that may be played per generation
+     * @param z, the number of standard errors on each side of an individual's mean score; it is kept wider than
+     *           a one-off test would need because the interval is checked again after every game
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     */
+    public JTetrisBrainSequentialTrials(int survivors, int parents, int minTrials, int maxTrials, int budget,
+                                        double z, double boardPercentage) {
+        this.survivors = survivors;
+        this.parents = parents;
+        this.minTrials = Math.max(1, minTrials);
+        this.maxTrials = Math.max(this.minTrials, maxTrials);
+        this.budget = budget;
+        this.z = z;
+        this.boardPercentage = boardPercentage;
+    }
+
+    /**
+     * Lets stored games stand in for playing them; reused games do not count against the budget
+     * @param cache, the fitness cache to use, or null for none
+     */
+    public void setCache(JTetrisBrainFitnessCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Reports every game that is played
+     * @param recorder, the recorder to notify, or null for none
+     */
+    @Override
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Evaluates the population with nothing known in advance
+     * @param pop, the population to evaluate
+     * @param seeds, the shared seeds
+     * @return a summary of how the games were allocated
+     */
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds) {
+        return evaluate(pop, seeds, null);
+    }
+
+    /**
+     * Plays games until every individual's rank relative to the cutoffs is settled or the budget is spent,
+     * then sets each individual's score to its mean rows cleared and its fitness to its mean final-board fitness.
+     * Games the cache already has do not count against the budget, and no more games than the budget are played:
+     * an individual the budget did not reach is marked estimated and ranked, by the score it had, below everybody
+     * who played.
+     * @param pop, the population to evaluate
+     * @param seeds, the shared seeds; an individual's k-th game is played on seeds[k], so at least maxTrials are needed
+     * @param finished, games already finished (e.g. restored from a checkpoint) by individual and trial, or null
+     * @return a summary of how the games were allocated
+     */
+    @Override
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished) {
+        int n = pop.length;
+        int trialLimit = Math.min(maxTrials, seeds.length);
+        TrialStats[] stats = new TrialStats[n];
+        GameResult[][] known = new GameResult[n][];
+        Report report = new Report();
+        report.budget = budget;
+        long start = System.currentTimeMillis();
+
+        // Everybody gets the same head start, shrunk if the budget cannot afford it; when the budget is smaller than
+        // the population, the individuals past it get no game at all
+        int initial = Math.max(1, Math.min(Math.min(minTrials, trialLimit), budget / Math.max(1, n)));
+        for (int i = 0; i < n; i++) {
+            stats[i] = new TrialStats();
+            known[i] = cache == null ? new GameResult[seeds.length] : cache.lookup(pop[i].getWeights(), boardPercentage, seeds);
+            for (int t = 0; finished != null && t < Math.min(seeds.length, finished[i].length); t++) {
+                if (finished[i][t] != null) known[i][t] = finished[i][t];
+            }
+            for (int t = 0; t < initial; t++) {
+                if (known[i][t] == null && report.games >= budget) break;
+                play(i, pop[i], stats[i], known[i], seeds, report);
+            }
+        }
+
+        while (report.games < budget) {
+            List<Integer> unsettled = unsettled(stats, trialLimit);
+            if (unsettled.isEmpty()) break;
+            report.rounds++;
+
+            for (int i : unsettled) {
+                if (report.games >= budget) break;
+                play(i, pop[i], stats[i], known[i], seeds, report);
+            }
+        }
+
+        report.unsettled = unsettled(stats, trialLimit).size();
+        report.minTrials = Integer.MAX_VALUE;
+        double lowestPlayed = Double.POSITIVE_INFINITY;
+        List<Integer> unplayed = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (stats[i].getTrials() == 0) {
+                report.unplayed++;
+                unplayed.add(i);
+            }
+            else {
+                pop[i].setScore(stats[i].getMean());
+                pop[i].setFitness(stats[i].getFitness());
+                pop[i].setEstimated(false);
+                lowestPlayed = Math.min(lowestPlayed, stats[i].getMean());
+            }
+            report.minTrials = Math.min(report.minTrials, stats[i].getTrials());
+            report.maxTrials = Math.max(report.maxTrials, stats[i].getTrials());
+        }
+
+        // Without a game, the score it came in with (its parents' average for a child) only ranks it: in that order,
+        // each strictly below everybody played and the one before
+        Collections.sort(unplayed, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(pop[i2].getScore(), pop[i1].getScore());
+            }
+        });
+        double below = lowestPlayed;
+        for (int i : unplayed) {
+            below = Math.min(pop[i].getScore(), Math.nextDown(below));
+            pop[i].setScore(below);
+            pop[i].setEstimated(true);
+        }
+        report.individuals = n;
+        report.millis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /**
+     * Plays the individual's next game on the next shared seed, or reuses it if the cache already has it.
+     */
+    private void play(int i, JTetrisBrainIndividual individual, TrialStats stats, GameResult[] known, long[] seeds, Report report) {
+        int t = stats.getTrials();
+        if (known[t] != null) {
+            stats.add(known[t]);
+            report.recordCached(known[t]);
+            return;
+        }
+
+        HeadlessTetris game = new HeadlessTetris(individual.getWeights(), seeds[t], boardPercentage);
+        game.startGame();
+        GameResult result = game.playToEnd();
+        if (cache != null) cache.put(individual.getWeights(), boardPercentage, result);
+        if (recorder != null) recorder.gameFinished(i, t, result);
+        stats.add(result);
+        report.record(result);
+    }
+
+    /**
+     * Finds the individuals that have played, may still play, and whose confidence interval contains a selection boundary,
+     * most ambiguous first (the boundary closest to the mean, measured in interval half widths).
+     */
+    private List<Integer> unsettled(TrialStats[] stats, int trialLimit) {
+        double[] means = new double[stats.length];
+        List<Double> played = new ArrayList<>();
+        for (int i = 0; i < stats.length; i++) {
+            means[i] = stats[i].getMean();
+            if (stats[i].getTrials() > 0) played.add(means[i]);
+        }
+        double[] sorted = played.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+
+        List<Double> boundaries = new ArrayList<>();
+        for (int cutoff : new int[]{survivors, parents}) {
+            if (cutoff <= 0 || cutoff >= sorted.length) continue;
+            // sorted is ascending, so the cutoff-th best score sits at length - cutoff
+            boundaries.add((sorted[sorted.length - cutoff] + sorted[sorted.length - cutoff - 1]) / 2);
+        }
+
+        double[] ambiguity = new double[stats.length];
+        List<Integer> unsettled = new ArrayList<>();
+        for (int i = 0; i < stats.length; i++) {
+            if (stats[i].getTrials() >= trialLimit || stats[i].getTrials() == 0) continue;
+            double halfWidth = stats[i].getHalfWidth(z);
+            double closest = Double.POSITIVE_INFINITY;
+            for (double boundary : boundaries) closest = Math.min(closest, Math.abs(means[i] - boundary));
+            if (closest > halfWidth) continue;
+
+            ambiguity[i] = halfWidth == Double.POSITIVE_INFINITY || halfWidth == 0 ? 0 : closest / halfWidth;
+            unsettled.add(i);
+        }
+
+        Collections.sort(unsettled, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(ambiguity[i1], ambiguity[i2]);
+            }
+        });
+        return unsettled;
+    }
+
+    /**
+     * How the game budget of a generation was spent.
+     */
+    public static class Report extends GenerationStats {
+        int budget;
+        int individuals;
+        int rounds;
+        int unsettled;
+        int unplayed;
+        int minTrials;
+        int maxTrials;
+        long millis;
+
+        @Override
+        public String toString() {
+            return String.format("Adaptive trials: %d/%d games in %d extra rounds (%.2f per individual, min %d, max %d), "
+                    + "%d still unsettled, %d unplayed, %d pieces in %.2fs", games, budget, rounds,
+                    (double)games / Math.max(1, individuals), minTrials, maxTrials, unsettled, unplayed, piecesSimulated, millis / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package tetris;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs the genetic algorithm without generations. Each worker thread breeds one child at a time from the current
+ * population using tournament selection, plays its games, and swaps it in for the worst member if it scored better.
+ * The population lives in an array of atomic slots, so a worker that draws a long game never holds up the others;
+ * a slot is only replaced if it still holds the member the worker saw as the worst, otherwise the worker looks again.
+ */
+public class JTetrisBrainSteadyState {
+    private static final Comparator<JTetrisBrainIndividual> BEST_FIRST = new Comparator<JTetrisBrainIndividual>() {
+        @Override
+        public int compare(JTetrisBrainIndividual i1, JTetrisBrainIndividual i2) {
+            return Double.compare(i2.getScore(), i1.getScore());
+        }
+    };
+
+    private AtomicReferenceArray<JTetrisBrainIndividual> pool;
+    private int workers;
+    private int tournamentSize;
+    private int trials;
+    private double boardPercentage;
+    private volatile boolean running;
+    private long maxEvaluations;
+    private AtomicInteger nextInitial = new AtomicInteger();
+    private AtomicLong claimed = new AtomicLong();
+    private AtomicLong evaluations = new AtomicLong();
+    private AtomicLong inserted = new AtomicLong();
+    private AtomicLong games = new AtomicLong();
+    private AtomicLong pieces = new AtomicLong();
+
+    /**
+     * Creates a steady-state run over a starting population. Its members are copied and re-scored before they breed.
+     * @param pop, the starting population
+     * @param workers, the number of threads breeding and playing
+     * @param tournamentSize, the number of random members a parent is picked from
+     * @param trials, the number of games each child plays
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     */
+    public JTetrisBrainSteadyState(JTetrisBrainIndividual[] pop, int workers, int tournamentSize, int trials, double boardPercentage) {
+        this.workers = Math.max(1, workers);
+        this.tournamentSize = Math.max(1, tournamentSize);
+        this.trials = Math.max(1, trials);
+        this.boardPercentage = boardPercentage;
+
+        // Unscored members hold negative infinity until their first games finish, so they never win a tournament
+        pool = new AtomicReferenceArray<>(pop.length);
+        for (int i = 0; i < pop.length; i++) {
+            JTetrisBrainIndividual member = new JTetrisBrainIndividual(pop[i].getWeights().clone());
+            member.setScore(Double.NEGATIVE_INFINITY);
+            pool.set(i, member);
+        }
+    }
+
+    /**
+     * Breeds and evaluates children on every worker until the evaluation limit is reached, writing a snapshot of
+     * the population periodically. A population's worth of evaluations is counted as one generation in the file.
+     * @param maxEvaluations, the number of individuals to evaluate, counting the starting population
+     * @param fileName, the population file to write snapshots to, or null for none
+     * @param snapshotMillis, the time between snapshots and progress lines
+     * @return how the evaluations went
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Report run(long maxEvaluations, String fileName, long snapshotMillis) throws InterruptedException {
+        this.maxEvaluations = maxEvaluations;
+        running = true;
+        long start = System.currentTimeMillis();
+
+        Thread[] threads = new Thread[workers];
+        for (int k = 0; k < workers; k++) {
+            threads[k] = new Thread(new Worker(), "steady-state-" + k);
+            threads[k].setDaemon(true);
+            threads[k].start();
+        }
+
+        boolean alive = true;
+        while (alive) {
+            long wake = System.currentTimeMillis() + snapshotMillis;
+            alive = false;
+            for (Thread t : threads) {
+                t.join(Math.max(1, wake - System.currentTimeMillis()));
+                alive |= t.isAlive();
+            }
+            if (alive) snapshot(fileName, true);
+        }
+        running = false;
+        snapshot(fileName, false);
+
+        Report report = new Report();
+        report.evaluations = evaluations.get();
+        report.inserted = inserted.get();
+        report.games = games.get();
+        report.pieces = pieces.get();
+        report.millis = System.currentTimeMillis() - start;
+        report.best = getPopulation()[0].getScore();
+        return report;
+    }
+
+    /**
+     * Tells the workers to stop after the child they are playing
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Takes a consistent-enough copy of the population, best first. Each slot is read atomically,
+     * but slots may be replaced while the copy is being made.
+     * @return copies of every member
+     */
+    public JTetrisBrainIndividual[] getPopulation() {
+        JTetrisBrainIndividual[] copy = new JTetrisBrainIndividual[pool.length()];
+        for (int i = 0; i < copy.length; i++) {
+            JTetrisBrainIndividual member = pool.get(i);
+            copy[i] = new JTetrisBrainIndividual(member.getWeights().clone());
+            copy[i].setScore(member.getScore());
+            copy[i].setFitness(member.getFitness());
+        }
+        Arrays.sort(copy, BEST_FIRST);
+        return copy;
+    }
+
+    private void snapshot(String fileName, boolean print) {
+        JTetrisBrainIndividual[] sorted = getPopulation();
+        int generation = (int)(evaluations.get() / pool.length());
+        if (print) {
+            System.out.printf("%d evaluations (generation %d), %d inserted, best %.1f, median %.1f%n", evaluations.get(),
+                    generation, inserted.get(), sorted[0].getScore(), sorted[sorted.length / 2].getScore());
+        }
+        if (fileName == null) return;
+        try {
+            JTetrisBrainTrainer.writePopulation(fileName, generation, sorted);
+        }
+        catch (IOException e) {
+            System.err.println("could not write population snapshot " + fileName);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Repeatedly scores one of the starting members, or once they are all taken, breeds and scores a child.
+     */
+    private class Worker implements Runnable {
+        private TetrisBrain brain = new TetrisBrain(new double[JTetrisBrainTrainer.WEIGHT_COUNT]);
+        private Random random = new Random();
+
+        @Override
+        public void run() {
+            while (running && claimed.getAndIncrement() < maxEvaluations) {
+                int initial = nextInitial.getAndIncrement();
+                if (initial < pool.length()) {
+                    JTetrisBrainIndividual member = pool.get(initial);
+                    JTetrisBrainIndividual scored = new JTetrisBrainIndividual(member.getWeights());
+                    evaluate(scored);
+                    pool.compareAndSet(initial, member, scored);
+                    evaluations.incrementAndGet();
+                    inserted.incrementAndGet();
+                    continue;
+                }
+
+                JTetrisBrainIndividual child = breed();
+                evaluate(child);
+                evaluations.incrementAndGet();
+                if (replaceWorst(child)) inserted.incrementAndGet();
+            }
+        }
+
+        private JTetrisBrainIndividual breed() {
+            if (random.nextDouble() < JTetrisBrainTrainer.IMMIGRANT_RATE) return new JTetrisBrainIndividual();
+
+            JTetrisBrainIndividual parent1 = tournament();
+            JTetrisBrainIndividual parent2 = tournament();
+            for (int tries = 0; parent1.equals(parent2) && tries < 4 * tournamentSize; tries++) parent2 = tournament();
+
+            JTetrisBrainIndividual child = brain.crossOver(parent1, parent2);
+            brain.mutate(child);
+            return child;
+        }
+
+        /**
+         * Picks the best of a few random members
+         */
+        private JTetrisBrainIndividual tournament() {
+            JTetrisBrainIndividual best = pool.get(random.nextInt(pool.length()));
+            for (int i = 1; i < tournamentSize; i++) {
+                JTetrisBrainIndividual contender = pool.get(random.nextInt(pool.length()));
+                if (contender.getScore() > best.getScore()) best = contender;
+            }
+            return best;
+        }
+
+        private void evaluate(JTetrisBrainIndividual individual) {
+            TrialStats stats = new TrialStats();
+            for (int t = 0; t < trials; t++) {
+                HeadlessTetris game = new HeadlessTetris(individual.getWeights(), random.nextLong(), boardPercentage);
+                game.startGame();
+                GameResult result = game.playToEnd();
+                stats.add(result);
+                games.incrementAndGet();
+                pieces.addAndGet(result.getPiecesPlaced());
+            }
+            individual.setScore(stats.getMean());
+            individual.setFitness(stats.getFitness());
+        }
+
+        /**
+         * Swaps the child in for the lowest scoring member that has been scored, if the child beat it.
+         * Starting members still being played are left alone so their result is not lost.
+         * @return whether the child made it into the population
+         */
+        private boolean replaceWorst(JTetrisBrainIndividual child) {
+            while (true) {
+                int worst = -1;
+                JTetrisBrainIndividual worstMember = null;
+                for (int i = 0; i < pool.length(); i++) {
+                    JTetrisBrainIndividual member = pool.get(i);
+                    if (member.getScore() == Double.NEGATIVE_INFINITY) continue;
+                    if (worstMember == null || member.getScore() < worstMember.getScore()) {
+                        worst = i;
+                        worstMember = member;
+                    }
+                }
+                if (worstMember == null || child.getScore() <= worstMember.getScore()) return false;
+                if (pool.compareAndSet(worst, worstMember, child)) return true;
+            }
+        }
+    }
+
+    /**
+     * How many children were evaluated and how many made it into the population.
+     */
+    public static class Report {
+        long evaluations;
+        long inserted;
+        long games;
+        long pieces;
+        long millis;
+        double best;
+
+        public long getEvaluations() { return evaluations; }
+
+        public long getInserted() { return inserted; }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(1, millis) / 1000.0;
+            return String.format("Steady state: %d evaluations, %d inserted, %d games (%.1f/s), %d pieces (%.0f/s), best %.1f",
+                    evaluations, inserted, games, games / seconds, pieces, pieces / seconds, best);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package tetris;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Evaluates a population with the help of a surrogate model: a ridge regression of log(1 + rows cleared) on each
+ * weight and its square, trained on every (weights, score) the trainer has measured so far. Individuals whose
+ * prediction, even raised by a few standard deviations of the model's leave-one-out error, stays below the prediction
+ * of the cutoffRank-th best individual are not played at all; they are ranked by prediction strictly below everybody
+ * who played and marked as estimated. A small random share of them is played anyway, keeping its measured score, to
+ * check how often the model threw away an individual that would have made the cut.
+ */
+public class JTetrisBrainSurrogate implements JTetrisBrainEvaluator {
+    private int capacity;
+    private int minHistory;
+    private double z;
+    private double auditRate;
+    private int cutoffRank;
+    private double boardPercentage;
+    private double ridge = 1;
+    private Random random;
+    private GameRecorder recorder;
+    private Deque<double[]> history = new ArrayDeque<>();
+
+    // The current fit, in standardized features
+    private double[] coefficients;
+    private double[] featureMeans;
+    private double[] featureScales;
+    private double residualDeviation;
+
+    /**
+     * Creates a surrogate evaluator with no history
+     * @param capacity, the most (weights, score) observations kept; the oldest are dropped first
+     * @param minHistory, the observations needed before the model is trusted to skip anybody
+     * @param z, the standard deviations of model error an individual is given the benefit of before it is skipped
+     * @param auditRate, the share of skipped individuals played anyway to measure false skips
+     * @param cutoffRank, the rank an individual must be predicted to be able to reach, e.g. the number of parents
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @param seed, the seed of the draw picking which skipped individuals are audited
+     */
+    public JTetrisBrainSurrogate(int capacity, int minHistory, double z, double auditRate, int cutoffRank, double boardPercentage,
+                                 long seed) {
+        this.capacity = capacity;
+        this.minHistory = minHistory;
+        this.z = z;
+        this.auditRate = auditRate;
+        this.cutoffRank = Math.max(1, cutoffRank);
+        this.boardPercentage = boardPercentage;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Reports every game that is played
+     * @param recorder, the recorder to notify, or null for none
+     */
+    @Override
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Adds a measured individual to the training data; evaluate does this for everybody it plays
+     * @param weights, the individual's weights
+     * @param score, its mean rows cleared
+     */
+    public void observe(double[] weights, double score) {
+        double[] row = Arrays.copyOf(weights, weights.length + 1);
+        row[weights.length] = Math.log1p(Math.max(0, score));
+        history.addLast(row);
+        while (history.size() > capacity) history.removeFirst();
+        coefficients = null;
+    }
+
+    /**
+     * Retrieves the number of observations the model is trained on
+     * @return the history size
+     */
+    public int getHistorySize() { return history.size(); }
+
+    /**
+     * Predicts an individual's mean rows cleared
+     * @param weights, the individual's weights
+     * @return the predicted score, or NaN while the history is too small to fit
+     */
+    public double predict(double[] weights) {
+        return Math.expm1(predictLog(weights));
+    }
+
+    /**
+     * Predicts every individual, plays the ones that may make the cut (and a few audited ones that probably will not),
+     * and sets every individual's score and fitness. Everybody played is added to the history afterwards.
+     * @param pop, the population to evaluate
+     * @param seeds, the seeds every played individual plays
+     * @param finished, games already finished (e.g. restored from a checkpoint) by individual and trial, or null
+     * @return how accurate the model was and how many games it saved
+     */
+    @Override
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished) {
+        int n = pop.length;
+        Report report = new Report();
+        report.individuals = n;
+        report.history = history.size();
+        long start = System.currentTimeMillis();
+
+        // Log-space predictions, and the one the cutoffRank-th best individual gets
+        double[] predicted = new double[n];
+        boolean trusted = history.size() >= minHistory;
+        for (int i = 0; i < n; i++) predicted[i] = trusted ? predictLog(pop[i].getWeights()) : Double.NaN;
+        double cutoff = Double.NEGATIVE_INFINITY;
+        if (trusted) {
+            double[] sorted = predicted.clone();
+            Arrays.sort(sorted);
+            cutoff = sorted[Math.max(0, n - cutoffRank)];
+        }
+
+        boolean[] skipped = new boolean[n];
+        boolean[] played = new boolean[n];
+        double[] actual = new double[n];
+        double lowestPlayed = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            skipped[i] = trusted && predicted[i] + z * residualDeviation < cutoff;
+            if (skipped[i]) report.skipped++;
+            if (skipped[i] && random.nextDouble() >= auditRate) {
+                report.gamesSaved += seeds.length;
+                continue;
+            }
+
+            TrialStats stats = new TrialStats();
+            for (int t = 0; t < seeds.length; t++) {
+                GameResult result = finished != null && t < finished[i].length ? finished[i][t] : null;
+                if (result == null) {
+                    HeadlessTetris game = new HeadlessTetris(pop[i].getWeights(), seeds[t], boardPercentage);
+                    game.startGame();
+                    result = game.playToEnd();
+                    if (recorder != null) recorder.gameFinished(i, t, result);
+                    report.record(result);
+                }
+                else report.recordCached(result);
+                stats.add(result);
+            }
+            played[i] = true;
+            actual[i] = stats.getMean();
+            if (skipped[i]) report.audited++;
+            pop[i].setScore(actual[i]);
+            pop[i].setFitness(stats.getFitness());
+            pop[i].setEstimated(false);
+            lowestPlayed = Math.min(lowestPlayed, actual[i]);
+        }
+
+        // A skipped individual could only have been wrongly skipped if it beat the real cutoffRank-th best score
+        List<Double> scores = new ArrayList<>();
+        for (int i = 0; i < n; i++) if (played[i] && !skipped[i]) scores.add(actual[i]);
+        scores.sort(Comparator.reverseOrder());
+        double actualCutoff = scores.isEmpty() ? 0 : scores.get(Math.min(cutoffRank, scores.size()) - 1);
+
+        // Individuals that were not played rank by prediction, each strictly below everybody played and the one before
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(predicted[i2], predicted[i1]);
+            }
+        });
+        double below = lowestPlayed;
+        for (int i : order) {
+            if (played[i]) continue;
+            below = Math.min(Math.expm1(predicted[i]), Math.nextDown(below));
+            pop[i].setScore(below);
+            pop[i].setFitness(Double.NaN);
+            pop[i].setEstimated(true);
+        }
+
+        List<double[]> pairs = new ArrayList<>();
+        double squaredError = 0;
+        for (int i = 0; i < n; i++) {
+            if (skipped[i] && played[i] && actual[i] >= actualCutoff) report.falseSkips++;
+            if (!played[i]) continue;
+            if (trusted) {
+                pairs.add(new double[]{predicted[i], actual[i]});
+                double error = predicted[i] - Math.log1p(actual[i]);
+                squaredError += error * error;
+            }
+            observe(pop[i].getWeights(), actual[i]);
+        }
+        report.trusted = trusted;
+        report.correlation = JTetrisBrainMultiFidelity.spearman(pairs);
+        report.logError = pairs.isEmpty() ? Double.NaN : Math.sqrt(squaredError / pairs.size());
+        report.millis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    private double predictLog(double[] weights) {
+        if (coefficients == null && !fit()) return Double.NaN;
+        double[] x = features(weights);
+        double y = coefficients[0];
+        for (int f = 0; f < x.length; f++) y += coefficients[f + 1] * (x[f] - featureMeans[f]) / featureScales[f];
+        return y;
+    }
+
+    /**
+     * Fits the ridge regression to the history, with standardized features and an unpenalized intercept.
+     */
+    private boolean fit() {
+        if (history.isEmpty()) return false;
+        int weightCount = history.peekFirst().length - 1;
+        int m = history.size(), p = 2 * weightCount;
+        double[][] x = new double[m][];
+        double[] y = new double[m];
+        int row = 0;
+        for (double[] observation : history) {
+            x[row] = features(Arrays.copyOf(observation, weightCount));
+            y[row++] = observation[weightCount];
+        }
+
+        featureMeans = new double[p];
+        featureScales = new double[p];
+        for (int f = 0; f < p; f++) {
+            double sum = 0, squares = 0;
+            for (int r = 0; r < m; r++) sum += x[r][f];
+            featureMeans[f] = sum / m;
+            for (int r = 0; r < m; r++) squares += (x[r][f] - featureMeans[f]) * (x[r][f] - featureMeans[f]);
+            featureScales[f] = Math.sqrt(squares / m) > 1e-12 ? Math.sqrt(squares / m) : 1;
+        }
+        double meanY = 0;
+        for (double v : y) meanY += v;
+        meanY /= m;
+
+        // Normal equations (X'X + ridge I) b = X'y on centered data
+        double[][] a = new double[p][p + 1];
+        for (int r = 0; r < m; r++) {
+            double[] s = new double[p];
+            for (int f = 0; f < p; f++) s[f] = (x[r][f] - featureMeans[f]) / featureScales[f];
+            for (int f = 0; f < p; f++) {
+                for (int g = 0; g < p; g++) a[f][g] += s[f] * s[g];
+                a[f][p] += s[f] * (y[r] - meanY);
+            }
+        }
+        for (int f = 0; f < p; f++) a[f][f] += ridge;
+        double[][] inverse = invert(a);
+        double[] b = solve(a);
+
+        coefficients = new double[p + 1];
+        coefficients[0] = meanY;
+        System.arraycopy(b, 0, coefficients, 1, p);
+
+        // Leave-one-out residuals, e / (1 - leverage), so the error is measured on observations the fit did not see
+        double squares = 0;
+        for (int r = 0; r < m; r++) {
+            double[] s = new double[p];
+            for (int f = 0; f < p; f++) s[f] = (x[r][f] - featureMeans[f]) / featureScales[f];
+            double fitted = meanY, leverage = 1.0 / m;
+            for (int f = 0; f < p; f++) {
+                fitted += b[f] * s[f];
+                double projected = 0;
+                for (int g = 0; g < p; g++) projected += inverse[f][g] * s[g];
+                leverage += s[f] * projected;
+            }
+            double residual = (y[r] - fitted) / Math.max(1e-9, 1 - leverage);
+            squares += residual * residual;
+        }
+        residualDeviation = Math.sqrt(squares / m);
+        return true;
+    }
+
+    private static double[] features(double[] weights) {
+        double[] x = new double[2 * weights.length];
+        for (int w = 0; w < weights.length; w++) {
+            x[w] = weights[w];
+            x[weights.length + w] = weights[w] * weights[w];
+        }
+        return x;
+    }
+
+    /**
+     * Inverts the square part of an augmented matrix by solving for each column of the identity, leaving it untouched.
+     */
+    private static double[][] invert(double[][] a) {
+        int p = a.length;
+        double[][] inverse = new double[p][p];
+        for (int c = 0; c < p; c++) {
+            double[][] column = new double[p][p + 1];
+            for (int r = 0; r < p; r++) {
+                System.arraycopy(a[r], 0, column[r], 0, p);
+                column[r][p] = r == c ? 1 : 0;
+            }
+            double[] solved = solve(column);
+            for (int r = 0; r < p; r++) inverse[r][c] = solved[r];
+        }
+        return inverse;
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting on an augmented matrix; the ridge term keeps it well conditioned.
+     */
+    private static double[] solve(double[][] a) {
+        int p = a.length;
+        for (int c = 0; c < p; c++) {
+            int pivot = c;
+            for (int r = c + 1; r < p; r++) if (Math.abs(a[r][c]) > Math.abs(a[pivot][c])) pivot = r;
+            double[] swap = a[c];
+            a[c] = a[pivot];
+            a[pivot] = swap;
+            for (int r = c + 1; r < p; r++) {
+                double factor = a[r][c] / a[c][c];
+                for (int k = c; k <= p; k++) a[r][k] -= factor * a[c][k];
+            }
+        }
+        double[] b = new double[p];
+        for (int r = p - 1; r >= 0; r--) {
+            double sum = a[r][p];
+            for (int k = r + 1; k < p; k++) sum -= a[r][k] * b[k];
+            b[r] = sum / a[r][r];
+        }
+        return b;
+    }
+
+    /**
+     * How well the surrogate predicted the individuals that played and what skipping the rest saved.
+     */
+    public static class Report extends GenerationStats {
+        int individuals;
+        int history;
+        boolean trusted;
+        int skipped;
+        int audited;
+        int falseSkips;
+        int gamesSaved;
+        double correlation;
+        double logError;
+        long millis;
+
+        public int getSkipped() { return skipped; }
+
+        public int getGamesSaved() { return gamesSaved; }
+
+        public int getFalseSkips() { return falseSkips; }
+
+        public double getCorrelation() { return correlation; }
+
+        @Override
+        public String toString() {
+            if (!trusted) {
+                return String.format("Surrogate: training on %d observations, all %d played, %d games in %.2fs",
+                        history, individuals, games, millis / 1000.0);
+            }
+            return String.format("Surrogate: %d of %d skipped (%d audited, %d false skips), %d games saved, %d played in %.2fs, "
+                    + "predicted/actual rank correlation %.3f, log-score RMSE %.3f, trained on %d", skipped, individuals,
+                    audited, falseSkips, gamesSaved, games, millis / 1000.0, correlation, logError, history);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package tetris;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains several recipes at once, each as an independent genetic algorithm starting from random brains, with all
+ * of their games played by one shared pool of threads. Every few generations each training's best brain is checked
+ * on a fixed set of validation seeds at the trainer's own board height. A training is stopped early when its best
+ * validation score falls below the median of the best scores the other trainings had reached after spending the same
+ * CPU time. It waits at each check until every other training has spent at least that much or has ended, so the
+ * decision does not depend on which training got there first. The result is a table of best validation score against
+ * the CPU time each recipe's training games cost.
+ * Usage: JTetrisBrainSweep [--grid key=v1,v2,...]... [--random count] [--generations n] [--rung n] [--threads n]
+ *                          [--cap pieces] [--seed n] [--out file.csv]
+ * where key is one of JTetrisBrainRecipe.KEYS; grid values are combined with each other and the trainer's defaults.
+ */
+public class JTetrisBrainSweep {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private ExecutorService pool;
+    private int generations;
+    private int rungInterval;
+    private int pieceCap;
+    private long[] validationSeeds;
+    private double validationHeight;
+    private List<Result> results = new ArrayList<>();
+
+    /**
+     * Creates a sweep
+     * @param threads, the threads in the shared pool playing every training's games
+     * @param generations, the generations each training runs unless stopped early
+     * @param rungInterval, the generations between validations and early-stopping checks
+     * @param pieceCap, the most pieces any training or validation game may place, or 0 for no cap
+     * @param validationSeeds, the seeds every training's best brain is validated on
+     * @param validationHeight, the game-over height validation games use for every recipe
+     */
+    public JTetrisBrainSweep(int threads, int generations, int rungInterval, int pieceCap, long[] validationSeeds,
+                             double validationHeight) {
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        this.generations = generations;
+        this.rungInterval = Math.max(1, rungInterval);
+        this.pieceCap = pieceCap;
+        this.validationSeeds = validationSeeds;
+        this.validationHeight = validationHeight;
+    }
+
+    /**
+     * Trains every recipe, each on its own driver thread, and waits for all of them; the pool is shut down afterwards
+     * @param recipes, the recipes to compare
+     * @param seed, the seed the trainings' own random generators are derived from
+     * @return one result per recipe, in the same order
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public List<Result> run(List<JTetrisBrainRecipe> recipes, long seed) throws InterruptedException {
+        List<Thread> drivers = new ArrayList<>();
+        synchronized (this) {
+            for (JTetrisBrainRecipe recipe : recipes) results.add(new Result(recipe));
+        }
+        for (int k = 0; k < recipes.size(); k++) {
+            Result result = results.get(k);
+            Random random = new Random(seed + k);
+            Thread driver = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    train(result, random);
+                }
+            }, "sweep-" + k);
+            drivers.add(driver);
+            driver.start();
+        }
+        for (Thread driver : drivers) driver.join();
+        pool.shutdown();
+        return results;
+    }
+
+    private void train(Result result, Random random) {
+        JTetrisBrainRecipe recipe = result.recipe;
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[recipe.getPopulationSize()];
+        for (int i = 0; i < pop.length; i++) pop[i] = new JTetrisBrainIndividual();
+        TetrisBrain brain = new TetrisBrain(pop);
+        long start = System.nanoTime();
+
+        try {
+            for (int generation = 1; generation <= generations; generation++) {
+                long[] seeds = new long[recipe.getTrials()];
+                for (int t = 0; t < seeds.length; t++) seeds[t] = random.nextLong();
+
+                List<Future<Game>> games = new ArrayList<>();
+                for (JTetrisBrainIndividual individual : pop) {
+                    for (long seed : seeds) games.add(submit(individual.getWeights(), seed, recipe.getBoardPercentage()));
+                }
+                for (int i = 0; i < pop.length; i++) {
+                    TrialStats stats = new TrialStats();
+                    for (int t = 0; t < seeds.length; t++) {
+                        Game game = games.get(i * seeds.length + t).get();
+                        stats.add(game.result);
+                        result.cpuNanos += game.cpuNanos;
+                        result.games++;
+                    }
+                    pop[i].setScore(stats.getMean());
+                    pop[i].setFitness(stats.getFitness());
+                }
+                Arrays.sort(pop, new Comparator<JTetrisBrainIndividual>() {
+                    @Override
+                    public int compare(JTetrisBrainIndividual i1, JTetrisBrainIndividual i2) {
+                        return Double.compare(i2.getScore(), i1.getScore());
+                    }
+                });
+                result.generations = generation;
+
+                if (generation % rungInterval == 0 || generation == generations) {
+                    double score = validate(pop[0].getWeights());
+                    synchronized (this) {
+                        result.curve.add(new double[]{result.cpuNanos / 1e9, score});
+                        if (result.bestWeights == null || score > result.best) {
+                            result.best = score;
+                            result.bestWeights = pop[0].getWeights().clone();
+                        }
+                        notifyAll();
+                    }
+                    if (generation < generations && waitAndJudge(result)) {
+                        result.stopped = true;
+                        break;
+                    }
+                }
+                JTetrisBrainTrainer.breed(brain, pop, random, recipe);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("a sweep game failed", e.getCause());
+        }
+        finally {
+            synchronized (this) {
+                result.ended = true;
+                notifyAll();
+            }
+        }
+        result.wallNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Plays the validation seeds with the given weights; their CPU time is not charged to the recipe
+     */
+    private double validate(double[] weights) throws InterruptedException, ExecutionException {
+        List<Future<Game>> games = new ArrayList<>();
+        for (long seed : validationSeeds) games.add(submit(weights, seed, validationHeight));
+        TrialStats stats = new TrialStats();
+        for (Future<Game> game : games) stats.add(game.get().result);
+        return stats.getMean();
+    }
+
+    /**
+     * Waits until every other training has validated after spending at least the CPU time of this training's last
+     * validation, or has ended, then judges this training against all of them at that CPU time.
+     */
+    private synchronized boolean waitAndJudge(Result result) throws InterruptedException {
+        double cpuSeconds = result.curve.get(result.curve.size() - 1)[0];
+        for (Result other : results) {
+            while (other != result && !other.ended && (other.curve.isEmpty() || other.curve.get(other.curve.size() - 1)[0] < cpuSeconds)) wait();
+        }
+        return isLosing(result, results, cpuSeconds);
+    }
+
+    /**
+     * Decides whether a training is clearly losing: its best validation score is below the median of the best scores
+     * the other trainings had validated within the same CPU time. Trainings that had not validated yet by then are
+     * left out, and the order of the trainings does not matter.
+     * @param result, the training to judge
+     * @param trainings, every training of the sweep, the judged one included or not
+     * @param cpuSeconds, the CPU time of training games to compare at
+     * @return true if at least one other training can be compared and the median of them beats this one
+     */
+    static boolean isLosing(Result result, List<Result> trainings, double cpuSeconds) {
+        List<Double> others = new ArrayList<>();
+        for (Result other : trainings) {
+            if (other == result) continue;
+            double best = Double.NEGATIVE_INFINITY;
+            for (double[] point : other.curve) if (point[0] <= cpuSeconds) best = Math.max(best, point[1]);
+            if (best > Double.NEGATIVE_INFINITY) others.add(best);
+        }
+        if (others.isEmpty()) return false;
+        others.sort(null);
+        int n = others.size();
+        double median = n % 2 == 1 ? others.get(n / 2) : (others.get(n / 2 - 1) + others.get(n / 2)) / 2;
+        return result.best < median;
+    }
+
+    private Future<Game> submit(double[] weights, long seed, double boardPercentage) {
+        return pool.submit(() -> {
+            long cpu = cpuTime();
+            HeadlessTetris game = new HeadlessTetris(weights, seed, boardPercentage);
+            game.startGame();
+            if (pieceCap > 0) game.playUntil(pieceCap);
+            else game.playToEnd();
+            return new Game(game.getResult(), cpuTime() - cpu);
+        });
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Lays the results out as a text table: the trainings that ran to the end first, then the ones stopped early,
+     * since a stopped training is cheap but was losing; within each, the most rows per CPU-second first
+     * @param results, the results of a sweep
+     * @return the table
+     */
+    public static String table(List<Result> results) {
+        List<Result> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing(Result::isStopped).thenComparing(Comparator.comparingDouble(Result::getEfficiency).reversed()));
+        StringBuilder table = new StringBuilder(String.format("%4s %10s %10s %12s %6s %8s  %s%n",
+                "rank", "best rows", "CPU s", "rows/CPU s", "gens", "stopped", "recipe"));
+        for (int k = 0; k < sorted.size(); k++) {
+            Result r = sorted.get(k);
+            table.append(String.format(Locale.ROOT, "%4d %10.1f %10.2f %12.2f %6d %8s  %s%n", k + 1, r.best,
+                    r.cpuNanos / 1e9, r.getEfficiency(), r.generations, r.stopped ? "yes" : "no", r.recipe));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Writes one line per recipe with its settings, cost and best score, and its validation curve as
+     * "CPU seconds:score" pairs
+     * @param fileName, the CSV file to write
+     * @param results, the results of a sweep
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeCsv(String fileName, List<Result> results) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write(String.join(",", JTetrisBrainRecipe.KEYS) + ",generations,stopped,games,cpu_s,wall_s,best_rows,rows_per_cpu_s,curve\n");
+            for (Result r : results) {
+                JTetrisBrainRecipe recipe = r.recipe;
+                StringBuilder curve = new StringBuilder();
+                for (double[] point : r.curve) curve.append(String.format(Locale.ROOT, "%s%.2f:%.1f", curve.length() == 0 ? "" : " ", point[0], point[1]));
+                writer.write(String.format(Locale.ROOT, "%s,%s,%s,%s,%d,%d,%s,%d,%b,%d,%.3f,%.3f,%.2f,%.3f,%s%n",
+                        recipe.getMutationRate(), recipe.getImmigrantRate(), recipe.getSurvivorRate(), recipe.getParentRate(),
+                        recipe.getTrials(), recipe.getPopulationSize(), recipe.getBoardPercentage(), r.generations, r.stopped,
+                        r.games, r.cpuNanos / 1e9, r.wallNanos / 1e9, r.best, r.getEfficiency(), curve));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        Map<String, double[]> grid = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        int random = 0, generations = 20, rung = 5, threads = Runtime.getRuntime().availableProcessors();
+        int cap = JTetrisBrainTrainer.PIECE_BUDGET;
+        long seed = 1;
+        String out = "sweep.csv";
+        for (int a = 0; a < args.length; a += 2) {
+            if (a + 1 == args.length) {
+                throw new IllegalArgumentException("option " + args[a] + " needs a value; usage: JTetrisBrainSweep "
+                        + "[--grid key=v1,v2,...]... [--random count] [--generations n] [--rung n] [--threads n] "
+                        + "[--cap pieces] [--seed n] [--out file.csv]");
+            }
+            String value = args[a + 1];
+            switch (args[a]) {
+                case "--grid":
+                    String key = value.substring(0, value.indexOf('='));
+                    JTetrisBrainRecipe.defaults().with(key, 0); // rejects unknown keys before anything runs
+                    grid.put(key, Arrays.stream(value.substring(value.indexOf('=') + 1).split(",")).mapToDouble(Double::parseDouble).toArray());
+                    if (!keys.contains(key)) keys.add(key);
+                    break;
+                case "--random": random = Integer.parseInt(value); break;
+                case "--generations": generations = Integer.parseInt(value); break;
+                case "--rung": rung = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--cap": cap = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--out": out = value; break;
+                default: throw new IllegalArgumentException("unknown option " + args[a]);
+            }
+        }
+
+        List<JTetrisBrainRecipe> recipes = new ArrayList<>();
+        recipes.add(JTetrisBrainRecipe.defaults());
+        for (String key : keys) {
+            List<JTetrisBrainRecipe> combined = new ArrayList<>();
+            for (JTetrisBrainRecipe recipe : recipes) for (double v : grid.get(key)) combined.add(recipe.with(key, v));
+            recipes = combined;
+        }
+        if (keys.isEmpty() && random > 0) recipes.clear();
+        Random r = new Random(seed);
+        for (int k = 0; k < random; k++) recipes.add(JTetrisBrainRecipe.random(r));
+
+        long[] validationSeeds = new long[5];
+        for (int k = 0; k < validationSeeds.length; k++) validationSeeds[k] = -1 - k;
+        System.out.println("Sweeping " + recipes.size() + " recipes for " + generations + " generations on " + threads + " threads");
+        JTetrisBrainSweep sweep = new JTetrisBrainSweep(threads, generations, rung, cap, validationSeeds, JTetrisBrainTrainer.BOARD_PERCENTAGE);
+        List<Result> results = sweep.run(recipes, seed);
+        System.out.print(table(results));
+        writeCsv(out, results);
+        System.out.println("Wrote " + out);
+    }
+
+    /**
+     * A game played in the pool and the CPU time it took.
+     */
+    private static class Game {
+        GameResult result;
+        long cpuNanos;
+
+        Game(GameResult result, long cpuNanos) {
+            this.result = result;
+            this.cpuNanos = cpuNanos;
+        }
+    }
+
+    /**
+     * How one recipe's training went.
+     */
+    public static class Result {
+        JTetrisBrainRecipe recipe;
+        int generations;
+        int games;
+        boolean stopped;
+        long cpuNanos;
+        long wallNanos;
+        boolean ended;
+        double best;
+        double[] bestWeights;
+        List<double[]> curve = new ArrayList<>();
+
+        Result(JTetrisBrainRecipe recipe) {
+            this.recipe = recipe;
+        }
+
+        /**
+         * Fetches the best validation score per CPU-second of training games
+         * @return the rows per CPU-second
+         */
+        public double getEfficiency() {
+            return cpuNanos == 0 ? 0 : best / (cpuNanos / 1e9);
+        }
+
+        public JTetrisBrainRecipe getRecipe() { return recipe; }
+
+        public double getBest() { return best; }
+
+        public boolean isStopped() { return stopped; }
+
+        public int getGenerations() { return generations; }
+
+        public long getCpuNanos() { return cpuNanos; }
+
+        public double[] getBestWeights() { return bestWeights; }
+    }
+}
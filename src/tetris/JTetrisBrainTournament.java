@@ -0,0 +1,325 @@
+package tetris;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays saved weight files against each other on thousands of seeded games, with both uniformly random pieces and
+ * the 7-bag generator, on every core. Every contestant plays the same seeds. Each game is written to a CSV file as it
+ * finishes and only added to fixed-size histograms, so memory stays the same however many or however long the games
+ * are; at the end the mean and percentiles of rows cleared and of pieces placed before topping out are written
+ * as a summary CSV and table. A game stopped by the piece cap is censored, as in JTetrisBrainCensoredTrials: it is
+ * counted separately and left out of the pieces before topping out, since it never topped out, while its rows
+ * only count up to the cap.
+ * Usage: JTetrisBrainTournament [--games n] [--threads n] [--cap pieces] [--height h] [--seed n] [--top n]
+ *                               [--out summary.csv] [--games-out games.csv] [weight files...]
+ */
+public class JTetrisBrainTournament {
+    public static final String[] GENERATORS = {"uniform", "7-bag"};
+    private static final double[] PERCENTILES = {1, 10, 25, 50, 75, 90, 99};
+
+    private List<String> names = new ArrayList<>();
+    private List<double[]> contestants = new ArrayList<>();
+    private int games;
+    private int pieceCap;
+    private double boardPercentage;
+    private long seed;
+    private Standing[][] standings;
+    private AtomicLong next = new AtomicLong();
+    private AtomicLong finished = new AtomicLong();
+    private AtomicLong piecesPlayed = new AtomicLong();
+    private BufferedWriter gameLog;
+
+    /**
+     * Creates a tournament without contestants
+     * @param games, the games each contestant plays with each generator
+     * @param pieceCap, the most pieces a game may place, or 0 to play every game until it tops out
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @param seed, the seed the games' seeds are drawn from
+     */
+    public JTetrisBrainTournament(int games, int pieceCap, double boardPercentage, long seed) {
+        this.games = games;
+        this.pieceCap = pieceCap;
+        this.boardPercentage = boardPercentage;
+        this.seed = seed;
+    }
+
+    /**
+     * Adds a contestant
+     * @param name, the name it is reported under
+     * @param weights, its weights
+     */
+    public void add(String name, double[] weights) {
+        names.add(name);
+        contestants.add(weights.clone());
+    }
+
+    /**
+     * Plays every game on a number of threads, each taking the next game as soon as it is done with one
+     * @param threads, the threads to play on
+     * @param gameLog, where to write one CSV line per game as it finishes, or null for nowhere
+     * @return the standings, by contestant and then generator
+     * @throws InterruptedException if interrupted while waiting for the threads
+     * @throws IOException if the game log cannot be written
+     */
+    public Standing[][] run(int threads, BufferedWriter gameLog) throws InterruptedException, IOException {
+        this.gameLog = gameLog;
+        next.set(0);
+        finished.set(0);
+        piecesPlayed.set(0);
+        standings = new Standing[contestants.size()][GENERATORS.length];
+        for (int c = 0; c < standings.length; c++) {
+            for (int g = 0; g < GENERATORS.length; g++) standings[c][g] = new Standing(names.get(c), GENERATORS[g]);
+        }
+        if (gameLog != null) gameLog.write("contestant,generator,game,seed,rows,pieces,capped,millis\n");
+
+        long total = (long)games * GENERATORS.length * contestants.size();
+        long start = System.currentTimeMillis();
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < Math.max(1, threads); t++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long task = next.getAndIncrement(); task < total; task = next.getAndIncrement()) play(task);
+                }
+            }, "tournament-" + t);
+            worker.setUncaughtExceptionHandler((thread, e) -> {
+                synchronized (failures) { failures.add(e); }
+                next.set(total);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        // Reports progress while the games are played
+        long lastReport = start;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(1000);
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= 10000) {
+                    lastReport = now;
+                    System.err.printf("%d/%d games, %.0f pieces/s%n", finished.get(), total,
+                            piecesPlayed.get() * 1000.0 / (now - start));
+                }
+            }
+        }
+        if (gameLog != null) gameLog.flush();
+        if (!failures.isEmpty()) {
+            Throwable e = failures.get(0);
+            if (e instanceof UncheckedIOException) throw ((UncheckedIOException)e).getCause();
+            throw new IllegalStateException("a tournament game failed", e);
+        }
+        return standings;
+    }
+
+    /**
+     * Plays one game. Tasks run game by game, so every contestant and generator is part way through at any time.
+     */
+    private void play(long task) {
+        int perGame = GENERATORS.length * contestants.size();
+        int game = (int)(task / perGame);
+        int g = (int)(task % perGame / contestants.size());
+        int c = (int)(task % contestants.size());
+        long gameSeed = seedOf(game);
+
+        long start = System.nanoTime();
+        HeadlessTetris tetris = g == 0 ? new HeadlessTetris(contestants.get(c), gameSeed, boardPercentage)
+                : new BagTetris(contestants.get(c), gameSeed, boardPercentage);
+        tetris.startGame();
+        if (pieceCap > 0) tetris.playUntil(pieceCap);
+        else tetris.playToEnd();
+        long millis = (System.nanoTime() - start) / 1000000;
+        int rows = tetris.getRowsCleared(), pieces = tetris.getPiecesPlaced();
+        boolean capped = tetris.isGameOn();
+
+        Standing standing = standings[c][g];
+        standing.rows.record(rows);
+        if (capped) standing.capped.incrementAndGet();
+        else standing.pieces.record(pieces);
+        piecesPlayed.addAndGet(pieces);
+        finished.incrementAndGet();
+
+        if (gameLog == null) return;
+        try {
+            synchronized (gameLog) {
+                gameLog.write(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%b,%d%n", csv(names.get(c)), GENERATORS[g], game,
+                        gameSeed, rows, pieces, capped, millis));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The seed of the k-th game, the same for every contestant and generator
+     */
+    private long seedOf(int game) {
+        return new Random(seed * 1000003 + game).nextLong();
+    }
+
+    /**
+     * Writes the standings as CSV, one line per contestant and generator
+     * @param fileName, the file to write
+     * @param standings, the standings from run()
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeSummary(String fileName, Standing[][] standings) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            StringBuilder header = new StringBuilder("contestant,generator,games,capped,mean_rows");
+            for (double p : PERCENTILES) header.append(",p").append((int)p).append("_rows");
+            header.append(",topouts,mean_topout_pieces");
+            for (double p : PERCENTILES) header.append(",p").append((int)p).append("_topout_pieces");
+            writer.write(header + "\n");
+
+            for (Standing[] contestant : standings) {
+                for (Standing s : contestant) {
+                    StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%s,%s,%d,%d,%.2f", csv(s.name), s.generator,
+                            s.rows.getCount(), s.capped.get(), s.rows.getMean()));
+                    for (double p : PERCENTILES) line.append(String.format(Locale.ROOT, ",%.0f", s.rows.getPercentile(p)));
+                    // Pieces before topping out are left empty when every game was capped
+                    boolean toppedOut = s.pieces.getCount() > 0;
+                    line.append(String.format(Locale.ROOT, ",%d,%s", s.pieces.getCount(), toppedOut ? String.format(Locale.ROOT, "%.2f", s.pieces.getMean()) : ""));
+                    for (double p : PERCENTILES) line.append(toppedOut ? String.format(Locale.ROOT, ",%.0f", s.pieces.getPercentile(p)) : ",");
+                    writer.write(line + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Lays the standings out as a text table, best mean rows first within each generator; the median topout is over
+     * the games that topped out, and "-" when every game was capped
+     * @param standings, the standings from run()
+     * @return the table
+     */
+    public static String table(Standing[][] standings) {
+        StringBuilder table = new StringBuilder(String.format("%-8s %7s %10s %8s %8s %8s %12s %8s  %s%n",
+                "pieces", "games", "mean rows", "p10", "median", "p90", "median topout", "capped", "contestant"));
+        for (int g = 0; g < GENERATORS.length; g++) {
+            List<Standing> column = new ArrayList<>();
+            for (Standing[] contestant : standings) column.add(contestant[g]);
+            column.sort((a, b) -> Double.compare(b.rows.getMean(), a.rows.getMean()));
+            for (Standing s : column) {
+                String topout = s.pieces.getCount() == 0 ? "-" : String.format(Locale.ROOT, "%.0f", s.pieces.getPercentile(50));
+                table.append(String.format(Locale.ROOT, "%-8s %7d %10.1f %8.0f %8.0f %8.0f %12s %8d  %s%n", s.generator,
+                        s.rows.getCount(), s.rows.getMean(), s.rows.getPercentile(10), s.rows.getPercentile(50),
+                        s.rows.getPercentile(90), topout, s.capped.get(), s.name));
+            }
+        }
+        return table.toString();
+    }
+
+    private static String csv(String field) {
+        return field.contains(",") || field.contains("\"") ? "\"" + field.replace("\"", "\"\"") + "\"" : field;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = 1000, threads = Runtime.getRuntime().availableProcessors(), cap = 0, top = 1;
+        double height = JTetrisBrainTrainer.BOARD_PERCENTAGE;
+        long seed = 1;
+        String out = "tournament.csv", gamesOut = "tournament-games.csv";
+        List<String> files = new ArrayList<>();
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--games": games = Integer.parseInt(args[++a]); break;
+                case "--threads": threads = Integer.parseInt(args[++a]); break;
+                case "--cap": cap = Integer.parseInt(args[++a]); break;
+                case "--height": height = Double.parseDouble(args[++a]); break;
+                case "--seed": seed = Long.parseLong(args[++a]); break;
+                case "--top": top = Integer.parseInt(args[++a]); break;
+                case "--out": out = args[++a]; break;
+                case "--games-out": gamesOut = args[++a]; break;
+                default: files.add(args[a]);
+            }
+        }
+
+        JTetrisBrainTournament tournament = new JTetrisBrainTournament(games, cap, height, seed);
+        tournament.add("TetrisBrain()", new TetrisBrain().getPopulation()[0].getWeights());
+        for (String file : files) {
+            List<double[]> weights = JTetrisBrainHallOfFame.readWeights(file, top);
+            for (int k = 0; k < weights.size(); k++) tournament.add(file + "#" + (k + 1), weights.get(k));
+        }
+
+        System.out.println("Tournament: " + tournament.contestants.size() + " contestants, " + games + " games each with "
+                + String.join(" and ", GENERATORS) + " pieces on " + threads + " threads");
+        long start = System.currentTimeMillis();
+        Standing[][] standings;
+        try (BufferedWriter gameLog = new BufferedWriter(new FileWriter(gamesOut))) {
+            standings = tournament.run(threads, gameLog);
+        }
+        writeSummary(out, standings);
+        System.out.print(table(standings));
+        System.out.printf("%d pieces in %.1fs; wrote %s and %s%n", tournament.piecesPlayed.get(),
+                (System.currentTimeMillis() - start) / 1000.0, out, gamesOut);
+    }
+
+    /**
+     * A game whose pieces come from the 7-bag generator: every run of seven pieces is a shuffle of all seven types.
+     */
+    public static class BagTetris extends HeadlessTetris {
+        private int[] bag = new int[PIECES.length];
+        private int dealt = PIECES.length;
+
+        public BagTetris(double[] weights, long seed, double boardPercentage) {
+            super(weights, seed, boardPercentage);
+        }
+
+        @Override
+        public void startGame() {
+            dealt = PIECES.length;
+            super.startGame();
+        }
+
+        @Override
+        protected Piece pickNextPiece() {
+            if (dealt == bag.length) {
+                for (int i = 0; i < bag.length; i++) bag[i] = i;
+                for (int i = bag.length - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int swap = bag[i];
+                    bag[i] = bag[j];
+                    bag[j] = swap;
+                }
+                dealt = 0;
+            }
+            return PIECES[bag[dealt++]];
+        }
+    }
+
+    /**
+     * One contestant's games with one generator: rows cleared in every game, pieces placed in the games that topped
+     * out, and how many games were capped instead.
+     */
+    public static class Standing {
+        private String name;
+        private String generator;
+        private LogHistogram rows = new LogHistogram();
+        private LogHistogram pieces = new LogHistogram();
+        private AtomicLong capped = new AtomicLong();
+
+        Standing(String name, String generator) {
+            this.name = name;
+            this.generator = generator;
+        }
+
+        public String getName() { return name; }
+
+        public String getGenerator() { return generator; }
+
+        public LogHistogram getRows() { return rows; }
+
+        public LogHistogram getPieces() { return pieces; }
+
+        public long getCapped() { return capped.get(); }
+    }
+}
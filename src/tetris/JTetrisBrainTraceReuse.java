@@ -0,0 +1,195 @@
+package tetris;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates a population while recording every game's decisions, keyed by seed, so later games on the same seed
+ * can reuse them. A child that differs from a parent in a weight or two usually makes the same placements for
+ * hundreds of pieces; its game follows the trace with the nearest weights and only searches placements where the
+ * child is no longer certain to agree, and plays on its own from the first placement that actually differs.
+ * The results are exactly those of playing every game in full.
+ */
+public class JTetrisBrainTraceReuse implements JTetrisBrainEvaluator {
+    private double boardPercentage;
+    private long decisionBudget;
+    private GameRecorder recorder;
+    private Map<Long, List<DecisionTrace>> bySeed = new HashMap<>();
+    private Deque<DecisionTrace> oldestFirst = new ArrayDeque<>();
+    private long storedDecisions;
+
+    /**
+     * Creates an evaluator with no traces
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @param decisionBudget, the most decisions kept over all traces (about 8 bytes each); the oldest traces go first
+     */
+    public JTetrisBrainTraceReuse(double boardPercentage, long decisionBudget) {
+        this.boardPercentage = boardPercentage;
+        this.decisionBudget = decisionBudget;
+    }
+
+    /**
+     * Reports every game that is played
+     * @param recorder, the recorder to notify, or null for none
+     */
+    @Override
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Plays every individual's games, reusing stored decisions where possible, and sets its score to its mean rows
+     * cleared and its fitness to its mean final-board fitness. Every game played is stored for the games after it.
+     * @param pop, the population to evaluate
+     * @param seeds, the seeds every individual plays
+     * @param finished, games already finished (e.g. restored from a checkpoint) by individual and trial, or null
+     * @return how many decisions were reused instead of searched
+     */
+    @Override
+    public Report evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished) {
+        Report report = new Report();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < pop.length; i++) {
+            TrialStats stats = new TrialStats();
+            for (int t = 0; t < seeds.length; t++) {
+                GameResult result = finished != null && t < finished[i].length ? finished[i][t] : null;
+                if (result == null) {
+                    result = play(pop[i].getWeights(), seeds[t], report);
+                    if (recorder != null) recorder.gameFinished(i, t, result);
+                }
+                else report.recordCached(result);
+                stats.add(result);
+            }
+            pop[i].setScore(stats.getMean());
+            pop[i].setFitness(stats.getFitness());
+        }
+        report.millis = System.currentTimeMillis() - start;
+        report.traces = oldestFirst.size();
+        report.storedDecisions = storedDecisions;
+        return report;
+    }
+
+    private GameResult play(double[] weights, long seed, Report report) {
+        DecisionTrace nearest = nearest(weights, seed);
+        DecisionTrace trace = new DecisionTrace(weights, seed);
+        HeadlessTetris game = new HeadlessTetris(weights, seed, boardPercentage);
+        game.getBrain().setTraces(trace, nearest);
+        game.startGame();
+        GameResult result = game.playToEnd();
+
+        int reused = game.getBrain().getReusedDecisions();
+        report.record(result);
+        report.decisions += trace.size();
+        report.reused += reused;
+        if (nearest != null && reused < trace.size()) report.searched++;
+        store(trace);
+        return result;
+    }
+
+    private DecisionTrace nearest(double[] weights, long seed) {
+        DecisionTrace nearest = null;
+        double best = Double.POSITIVE_INFINITY;
+        for (DecisionTrace trace : bySeed.getOrDefault(seed, List.of())) {
+            double distance = trace.distanceTo(weights);
+            if (distance < best) {
+                best = distance;
+                nearest = trace;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Keeps a trace, replacing any trace of the same weights on the same seed, and drops the oldest traces while
+     * over the budget.
+     */
+    private void store(DecisionTrace trace) {
+        List<DecisionTrace> traces = bySeed.computeIfAbsent(trace.getSeed(), k -> new ArrayList<>());
+        for (Iterator<DecisionTrace> it = traces.iterator(); it.hasNext(); ) {
+            DecisionTrace old = it.next();
+            if (old.distanceTo(trace.getWeights()) == 0) {
+                it.remove();
+                oldestFirst.remove(old);
+                storedDecisions -= old.size();
+            }
+        }
+        traces.add(trace);
+        oldestFirst.addLast(trace);
+        storedDecisions += trace.size();
+
+        while (storedDecisions > decisionBudget && oldestFirst.size() > 1) {
+            DecisionTrace old = oldestFirst.removeFirst();
+            List<DecisionTrace> same = bySeed.get(old.getSeed());
+            same.remove(old);
+            if (same.isEmpty()) bySeed.remove(old.getSeed());
+            storedDecisions -= old.size();
+        }
+    }
+
+    /**
+     * Drops every trace of a seed that is no longer played, since no later game can follow it
+     * @param seeds, the seeds games will be played on from now on
+     */
+    public void retainSeeds(long[] seeds) {
+        Set<Long> kept = new HashSet<>();
+        for (long seed : seeds) kept.add(seed);
+        bySeed.keySet().retainAll(kept);
+        for (Iterator<DecisionTrace> it = oldestFirst.iterator(); it.hasNext(); ) {
+            DecisionTrace trace = it.next();
+            if (!kept.contains(trace.getSeed())) {
+                it.remove();
+                storedDecisions -= trace.size();
+            }
+        }
+    }
+
+    /**
+     * Fetches how many traces are kept
+     * @return the number of traces
+     */
+    public int getTraceCount() { return oldestFirst.size(); }
+
+    /**
+     * Fetches how many seeds have traces kept
+     * @return the number of seeds
+     */
+    public int getSeedCount() { return bySeed.size(); }
+
+    /**
+     * How much of the generation's placement search was skipped.
+     */
+    public static class Report extends GenerationStats {
+        long decisions;
+        long reused;
+        int searched;
+        int traces;
+        long storedDecisions;
+        long millis;
+
+        /**
+         * Fetches the share of placements taken from a stored trace instead of searched
+         * @return the reused fraction between 0 and 1
+         */
+        public double getReusedFraction() {
+            return decisions == 0 ? 0 : (double)reused / decisions;
+        }
+
+        public long getDecisions() { return decisions; }
+
+        public long getReused() { return reused; }
+
+        @Override
+        public String toString() {
+            return String.format("Trace reuse: %d games, %d of %d placements reused (%.1f%%), %d games searched some placements, "
+                    + "%.2fs, %d traces holding %d decisions", games, reused, decisions, 100 * getReusedFraction(), searched,
+                    millis / 1000.0, traces, storedDecisions);
+        }
+    }
+}
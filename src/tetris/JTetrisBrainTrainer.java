@@ -6,6 +6,10 @@ import java.awt.Point;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Trains the brain with random weights
@@ -24,7 +28,113 @@ public class JTetrisBrainTrainer extends JTetris {
     public static double BOARD_PERCENTAGE = .75;
     public static boolean usingGUI = false;
 
+    // The optimizer every generation is asked of, played by the evaluator of the mode in use, and told back to: the
+    // genetic algorithm of breed(), CMA-ES or the cross-entropy method, each with INITIAL_POPULATION_SIZE brains a
+    // generation. The distributions start at the population's best brain; a checkpoint keeps brains but not the
+    // distribution, so a resumed run restarts it around the restored generation. Islands and steady state always breed
+    public static Optimizer.Kind OPTIMIZER = Optimizer.Kind.GA;
+    public static final double CMA_ES_SIGMA = 0.5;
+    public static final double CROSS_ENTROPY_ELITE_RATE = 0.1;
+    public static final double CROSS_ENTROPY_VARIANCE = 1;
+    public static final double CROSS_ENTROPY_NOISE = 1;
+    public static final double CROSS_ENTROPY_NOISE_DECAY = 0.1;
+
+    // Racing plays the whole population on shared seeds and stops games once their selection is decided
+    public static boolean RACING = false;
+    public static boolean RACING_AUDIT = false;
+    public static final int RACING_CHECKPOINT = 100;
+
+    // Adaptive trials keep giving an individual games only while its score could still land on either side of a cutoff
+    public static boolean ADAPTIVE_TRIALS = false;
+    public static int GAME_BUDGET = 3 * INITIAL_POPULATION_SIZE;
+    public static final int MIN_TRIALS = 2;
+    public static final int MAX_TRIALS = 10;
+    public static final double CONFIDENCE_Z = 2.5;
+
+    // The fitness cache reuses games of weight vectors that already played a seed; for it, and trace reuse, to pay off the
+    // seeded modes keep the same seeds for SEED_REFRESH_GENERATIONS generations while either is on, instead of drawing new
+    // ones every generation
+    public static boolean USE_FITNESS_CACHE = false;
+    public static final int CACHE_CAPACITY = 20000;
+    public static final int SEED_REFRESH_GENERATIONS = 10;
+
+    // Multi-fidelity screens everybody on cheap games (a lower game-over height and a piece cap) and only plays
+    // full games for the best PROMOTE_RATE of them, or anybody screening at least PROMOTE_ROWS rows
+    public static boolean MULTI_FIDELITY = false;
+    public static boolean MULTI_FIDELITY_AUDIT = false;
+    // On noHoldv2.txt (JTetrisBrainMultiFidelity's main, 2 trials) a lower height barely predicted full games, 0.13 
+    // rank correlation at .4, while the first 2000 pieces at full height reached 0.62 for 28% of the full games' pieces
+    public static double SCREEN_BOARD_PERCENTAGE = BOARD_PERCENTAGE;
+    public static int SCREEN_PIECE_CAP = 2000;
+    public static double PROMOTE_RATE = 0.4;
+    public static double PROMOTE_ROWS = 0;
+
+    // A surrogate model of score from weights, trained on every individual played so far, skips individuals predicted
+    // to fall more than SURROGATE_Z standard errors below the best PARENT_RATE; SURROGATE_AUDIT_RATE of them play anyway
+    public static boolean SURROGATE = false;
+    public static final int SURROGATE_HISTORY = 2000;
+    public static final int SURROGATE_MIN_HISTORY = 50;
+    public static double SURROGATE_Z = 2;
+    public static double SURROGATE_AUDIT_RATE = 0.1;
+
+    // Trace reuse records every game's placements by seed; a later game on the same seed replays the placements of the
+    // nearest recorded weights while it is certain to agree with them and only searches from where it might not.
+    // At most TRACE_BUDGET placements (about 8 bytes each) are kept
+    public static boolean TRACE_REUSE = false;
+    public static final long TRACE_BUDGET = 20000000;
+
+    // A piece budget stops any game after PIECE_BUDGET pieces; such games are censored and individuals are ranked by
+    // the rows they are expected to clear given how often they actually topped out
+    public static boolean CENSORED_TRIALS = false;
+    public static int PIECE_BUDGET = 20000;
+
+    // The scheduler plays games on EVALUATION_THREADS threads, longest predicted first, in CHUNK_PIECES chunks that idle
+    // threads can steal
+    public static boolean SCHEDULED_EVALUATION = false;
+    public static int EVALUATION_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int CHUNK_PIECES = 500;
+
+    // Distributed evaluation sends every game to worker JVMs (LOCAL_WORKERS are started on this machine, others may
+    // connect with JTetrisBrainWorker); a game a worker has not reported on within LEASE_MILLIS goes to another worker
+    public static boolean DISTRIBUTED = false;
+    public static String COORDINATOR_HOST = "localhost";
+    public static final int COORDINATOR_PORT = 7345;
+    public static int LOCAL_WORKERS = Runtime.getRuntime().availableProcessors();
+    public static final long LEASE_MILLIS = 60000;
+    // Class-data-sharing archive for worker JVMs and the jar it was dumped from, both made by scripts/worker-cds.sh;
+    // the archive only matches that classpath, so it is used only when the trainer itself runs from WORKER_JAR
+    public static String WORKER_ARCHIVE = "out/worker.jsa";
+    public static String WORKER_JAR = "out/tetris.jar";
+
+    // Every generation and every finished game is appended to a binary checkpoint, and training resumes from it
+    // instead of from POPULATION_FILENAME whenever the checkpoint file has a generation of the same size
+    public static boolean CHECKPOINTING = false;
+    public static final String CHECKPOINT_FILENAME = "noHoldv2.ckpt";
+
+    // The island model splits the population across threads that evolve on their own and swap their best brains
+    // every MIGRATION_INTERVAL generations; it writes merged snapshots to the population file instead of checkpointing
+    public static boolean ISLAND_MODE = false;
+    // Islands are sized so each keeps at least one survivor under SURVIVOR_RATE, however many cores there are
+    public static final int MIN_ISLAND_SIZE = (int)Math.ceil(1 / SURVIVOR_RATE);
+    public static int ISLAND_COUNT = JTetrisBrainIslands.islandCount(INITIAL_POPULATION_SIZE, MIN_ISLAND_SIZE);
+    public static final int MIGRATION_INTERVAL = 5;
+    public static final int MIGRANTS = 2;
+    public static final JTetrisBrainIslands.Topology TOPOLOGY = JTetrisBrainIslands.Topology.RING;
+    public static final long SNAPSHOT_MILLIS = 60000;
+
+    // Steady state drops generations: every free worker breeds a child by tournament selection and it replaces the
+    // worst member if it beats it, so no worker waits for the longest game of a generation
+    public static boolean STEADY_STATE = false;
+    public static int STEADY_STATE_WORKERS = Runtime.getRuntime().availableProcessors();
+    public static final int TOURNAMENT_SIZE = 3;
+
+    // With -Dtetris.metrics=true, a snapshot of the Metrics registry is appended to this file as a JSON line per interval
+    public static final String METRICS_FILENAME = "metrics.jsonl";
+    public static final long METRICS_INTERVAL_MILLIS = 10000;
+
     private boolean brainEnabled = true;
+    // The flight recorder event of the game being played, committed when it is over
+    private TetrisEvents.Game gameEvent;
 
     /**
      * Creates a new JTetris game and a brain that reads from a given text file.
@@ -47,8 +157,9 @@ public class JTetrisBrainTrainer extends JTetris {
         }
 
         Board.Result result = null;
+        Piece piece = board.getCurrentPiece();
 
-        if (brainEnabled && board.getCurrentPiece() != null) {
+        if (brainEnabled && piece != null) {
             result = board.move(verb);
         }
 
@@ -63,6 +174,7 @@ public class JTetrisBrainTrainer extends JTetris {
           case OUT_BOUNDS:
             break;
           case PLACE:
+            TetrisEvents.placed((TetrisBoard)board, piece);
             if (board.getMaxHeight() > HEIGHT*BOARD_PERCENTAGE) {
                 stopGame();
                 break;
@@ -94,6 +206,9 @@ public class JTetrisBrainTrainer extends JTetris {
             count = 0;
             gameOn = true;
             random = new Random();
+            if(Metrics.ENABLED) Metrics.GAMES.increment();
+            gameEvent = new TetrisEvents.Game();
+            gameEvent.begin();
             addNewPiece();
         }
     }
@@ -105,6 +220,7 @@ public class JTetrisBrainTrainer extends JTetris {
     @Override
     public void addNewPiece() {
         count++;
+        if(Metrics.ENABLED) Metrics.PIECES.increment();
         Piece nextPiece = pickNextPiece();
         try {
             board.nextPiece(nextPiece, new Point(board.getWidth() / 2 - nextPiece.getWidth() / 2, HEIGHT));
@@ -124,6 +240,13 @@ public class JTetrisBrainTrainer extends JTetris {
     public void stopGame() {
         if(usingGUI) super.stopGame();
         else gameOn = false;
+
+        if(gameEvent != null && gameEvent.shouldCommit()){
+            gameEvent.piecesPlaced = ((TetrisBoard)board).getScore();
+            gameEvent.rowsCleared = ((TetrisBoard)board).getTotalRowsCleared();
+            gameEvent.commit();
+        }
+        gameEvent = null;
     }
 
     public static void main(String[] args) {
@@ -142,100 +265,491 @@ public class JTetrisBrainTrainer extends JTetris {
         System.out.println("Parent Rate: " + PARENT_RATE);
         System.out.println("Board Height: " + HEIGHT * BOARD_PERCENTAGE);
         System.out.println("File: " + POPULATION_FILENAME);
+        System.out.println("Optimizer: " + (STEADY_STATE || ISLAND_MODE ? Optimizer.Kind.GA : OPTIMIZER));
+        System.out.println("Racing: " + RACING + (RACING_AUDIT ? " (audited)" : ""));
+        System.out.println("Adaptive Trials: " + ADAPTIVE_TRIALS + (ADAPTIVE_TRIALS ? " (budget " + GAME_BUDGET + " games)" : ""));
+        System.out.println("Fitness Cache: " + USE_FITNESS_CACHE);
+        System.out.println("Scheduled Evaluation: " + (SCHEDULED_EVALUATION ? EVALUATION_THREADS + " threads, chunks of " + CHUNK_PIECES : "off"));
+        System.out.println("Distributed: " + (DISTRIBUTED ? COORDINATOR_HOST + ":" + COORDINATOR_PORT + ", " + LOCAL_WORKERS 
+            + " local workers" : "off"));
+        System.out.println("Piece Budget: " + (CENSORED_TRIALS ? PIECE_BUDGET : "off"));
+        System.out.println("Multi-fidelity: " + (MULTI_FIDELITY ? "screen at " + SCREEN_BOARD_PERCENTAGE + " height, " + SCREEN_PIECE_CAP 
+            + " pieces, promote " + PROMOTE_RATE + (MULTI_FIDELITY_AUDIT ? " (audited)" : "") : "off"));
+        System.out.println("Surrogate: " + (SURROGATE ? "skip below " + SURROGATE_Z + " standard errors, audit " 
+            + SURROGATE_AUDIT_RATE : "off"));
+        System.out.println("Trace Reuse: " + (TRACE_REUSE ? TRACE_BUDGET + " placements" : "off"));
+        System.out.println("Checkpoint: " + (CHECKPOINTING && !ISLAND_MODE && !STEADY_STATE ? CHECKPOINT_FILENAME : "off"));
+        System.out.println("Islands: " + (ISLAND_MODE ? ISLAND_COUNT + " " + TOPOLOGY + ", " + MIGRANTS + " migrants every " 
+            + MIGRATION_INTERVAL + " generations" : "off"));
 
-        // Loops through every generation 
-        while (generation < MAX_GENERATIONS) {
-            double averageScore = 0;
-            int maxRowsCleared = 0, maxPiecesPlaced = 0;
-            int minRowsCleared = Integer.MAX_VALUE, minPiecesPlaced = Integer.MAX_VALUE;
+        System.out.println("Steady State: " + (STEADY_STATE ? STEADY_STATE_WORKERS + " workers, tournaments of " + TOURNAMENT_SIZE : "off"));
+        System.out.println("Feature Profiler: " + (FeatureProfiler.ENABLED ? "on" : "off"));
+        System.out.println("Metrics: " + (Metrics.ENABLED ? METRICS_FILENAME + " every " + METRICS_INTERVAL_MILLIS/1000 + "s" : "off"));
+        if(Metrics.ENABLED) new Metrics.Exporter(METRICS_FILENAME, METRICS_INTERVAL_MILLIS).start();
 
-            // Loops through every individual in the population
-            for (int i = 0; i < INITIAL_POPULATION_SIZE; i++) {
-                double totalScore = 0.0, totalFitness = 0.0;
-                if(i%(INITIAL_POPULATION_SIZE/4) == 0)System.out.println("Gen " + generation + " person " + i);
+        if(STEADY_STATE){
+            JTetrisBrainSteadyState steadyState = new JTetrisBrainSteadyState(pop, STEADY_STATE_WORKERS, TOURNAMENT_SIZE, 
+                TRIALS, BOARD_PERCENTAGE);
+            try{
+                System.out.println(steadyState.run((long)MAX_GENERATIONS * pop.length, POPULATION_FILENAME, SNAPSHOT_MILLIS));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        if(ISLAND_MODE){
+            JTetrisBrainIslands islands = new JTetrisBrainIslands(pop, ISLAND_COUNT, MIGRATION_INTERVAL, MIGRANTS, TOPOLOGY, 
+                TRIALS, BOARD_PERCENTAGE);
+            try{
+                System.out.println(islands.run(Long.MAX_VALUE, MAX_GENERATIONS, POPULATION_FILENAME, SNAPSHOT_MILLIS));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
 
-                // Each individual brain gets to play TRIALS number of times to ensure the scores are not flukes/reduce randomness
-                for(int j = 0; j < TRIALS; j++){
-                    game.brain.setCurrentIndividual(i);
-                    game.startGame();
-                    
-                    // Executes the moves
-                    while (game.gameOn) {
-                        game.tick(game.brain.nextMove(game.board));
-                    }
-    
-                    // Calculates the brain's final fitness and score
-                    Board finalBoard = game.board; 
-                    double fitness = game.brain.calcFitness(finalBoard);
-                    totalFitness += fitness;
-                    totalScore += game.brain.calcScore((TetrisBoard)finalBoard);
-
-                    maxRowsCleared = Math.max(maxRowsCleared, ((TetrisBoard)finalBoard).getTotalRowsCleared());
-                    maxPiecesPlaced = Math.max(maxPiecesPlaced, ((TetrisBoard)finalBoard).getScore());
-    
-                    minRowsCleared = Math.min(minRowsCleared, ((TetrisBoard)finalBoard).getTotalRowsCleared());
-                    minPiecesPlaced = Math.min(minPiecesPlaced, ((TetrisBoard)finalBoard).getScore());
-                }
-
-                // Tracks average statistics across the population
-                pop[i].setFitness(totalFitness/TRIALS);
-                pop[i].setScore(totalScore/TRIALS);
-                averageScore += (totalScore/TRIALS);
-            }
-
-            // Prints a summary of how the generation performed as a whole, useful for seeing if the brain is improving
-            System.out.println("Generation " + generation);
-            System.out.println("Max/Min Rows Cleared: " + maxRowsCleared + "/" + minRowsCleared);
-            System.out.println("Max/Min Pieces Placed: " + maxPiecesPlaced + "/" + minPiecesPlaced);
-            System.out.println("Average Goodness Score: " + averageScore/INITIAL_POPULATION_SIZE);
-            System.out.println("--------------------------------------");
-
-            // Sorts the brains by best to worst scores
-            Arrays.sort(pop, new Comparator<JTetrisBrainIndividual>() {
-                @Override
-                public int compare(JTetrisBrainIndividual i1, JTetrisBrainIndividual i2) {
-                    return Double.compare(i2.getScore(), i1.getScore());
-                }
-            });
-
-            // Records every brain's weight values and score
-            try(BufferedWriter writer = new BufferedWriter(new FileWriter(POPULATION_FILENAME))){
-                writer.write(("Generation " + generation) + "\n");
-                for (JTetrisBrainIndividual i : pop) {
-                    double[] weights = i.getWeights();
-                    for(double w : weights) writer.write(w + " ");
-                    writer.write("| " + i.getScore() + "\n");
-                }
+        Random seedGenerator = new Random();
+        long[] seedPool = new long[Math.max(TRIALS, MAX_TRIALS)];
+        JTetrisBrainFitnessCache cache = USE_FITNESS_CACHE ? new JTetrisBrainFitnessCache(CACHE_CAPACITY) : null;
+        JTetrisBrainRacer racer = new JTetrisBrainRacer((int)(INITIAL_POPULATION_SIZE * SURVIVOR_RATE), 
+            (int)(INITIAL_POPULATION_SIZE * PARENT_RATE), RACING_CHECKPOINT, BOARD_PERCENTAGE, RACING_AUDIT);
+        JTetrisBrainSequentialTrials sequential = new JTetrisBrainSequentialTrials((int)(INITIAL_POPULATION_SIZE * SURVIVOR_RATE), 
+            (int)(INITIAL_POPULATION_SIZE * PARENT_RATE), MIN_TRIALS, MAX_TRIALS, GAME_BUDGET, CONFIDENCE_Z, BOARD_PERCENTAGE);
+        JTetrisBrainMultiFidelity multiFidelity = new JTetrisBrainMultiFidelity(SCREEN_BOARD_PERCENTAGE, SCREEN_PIECE_CAP, 
+            PROMOTE_RATE, (int)(INITIAL_POPULATION_SIZE * PARENT_RATE), PROMOTE_ROWS, BOARD_PERCENTAGE, MULTI_FIDELITY_AUDIT);
+        JTetrisBrainSurrogate surrogate = new JTetrisBrainSurrogate(SURROGATE_HISTORY, SURROGATE_MIN_HISTORY, SURROGATE_Z, 
+            SURROGATE_AUDIT_RATE, (int)(INITIAL_POPULATION_SIZE * PARENT_RATE), BOARD_PERCENTAGE, seedGenerator.nextLong());
+        JTetrisBrainTraceReuse traceReuse = new JTetrisBrainTraceReuse(BOARD_PERCENTAGE, TRACE_BUDGET);
+        JTetrisBrainCensoredTrials censored = new JTetrisBrainCensoredTrials(PIECE_BUDGET, BOARD_PERCENTAGE);
+        JTetrisBrainScheduler scheduler = new JTetrisBrainScheduler(EVALUATION_THREADS, CHUNK_PIECES, true, BOARD_PERCENTAGE);
+        JTetrisBrainCoordinator coordinator = null;
+        if(DISTRIBUTED){
+            try{
+                coordinator = new JTetrisBrainCoordinator(COORDINATOR_HOST, COORDINATOR_PORT, LEASE_MILLIS);
+                startLocalWorkers(coordinator.getPort());
             }
             catch (IOException e) {
-                System.err.println("file not found or unsupported encoding :(");
+                System.err.println("could not start the coordinator on " + COORDINATOR_HOST + ":" + COORDINATOR_PORT);
                 e.printStackTrace();
                 return;
             }
+        }
+        racer.setCache(cache);
+        sequential.setCache(cache);
+        SerialEvaluator serial = new SerialEvaluator(game, cache);
+        JTetrisBrainEvaluator evaluator = RACING ? racer : ADAPTIVE_TRIALS ? sequential : MULTI_FIDELITY ? multiFidelity
+            : SURROGATE ? surrogate : TRACE_REUSE ? traceReuse : CENSORED_TRIALS ? censored
+            : DISTRIBUTED ? distributed(coordinator) : SCHEDULED_EVALUATION ? scheduler : serial;
+
+        // Picks up where the last run stopped, without replaying the games its last generation already finished
+        JTetrisBrainCheckpoint checkpoint = null;
+        JTetrisBrainCheckpoint.Generation resumed = null;
+        // The restored generation was played and sorted, so the optimizer is told it before the next is asked
+        boolean restoredEnded = false;
+        try{
+            if(CHECKPOINTING){
+                try{
+                    checkpoint = new JTetrisBrainCheckpoint(CHECKPOINT_FILENAME, WEIGHT_COUNT);
+                    resumed = checkpoint.resume();
+                }
+                catch (IOException e) {
+                    System.err.println("could not open checkpoint " + CHECKPOINT_FILENAME);
+                    e.printStackTrace();
+                    return;
+                }
+
+                if(resumed != null && resumed.getPopulation().length != INITIAL_POPULATION_SIZE){
+                    System.out.println("Checkpoint population size differs, starting over from " + POPULATION_FILENAME);
+                    generation = checkpoint.getLastGeneration() + 1;
+                    resumed = null;
+                }
+                if(resumed != null && resumed.isEnded()){
+                    // The last generation was played and sorted, so the next one is asked from it like at the end of the loop
+                    generation = resumed.getNumber() + 1;
+                    pop = resumed.getSorted();
+                    seedPool = Arrays.copyOf(resumed.getSeeds(), seedPool.length);
+                    restoredEnded = true;
+                    System.out.println("Resuming from " + CHECKPOINT_FILENAME + " instead of " + POPULATION_FILENAME 
+                        + ": breeding generation " + generation + " from generation " + resumed.getNumber());
+                    resumed = null;
+                }
+                else if(resumed != null){
+                    generation = resumed.getNumber();
+                    game.brain = new TetrisBrain(resumed.getPopulation());
+                    pop = game.brain.getPopulation();
+                    seedPool = Arrays.copyOf(resumed.getSeeds(), seedPool.length);
+
+                    int finished = 0;
+                    for(GameResult[] games : resumed.getCompleted()) for(GameResult g : games) if(g != null) finished++;
+                    System.out.println("Resuming from " + CHECKPOINT_FILENAME + " instead of " + POPULATION_FILENAME 
+                        + ": generation " + generation + " with " + finished + " games already played");
+                }
+            }
+
+            // A generation restored mid-play is finished as it was; otherwise the optimizer proposes the first one
+            Optimizer optimizer = optimizer(OPTIMIZER, pop, resumed != null);
+            if(restoredEnded) optimizer.tell(pop);
+            if(resumed == null){
+                pop = optimizer.ask();
+                game.brain = new TetrisBrain(pop);
+            }
+
+            // The feature profile takes seconds and the features cost the same every generation, so it is printed once
+            boolean profiled = false;
+
+            // Loops through every generation 
+            while (generation < MAX_GENERATIONS) {
+                long generationStart = System.currentTimeMillis();
+                TetrisEvents.Generation generationEvent = new TetrisEvents.Generation();
+                generationEvent.begin();
+
+                GameResult[][] completed = resumed == null ? null : resumed.getCompleted();
+                boolean started = resumed != null && resumed.isStarted();
+                resumed = null;
+
+                // Every individual plays the same seeds so their games can be compared piece for piece
+                if(generation % (cache != null || TRACE_REUSE ? SEED_REFRESH_GENERATIONS : 1) == 0 && !started){
+                    for(int j = 0; j < seedPool.length; j++) seedPool[j] = seedGenerator.nextLong();
+                    // Traces of the old seeds can never be followed again
+                    traceReuse.retainSeeds(seedPool);
+                }
+
+                // Logs the generation before it plays and each game as soon as it finishes
+                GameRecorder recorder = null;
+                if(checkpoint != null){
+                    try{
+                        if(!started) checkpoint.startGeneration(generation, pop, seedPool);
+                    }
+                    catch (IOException e) {
+                        System.err.println("could not write checkpoint " + CHECKPOINT_FILENAME);
+                        e.printStackTrace();
+                        return;
+                    }
+
+                    final int currentGeneration = generation;
+                    final JTetrisBrainCheckpoint log = checkpoint;
+                    recorder = new GameRecorder() {
+                        @Override
+                        public void gameFinished(int individual, int trial, GameResult result) {
+                            try{
+                                log.recordGame(currentGeneration, individual, trial, result);
+                            }
+                            catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    };
+                }
+                evaluator.setRecorder(recorder);
+
+                // Restored games are handed to the cache so the cached loop skips them like any other stored game
+                for(int i = 0; cache != null && completed != null && i < completed.length; i++){
+                    for(GameResult result : completed[i]) if(result != null) cache.put(pop[i].getWeights(), BOARD_PERCENTAGE, result);
+                }
+
+                // The k-th game of every individual is played on the same seed
+                long[] seeds = Arrays.copyOf(seedPool, ADAPTIVE_TRIALS && !RACING ? MAX_TRIALS : TRIALS);
+                serial.generation = generation;
+                GenerationStats report;
+                try{
+                    report = evaluator.evaluate(pop, seeds, completed);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if(evaluator != serial) System.out.println(report);
+                double averageScore = 0;
+                int measured = 0;
+                for(JTetrisBrainIndividual ind : pop){
+                    if(ind.isEstimated()) continue;
+                    averageScore += ind.getScore();
+                    measured++;
+                }
+                int maxRowsCleared = report.getMaxRowsCleared(), minRowsCleared = report.getMinRowsCleared();
+                int maxPiecesPlaced = report.getMaxPiecesPlaced(), minPiecesPlaced = report.getMinPiecesPlaced();
+
+                // Prints a summary of how the generation performed as a whole, useful for seeing if the brain is improving
+                System.out.println("Generation " + generation);
+                System.out.println("Max/Min Rows Cleared: " + maxRowsCleared + "/" + minRowsCleared);
+                System.out.println("Max/Min Pieces Placed: " + maxPiecesPlaced + "/" + minPiecesPlaced);
+                System.out.println("Average Goodness Score: " + averageScore/Math.max(1, measured));
+                if(cache != null) System.out.println(cache.generationReport());
+                System.out.println("--------------------------------------");
+
+                // Sorts the brains by best to worst scores
+                Arrays.sort(pop, new Comparator<JTetrisBrainIndividual>() {
+                    @Override
+                    public int compare(JTetrisBrainIndividual i1, JTetrisBrainIndividual i2) {
+                        return Double.compare(i2.getScore(), i1.getScore());
+                    }
+                });
+                if(FeatureProfiler.ENABLED && !profiled){
+                    System.out.print(FeatureProfiler.table(FeatureProfiler.RUN.profile(pop[0].getWeights())));
+                    profiled = true;
+                }
+
+                // Records every brain's weight values and score
+                try{
+                    writePopulation(POPULATION_FILENAME, generation, pop);
+                    if(checkpoint != null) checkpoint.endGeneration(generation, pop);
+                }
+                catch (IOException e) {
+                    System.err.println("file not found or unsupported encoding :(");
+                    e.printStackTrace();
+                    return;
+                }
+
+                optimizer.tell(pop);
+                pop = optimizer.ask();
+                game.brain = new TetrisBrain(pop);
+                if(Metrics.ENABLED){
+                    Metrics.GENERATIONS.increment();
+                    Metrics.GENERATION_MILLIS.record(System.currentTimeMillis() - generationStart);
+                }
+                if(generationEvent.shouldCommit()){
+                    generationEvent.generation = generation;
+                    generationEvent.population = pop.length;
+                    generationEvent.maxRowsCleared = maxRowsCleared;
+                    generationEvent.minRowsCleared = minRowsCleared;
+                    generationEvent.maxPiecesPlaced = maxPiecesPlaced;
+                    generationEvent.minPiecesPlaced = minPiecesPlaced;
+                    generationEvent.averageScore = averageScore/Math.max(1, measured);
+                    generationEvent.commit();
+                }
+
+                generation++;
+            }
+        }
+        finally{
+            if(checkpoint != null){
+                try{
+                    checkpoint.close();
+                }
+                catch (IOException e) {
+                    System.err.println("could not close checkpoint " + CHECKPOINT_FILENAME);
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the optimizer the generations are asked of, starting from a population
+     * @param kind, the optimizer to create
+     * @param pop, the starting population
+     * @param unsorted, whether pop is a generation restored before it was sorted, so its best brain is unknown and a
+     *                  distribution starts at its centroid instead, which is where the generation was drawn around
+     * @return the optimizer
+     */
+    private static Optimizer optimizer(Optimizer.Kind kind, JTetrisBrainIndividual[] pop, boolean unsorted) {
+        double[] start = pop[0].getWeights().clone();
+        if(unsorted){
+            Arrays.fill(start, 0);
+            for(JTetrisBrainIndividual ind : pop) for(int i = 0; i < start.length; i++) start[i] += ind.getWeights()[i] / pop.length;
+        }
+        switch (kind) {
+            case CMA_ES:
+                return new CmaEsOptimizer(start, CMA_ES_SIGMA, INITIAL_POPULATION_SIZE);
+            case CROSS_ENTROPY:
+                return new CrossEntropyOptimizer(start, INITIAL_POPULATION_SIZE, CROSS_ENTROPY_ELITE_RATE, CROSS_ENTROPY_VARIANCE,
+                    CROSS_ENTROPY_NOISE, CROSS_ENTROPY_NOISE_DECAY);
+            default:
+                return new GeneticOptimizer(pop);
+        }
+    }
+
+    /**
+     * Evaluates on the coordinator's workers, with the trainer's game-over height
+     * @param coordinator, the coordinator the workers are connected to
+     * @return the evaluator
+     */
+    private static JTetrisBrainEvaluator distributed(JTetrisBrainCoordinator coordinator) {
+        return new JTetrisBrainEvaluator() {
+            @Override
+            public GenerationStats evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] finished)
+                    throws InterruptedException {
+                return coordinator.evaluate(pop, seeds, finished, BOARD_PERCENTAGE);
+            }
+
+            @Override
+            public void setRecorder(GameRecorder recorder) {
+                coordinator.setRecorder(recorder);
+            }
+        };
+    }
+
+    /**
+     * Plays every individual TRIALS times one after the other on the trainer's own game,
+     * or through the fitness cache (only on seeds it has not played before) when there is one
+     */
+    private static class SerialEvaluator implements JTetrisBrainEvaluator {
+        private JTetrisBrainTrainer game;
+        private JTetrisBrainFitnessCache cache;
+        private GameRecorder recorder;
+        // The generation being played, for the progress lines
+        int generation;
+
+        SerialEvaluator(JTetrisBrainTrainer game, JTetrisBrainFitnessCache cache) {
+            this.game = game;
+            this.cache = cache;
+        }
+
+        @Override
+        public void setRecorder(GameRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        @Override
+        public GenerationStats evaluate(JTetrisBrainIndividual[] pop, long[] seeds, GameResult[][] completed) {
+            GenerationStats stats = new GenerationStats();
+            if(cache != null){
+                for (int i = 0; i < pop.length; i++) {
+                    TrialStats trials = cache.evaluate(pop[i].getWeights(), seeds, BOARD_PERCENTAGE, stats, i, recorder);
+                    pop[i].setFitness(trials.getFitness());
+                    pop[i].setScore(trials.getMean());
+                }
+                return stats;
+            }
+
+            // Loops through every individual in the population
+            for (int i = 0; i < pop.length; i++) {
+                double totalScore = 0.0, totalFitness = 0.0;
+                if(i%Math.max(1, pop.length/4) == 0)System.out.println("Gen " + generation + " person " + i);
+
+                // Each individual brain gets to play TRIALS number of times to ensure the scores are not flukes/reduce randomness
+                for(int j = 0; j < seeds.length; j++){
+                    // Games finished before an interruption come from the checkpoint instead of being replayed
+                    GameResult result = completed != null && j < completed[i].length ? completed[i][j] : null;
+                    if(result == null){
+                        game.brain.setCurrentIndividual(i);
+                        game.startGame();
+
+                        // Executes the moves
+                        while (game.gameOn) {
+                            game.tick(game.brain.nextMove(game.board));
+                        }
 
-            // Keeps the top performing brains (determined by survivor rate) into the next generation.
-            // Designates a number of brains (determined by parent rate) as parents, of which two distinct brains will breed and produce new brains.
-            // The child is then mutated to introduce variation. 
-            int top = (int) (pop.length * PARENT_RATE);
-            int nextGen = (int)(pop.length * SURVIVOR_RATE);
-            Random r = new Random();
-            for (int i = nextGen; i < pop.length - (int)(IMMIGRANT_RATE*INITIAL_POPULATION_SIZE); i++) {
-                JTetrisBrainIndividual parent1 = pop[r.nextInt(top)];
-                JTetrisBrainIndividual parent2 = pop[r.nextInt(top)];
-                while(parent1.equals(parent2)) parent2 = pop[r.nextInt(top)];
+                        // Calculates the brain's final fitness and score
+                        Board finalBoard = game.board;
+                        result = new GameResult(0, (int)game.brain.calcScore((TetrisBoard)finalBoard),
+                            ((TetrisBoard)finalBoard).getScore(), game.brain.calcFitness(finalBoard));
+                        if(recorder != null) recorder.gameFinished(i, j, result);
+                        stats.record(result);
+                    }
+                    else stats.recordCached(result);
+                    totalFitness += result.getFitness();
+                    totalScore += result.getRowsCleared();
+                }
 
-                JTetrisBrainIndividual child = game.brain.crossOver(parent1, parent2);
-                game.brain.mutate(child);
+                pop[i].setFitness(totalFitness/seeds.length);
+                pop[i].setScore(totalScore/seeds.length);
+            }
+            return stats;
+        }
+    }
 
-                pop[i] = child;
+    /**
+     * Starts LOCAL_WORKERS headless worker JVMs on this machine with the trainer's classpath, sharing the class data in
+     * WORKER_ARCHIVE when it has been made for that classpath; they are killed when the trainer exits.
+     * @param port, the port the coordinator is listening on
+     * @throws IOException if a worker cannot be started
+     */
+    private static void startLocalWorkers(int port) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = System.getProperty("java.class.path");
+        boolean shared = Files.isRegularFile(Paths.get(WORKER_ARCHIVE));
+        if(shared && !Paths.get(classPath).toAbsolutePath().normalize().equals(Paths.get(WORKER_JAR).toAbsolutePath().normalize())){
+            // The JVM refuses an archive dumped with another classpath, so workers would only pay for the failed mapping
+            System.out.println("Not using " + WORKER_ARCHIVE + ": it was made for " + WORKER_JAR + ", the trainer runs from " + classPath);
+            shared = false;
+        }
+        List<Process> workers = new ArrayList<>();
+        for(int i = 0; i < LOCAL_WORKERS; i++){
+            List<String> command = new ArrayList<>(List.of(java, "-Djava.awt.headless=true"));
+            if(shared) command.add("-XX:SharedArchiveFile=" + WORKER_ARCHIVE);
+            command.addAll(List.of("-cp", classPath, JTetrisBrainWorker.class.getName(), 
+                COORDINATOR_HOST, String.valueOf(port)));
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.inheritIO();
+            workers.add(builder.start());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                for(Process worker : workers) worker.destroy();
             }
+        });
+    }
 
-            // Replaces the worst performing brains with completely random values for variation. 
-            for(int i = pop.length - (int)(IMMIGRANT_RATE*INITIAL_POPULATION_SIZE); i < pop.length; i++){
-                pop[i] = new JTetrisBrainIndividual();
+    /**
+     * Writes a sorted population to the population file in the format TetrisBrain(String) reads:
+     * a generation line followed by one "weights | score" line per brain.
+     * The old file is only replaced once the new one is complete.
+     * @param fileName, the population file
+     * @param generation, the generation number written on the first line
+     * @param sorted, the population sorted from best to worst
+     * @throws IOException if the file cannot be written
+     */
+    public static void writePopulation(String fileName, int generation, JTetrisBrainIndividual[] sorted) throws IOException {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(fileName + ".tmp"))){
+            writer.write(("Generation " + generation) + "\n");
+            for (JTetrisBrainIndividual i : sorted) {
+                double[] weights = i.getWeights();
+                for(double w : weights) writer.write(w + " ");
+                // An estimated score only ranked the brain, so it is not passed off as the mean of its games
+                writer.write("| " + (i.isEstimated() ? Double.NaN : i.getScore()) + "\n");
             }
+        }
+        Files.move(Paths.get(fileName + ".tmp"), Paths.get(fileName), 
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces a sorted population with the next generation in place.
+     * Keeps the top performing brains (determined by survivor rate) into the next generation.
+     * Designates a number of brains (determined by parent rate) as parents, of which two distinct brains will breed and produce new brains.
+     * The child is then mutated to introduce variation. 
+     * The worst performing brains are replaced with completely random values (determined by immigrant rate).
+     * @param brain, the brain whose crossOver and mutate are used
+     * @param pop, the population sorted from best to worst
+     * @param r, the random generator used to pick parents
+     */
+    public static void breed(TetrisBrain brain, JTetrisBrainIndividual[] pop, Random r) {
+        breed(brain, pop, r, JTetrisBrainRecipe.defaults());
+    }
+
+    /**
+     * Replaces a sorted population with the next generation in place, like breed(brain, pop, r),
+     * but with the rates of the given recipe instead of the trainer's constants.
+     * @param brain, the brain whose crossOver and mutate are used
+     * @param pop, the population sorted from best to worst
+     * @param r, the random generator used to pick parents
+     * @param recipe, the survivor, parent, immigrant and mutation rates to use
+     */
+    public static void breed(TetrisBrain brain, JTetrisBrainIndividual[] pop, Random r, JTetrisBrainRecipe recipe) {
+        int top = Math.max(2, (int) (pop.length * recipe.getParentRate()));
+        int nextGen = Math.max(1, (int)(pop.length * recipe.getSurvivorRate()));
+        int immigrants = (int)(recipe.getImmigrantRate()*pop.length);
+        for (int i = nextGen; i < pop.length - immigrants; i++) {
+            JTetrisBrainIndividual parent1 = pop[r.nextInt(top)];
+            JTetrisBrainIndividual parent2 = pop[r.nextInt(top)];
+            // Gives up on distinct parents once the top of the population has converged to copies of one brain
+            for(int tries = 0; parent1.equals(parent2) && tries < 4 * top; tries++) parent2 = pop[r.nextInt(top)];
+
+            JTetrisBrainIndividual child = brain.crossOver(parent1, parent2);
+            brain.mutate(child, recipe.getMutationRate());
+            // Until it has played, the parents' average stands in as a prediction of how long the child's games will be
+            child.setScore((parent1.getScore() + parent2.getScore()) / 2);
+
+            pop[i] = child;
+        }
 
-            generation++;
+        // Replaces the worst performing brains with completely random values for variation. 
+        for(int i = pop.length - immigrants; i < pop.length; i++){
+            pop[i] = new JTetrisBrainIndividual();
         }
     }
 }
@@ -0,0 +1,141 @@
+package tetris;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * A worker process for JTetrisBrainCoordinator: connects to the coordinator, asks for games, plays them headless
+ * and sends back the results until the coordinator shuts it down or goes away. While a long game is being played,
+ * a heartbeat is sent every few thousand pieces so the coordinator does not give the game to someone else.
+ * The worker only touches the headless engine, so no AWT toolkit or Swing classes are loaded. The only AWT classes
+ * it loads are java.awt.Point and Point2D, kept deliberately: pieces are made of Points, which are plain geometry.
+ * It plays a short throwaway game before connecting so the piece tables and the brain's classes are ready for the
+ * first real game.
+ * Usage: JTetrisBrainWorker [host] [port]
+ *        JTetrisBrainWorker --startup [launch epoch millis], to report the time from JVM launch to the first piece
+ */
+public class JTetrisBrainWorker implements Runnable {
+    // Pieces played between checks for whether a heartbeat is due
+    private static final int HEARTBEAT_CHECK_PIECES = 1000;
+    // Pieces placed by the throwaway game played at startup
+    private static final int PRELOAD_PIECES = 10;
+
+    private String host;
+    private int port;
+    private long heartbeatMillis;
+    private int gamesPlayed;
+
+    /**
+     * Creates a worker for a coordinator
+     * @param host, the coordinator's host
+     * @param port, the coordinator's port
+     * @param heartbeatMillis, how often to tell the coordinator a game is still being played; well under its lease
+     */
+    public JTetrisBrainWorker(String host, int port, long heartbeatMillis) {
+        this.host = host;
+        this.port = port;
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * Plays games until the coordinator shuts the worker down or the connection is lost
+     */
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            out.writeInt(JTetrisBrainCoordinator.MAGIC);
+
+            while (true) {
+                out.writeByte(JTetrisBrainCoordinator.REQUEST);
+                out.flush();
+
+                byte type = in.readByte();
+                if (type == JTetrisBrainCoordinator.IDLE) continue;
+                if (type != JTetrisBrainCoordinator.TASK) break;
+
+                long id = in.readLong();
+                double boardPercentage = in.readDouble();
+                long seed = in.readLong();
+                double[] weights = new double[in.readInt()];
+                for (int i = 0; i < weights.length; i++) weights[i] = in.readDouble();
+
+                GameResult result = play(id, weights, seed, boardPercentage, out);
+                out.writeByte(JTetrisBrainCoordinator.RESULT);
+                out.writeLong(id);
+                out.writeLong(result.getSeed());
+                out.writeInt(result.getRowsCleared());
+                out.writeInt(result.getPiecesPlaced());
+                out.writeDouble(result.getFitness());
+                gamesPlayed++;
+            }
+        }
+        catch (EOFException e) {
+            // The coordinator closed the connection, which also means shut down
+        }
+        catch (IOException e) {
+            System.err.println("lost the coordinator at " + host + ":" + port);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Retrieves the number of games this worker has reported
+     * @return the number of games played
+     */
+    public int getGamesPlayed() { return gamesPlayed; }
+
+    private GameResult play(long id, double[] weights, long seed, double boardPercentage, DataOutputStream out) throws IOException {
+        HeadlessTetris game = new HeadlessTetris(weights, seed, boardPercentage);
+        game.startGame();
+        long lastBeat = System.currentTimeMillis();
+        while (game.playUntil(game.getPiecesPlaced() + HEARTBEAT_CHECK_PIECES)) {
+            if (System.currentTimeMillis() - lastBeat < heartbeatMillis) continue;
+            out.writeByte(JTetrisBrainCoordinator.HEARTBEAT);
+            out.writeLong(id);
+            out.flush();
+            lastBeat = System.currentTimeMillis();
+        }
+        return game.getResult();
+    }
+
+    /**
+     * Plays a few pieces of a throwaway game so every class and table the engine needs is loaded and built
+     * @return the nanoTime at which the first piece was placed
+     */
+    public static long preload() {
+        // Nothing here may touch JTetrisBrainTrainer's non-constant fields: initializing it would load Swing through JTetris
+        HeadlessTetris game = new HeadlessTetris(new TetrisBrain(), 0, 1);
+        game.startGame();
+        game.playUntil(1);
+        long firstPiece = System.nanoTime();
+        game.playUntil(PRELOAD_PIECES);
+        return firstPiece;
+    }
+
+    public static void main(String[] args) {
+        long mainStart = System.nanoTime();
+        if (args.length > 0 && args[0].equals("--startup")) {
+            // Launch time as given by the caller, else as recorded by the OS for this process (coarser on some systems)
+            long launched = args.length > 1 ? Long.parseLong(args[1])
+                    : ProcessHandle.current().info().startInstant().map(i -> i.toEpochMilli()).orElse(-1L);
+            long firstPiece = preload();
+            long firstPieceMillis = System.currentTimeMillis() - (System.nanoTime() - firstPiece) / 1000000;
+            System.out.printf("time to first piece: %s ms from launch, %.1f ms from main%n",
+                    launched < 0 ? "?" : String.valueOf(firstPieceMillis - launched), (firstPiece - mainStart) / 1e6);
+            return;
+        }
+
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : JTetrisBrainTrainer.COORDINATOR_PORT;
+        preload();
+        new JTetrisBrainWorker(host, port, JTetrisBrainTrainer.LEASE_MILLIS / 3).run();
+    }
+}
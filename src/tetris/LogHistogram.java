@@ -0,0 +1,177 @@
+package tetris;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts non-negative values in buckets whose width grows with the value, so any percentile can be read back to
+ * within about 3% from a fixed 16KB of counters, however many values are recorded. Values below 64 get a bucket
+ * each; above that, every power of two is split into 32 equal buckets. Recording is lock-free and may be done
+ * from any number of threads: the count and sum are LongAdders, and the minimum and maximum are kept per stripe of
+ * threads and only written when a value beats them, so threads recording at once rarely share a cache line.
+ */
+public class LogHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    // A power of two at least the number of cores; each stripe's slot sits a 64-byte cache line from the next
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+    private static final int SLOT_STRIDE = 8;
+
+    private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private LongAdder count = new LongAdder();
+    private LongAdder sum = new LongAdder();
+    private AtomicLongArray mins = new AtomicLongArray(STRIPES * SLOT_STRIDE);
+    private AtomicLongArray maxes = new AtomicLongArray(STRIPES * SLOT_STRIDE);
+
+    /**
+     * Creates an empty histogram
+     */
+    public LogHistogram() {
+        for (int s = 0; s < STRIPES; s++) {
+            mins.set(s * SLOT_STRIDE, Long.MAX_VALUE);
+            maxes.set(s * SLOT_STRIDE, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Adds a value
+     * @param value, the value; negative values are counted as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        int slot = slot();
+        lowerMin(slot, value);
+        raiseMax(slot, value);
+    }
+
+    // The calling thread's stripe, spread by a multiplicative hash so consecutive thread ids land far apart
+    private static int slot() {
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return ((int)(id >>> 40) & (STRIPES - 1)) * SLOT_STRIDE;
+    }
+
+    private void lowerMin(int slot, long value) {
+        long current = mins.get(slot);
+        while (value < current && !mins.compareAndSet(slot, current, value)) current = mins.get(slot);
+    }
+
+    private void raiseMax(int slot, long value) {
+        long current = maxes.get(slot);
+        while (value > current && !maxes.compareAndSet(slot, current, value)) current = maxes.get(slot);
+    }
+
+    /**
+     * Adds every value of another histogram to this one
+     * @param other, the histogram to add
+     */
+    public void add(LogHistogram other) {
+        for (int b = 0; b < BUCKETS; b++) {
+            long c = other.counts.get(b);
+            if (c != 0) counts.addAndGet(b, c);
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        int slot = slot();
+        lowerMin(slot, other.min());
+        raiseMax(slot, other.max());
+    }
+
+    /**
+     * Copies the histogram as it is now
+     * @return a histogram with the same values, which does not change when this one does
+     */
+    public LogHistogram copy() {
+        LogHistogram copy = new LogHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * Fetches the values recorded since an earlier copy of this histogram. The minimum and maximum of the
+     * difference are only known to their buckets' bounds.
+     * @param earlier, a copy made by copy() before
+     * @return a new histogram of the values recorded in between
+     */
+    public LogHistogram since(LogHistogram earlier) {
+        LogHistogram difference = new LogHistogram();
+        for (int b = 0; b < BUCKETS; b++) {
+            long c = counts.get(b) - earlier.counts.get(b);
+            if (c <= 0) continue;
+            difference.counts.set(b, c);
+            difference.lowerMin(0, Math.max(lowerBound(b), getMin()));
+            difference.raiseMax(0, Math.min(lowerBound(b + 1) - 1, getMax()));
+        }
+        difference.count.add(count.sum() - earlier.count.sum());
+        difference.sum.add(sum.sum() - earlier.sum.sum());
+        return difference;
+    }
+
+    // The minimum and maximum over every stripe
+    private long min() {
+        long min = Long.MAX_VALUE;
+        for (int s = 0; s < STRIPES; s++) min = Math.min(min, mins.get(s * SLOT_STRIDE));
+        return min;
+    }
+
+    private long max() {
+        long max = Long.MIN_VALUE;
+        for (int s = 0; s < STRIPES; s++) max = Math.max(max, maxes.get(s * SLOT_STRIDE));
+        return max;
+    }
+
+    public long getCount() { return count.sum(); }
+
+    public long getSum() { return sum.sum(); }
+
+    public long getMin() { return count.sum() == 0 ? 0 : min(); }
+
+    public long getMax() { return count.sum() == 0 ? 0 : max(); }
+
+    /**
+     * Fetches the exact mean of the recorded values
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double)sum.sum() / n;
+    }
+
+    /**
+     * Estimates a percentile from the buckets, as the middle of the bucket it falls in, clamped to the exact
+     * minimum and maximum; the 100th percentile is the exact maximum
+     * @param percentile, between 0 and 100
+     * @return the estimated value, or 0 if nothing was recorded
+     */
+    public double getPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * n));
+        if (rank >= n) return getMax();
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                double middle = (lowerBound(b) + lowerBound(b + 1) - 1) / 2.0;
+                return Math.max(getMin(), Math.min(getMax(), middle));
+            }
+        }
+        return getMax();
+    }
+
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int)value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int)(value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long)(bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,194 @@
+package tetris;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process registry of named counters and LogHistograms for the game and training loops, off unless the JVM is
+ * started with -Dtetris.metrics=true. ENABLED is a static final, so while it is off the JIT removes every
+ * "if (Metrics.ENABLED)" recording site; while it is on, a count is one LongAdder increment and a latency one
+ * lock-free histogram update, cheap next to the microseconds a placement takes.
+ *
+ * The well-known instruments are fields, so the hot paths need no lookup; anything else can be registered by name.
+ * An Exporter writes a snapshot as one JSON line per interval: every counter, the rates over the interval (pieces
+ * per second, games and generations per minute, boards cloned per piece), each histogram's percentiles over the
+ * interval, and the share of the interval each busy thread spent on the CPU.
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("tetris.metrics");
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LogHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    public static final LongAdder PIECES = counter("pieces");
+    public static final LongAdder GAMES = counter("games");
+    public static final LongAdder GENERATIONS = counter("generations");
+    public static final LongAdder BOARDS_CLONED = counter("boards_cloned");
+    public static final LongAdder DECISIONS_REUSED = counter("decisions_reused");
+    // Nanoseconds nextMove takes to search a piece's placements, and how many placements it scores doing so
+    public static final LogHistogram DECISION_NANOS = histogram("decision_nanos");
+    public static final LogHistogram PLACEMENTS_PER_DECISION = histogram("placements_per_decision");
+    public static final LogHistogram GENERATION_MILLIS = histogram("generation_millis");
+
+    private Metrics() {}
+
+    /**
+     * Fetches a counter, registering it the first time its name is used
+     * @param name, the name it is exported under
+     * @return the counter
+     */
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Fetches a histogram, registering it the first time its name is used
+     * @param name, the name it is exported under
+     * @return the histogram
+     */
+    public static LogHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, n -> new LogHistogram());
+    }
+
+    /**
+     * Writes a snapshot of the registry to a file every interval, on a daemon thread
+     */
+    public static class Exporter {
+        private String fileName;
+        private long intervalMillis;
+        private Thread thread;
+        private long start = System.nanoTime();
+        private long last = start;
+        private Map<String, Long> lastCounters = new HashMap<>();
+        private Map<String, LogHistogram> lastHistograms = new HashMap<>();
+        private Map<Long, Long> lastCpu = new HashMap<>();
+        private ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        /**
+         * Creates an exporter; nothing is written until start()
+         * @param fileName, the file the JSON lines are appended to
+         * @param intervalMillis, the time between two snapshots
+         */
+        public Exporter(String fileName, long intervalMillis) {
+            this.fileName = fileName;
+            this.intervalMillis = intervalMillis;
+            if (threads.isThreadCpuTimeSupported()) threads.setThreadCpuTimeEnabled(true);
+        }
+
+        /**
+         * Starts writing snapshots, and a last one when the JVM exits
+         * @return this exporter
+         */
+        public Exporter start() {
+            snapshot();
+            thread = new Thread(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(intervalMillis);
+                        write();
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "metrics-exporter");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::write));
+            return this;
+        }
+
+        private synchronized void write() {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(fileName, true))) {
+                writer.println(snapshot());
+            }
+            catch (IOException e) {
+                System.err.println("could not write metrics to " + fileName + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Takes a snapshot of everything recorded since the last one
+         * @return the snapshot as one line of JSON
+         */
+        public synchronized String snapshot() {
+            long now = System.nanoTime();
+            double seconds = Math.max(1e-9, (now - last) / 1e9);
+            StringBuilder json = new StringBuilder(String.format(Locale.ROOT, "{\"time\":\"%s\",\"uptime_s\":%.1f,\"interval_s\":%.3f",
+                    Instant.now(), (now - start) / 1e9, seconds));
+
+            Map<String, Long> counters = new TreeMap<>();
+            Map<String, Long> deltas = new HashMap<>();
+            for (Map.Entry<String, LongAdder> counter : COUNTERS.entrySet()) {
+                long value = counter.getValue().sum();
+                counters.put(counter.getKey(), value);
+                deltas.put(counter.getKey(), value - lastCounters.getOrDefault(counter.getKey(), 0L));
+            }
+            json.append(",\"counters\":{");
+            String separator = "";
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                json.append(separator).append('"').append(counter.getKey()).append("\":").append(counter.getValue());
+                separator = ",";
+            }
+
+            long pieces = deltas.getOrDefault("pieces", 0L);
+            json.append(String.format(Locale.ROOT, "},\"rates\":{\"pieces_per_s\":%.1f,\"games_per_min\":%.2f,\"generations_per_min\":%.3f,"
+                    + "\"boards_cloned_per_piece\":%.2f}", pieces / seconds, deltas.getOrDefault("games", 0L) * 60 / seconds,
+                    deltas.getOrDefault("generations", 0L) * 60 / seconds,
+                    pieces == 0 ? 0 : (double)deltas.getOrDefault("boards_cloned", 0L) / pieces));
+
+            json.append(",\"histograms\":{");
+            separator = "";
+            for (Map.Entry<String, LogHistogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+                LogHistogram current = entry.getValue().copy();
+                LogHistogram earlier = lastHistograms.get(entry.getKey());
+                LogHistogram interval = earlier == null ? current : current.since(earlier);
+                lastHistograms.put(entry.getKey(), current);
+                json.append(separator).append(String.format(Locale.ROOT,
+                        "\"%s\":{\"count\":%d,\"mean\":%.1f,\"p50\":%.0f,\"p90\":%.0f,\"p99\":%.0f,\"max\":%d}", entry.getKey(),
+                        interval.getCount(), interval.getMean(), interval.getPercentile(50), interval.getPercentile(90),
+                        interval.getPercentile(99), interval.getMax()));
+                separator = ",";
+            }
+
+            // The CPU share of every thread that used at least 1% of the interval
+            json.append("},\"threads\":{");
+            separator = "";
+            Map<Long, Long> cpu = new HashMap<>();
+            if (threads.isThreadCpuTimeEnabled()) {
+                for (Thread t : Thread.getAllStackTraces().keySet()) {
+                    long time = threads.getThreadCpuTime(t.getId());
+                    if (time < 0) continue;
+                    cpu.put(t.getId(), time);
+                    double share = (time - lastCpu.getOrDefault(t.getId(), 0L)) / (seconds * 1e9);
+                    if (share < 0.01) continue;
+                    json.append(separator).append(String.format(Locale.ROOT, "\"%s\":%.3f", t.getName().replace("\"", "'"), share));
+                    separator = ",";
+                }
+            }
+            json.append("}}");
+
+            last = now;
+            lastCounters = counters;
+            lastCpu = cpu;
+            return json.toString();
+        }
+
+        /**
+         * Stops the periodic snapshots; the one at JVM exit is still written
+         */
+        public void stop() {
+            if (thread != null) thread.interrupt();
+        }
+    }
+}
@@ -12,7 +12,7 @@ public class MoveCCW implements Move{
     public Result execute(TetrisBoard board){
         Piece piece = board.getCurrentPiece();
 
-        for(Point offset : TetrisPiece.COUNTERCLOCKWISE_WALLKICK_MAP.get(piece.getType())[piece.getRotationIndex()]){
+        for(Point offset : TetrisPiece.getCounterclockwiseWallKicks(piece.getType())[piece.getRotationIndex()]){
             if(!board.isIntersect(piece.counterclockwisePiece().getBody(), offset.x, offset.y)){
                 board.changePiece(piece.counterclockwisePiece(), offset);
                 return Result.SUCCESS;
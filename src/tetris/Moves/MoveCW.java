@@ -12,7 +12,7 @@ public class MoveCW implements Move{
     public Result execute(TetrisBoard board){
         Piece piece = board.getCurrentPiece();
 
-        for(Point offset : TetrisPiece.CLOCKWISE_WALLKICK_MAP.get(piece.getType())[piece.getRotationIndex()]){
+        for(Point offset : TetrisPiece.getClockwiseWallKicks(piece.getType())[piece.getRotationIndex()]){
             if(!board.isIntersect(piece.clockwisePiece().getBody(), offset.x, offset.y)){
                 board.changePiece(piece.clockwisePiece(), offset);
                 return Result.SUCCESS;
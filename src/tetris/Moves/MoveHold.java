@@ -18,7 +18,7 @@ public class MoveHold implements Move{
             return Result.NO_PIECE;
         }
         else{
-            Piece temp = new TetrisPiece(board.getHeldPieceType());
+            Piece temp = TetrisPiece.getPiece(board.getHeldPieceType());
             board.setHeldPieceType(board.getCurrentPiece().getType());
             board.changePiece(temp, new Point(0,0));
 
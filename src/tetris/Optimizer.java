@@ -0,0 +1,43 @@
+package tetris;
+
+/**
+ * A search strategy for the brain's weights. The caller asks for a batch of candidates, plays them, sets each
+ * candidate's score (higher is better), and tells the optimizer, so every strategy shares the same evaluation harness.
+ */
+public interface Optimizer {
+    /**
+     * The optimizers JTetrisBrainTrainer can run its generations with
+     */
+    enum Kind {
+        // GeneticOptimizer: survivors, crossover, mutation and immigrants, the trainer's original breeding
+        GA,
+        // CmaEsOptimizer
+        CMA_ES,
+        // CrossEntropyOptimizer
+        CROSS_ENTROPY
+    }
+
+    /**
+     * Produces the next batch of candidates to evaluate
+     * @return the candidates, whose scores the caller must set before calling tell
+     */
+    JTetrisBrainIndividual[] ask();
+
+    /**
+     * Updates the search with the scores of the batch returned by the last ask
+     * @param evaluated, the candidates from the last ask with their scores set
+     */
+    void tell(JTetrisBrainIndividual[] evaluated);
+
+    /**
+     * Fetches the optimizer's current best guess at good weights
+     * @return the best candidate, or the center of the search distribution for distribution-based optimizers
+     */
+    JTetrisBrainIndividual getBest();
+
+    /**
+     * Fetches a short name for reports
+     * @return the name of the optimizer
+     */
+    String getName();
+}
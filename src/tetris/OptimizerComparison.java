@@ -0,0 +1,133 @@
+package tetris;
+
+import java.util.Random;
+
+/**
+ * Runs each optimizer on the same evaluation harness until its best guess reaches a target number of rows cleared
+ * on a set of held-out seeds, and reports how many training games and how much wall time that took.
+ * Usage: OptimizerComparison [target rows] [game budget] [board percentage]
+ */
+public class OptimizerComparison {
+    private int trials;
+    private double boardPercentage;
+    private long[] validationSeeds;
+    private Random seedGenerator = new Random();
+
+    /**
+     * Creates a harness
+     * @param trials, the number of games each candidate plays per generation, on seeds shared by the whole batch
+     * @param boardPercentage, the fraction of the board height the stack may reach before a game is over
+     * @param validationSeeds, the held-out seeds the optimizer's best guess is checked on after every generation
+     */
+    public OptimizerComparison(int trials, double boardPercentage, long[] validationSeeds) {
+        this.trials = Math.max(1, trials);
+        this.boardPercentage = boardPercentage;
+        this.validationSeeds = validationSeeds;
+    }
+
+    /**
+     * Asks and tells the optimizer until its best guess reaches the target or the training games run out
+     * @param optimizer, the optimizer to run
+     * @param target, the mean rows cleared on the validation seeds that counts as done
+     * @param gameBudget, the most training games to play
+     * @return the games, time and score of the run
+     */
+    public Result optimize(Optimizer optimizer, double target, long gameBudget) {
+        Result result = new Result(optimizer.getName());
+        long start = System.currentTimeMillis();
+
+        while (result.games < gameBudget) {
+            JTetrisBrainIndividual[] batch = optimizer.ask();
+            long[] seeds = new long[trials];
+            for (int t = 0; t < trials; t++) seeds[t] = seedGenerator.nextLong();
+
+            for (JTetrisBrainIndividual candidate : batch) {
+                TrialStats stats = new TrialStats();
+                for (long seed : seeds) {
+                    GameResult game = play(candidate.getWeights(), seed);
+                    stats.add(game);
+                    result.pieces += game.getPiecesPlaced();
+                }
+                result.games += seeds.length;
+                candidate.setScore(stats.getMean());
+                candidate.setFitness(stats.getFitness());
+            }
+            optimizer.tell(batch);
+            result.generations++;
+
+            // Validation games are not charged to the optimizer, but their time is
+            TrialStats validation = new TrialStats();
+            for (long seed : validationSeeds) validation.add(play(optimizer.getBest().getWeights(), seed));
+            result.best = Math.max(result.best, validation.getMean());
+            System.out.printf("  %s generation %d: %d games, validation %.1f%n", optimizer.getName(), result.generations,
+                    result.games, validation.getMean());
+            if (validation.getMean() >= target) {
+                result.reached = true;
+                break;
+            }
+        }
+        result.weights = optimizer.getBest().getWeights();
+        result.millis = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    private GameResult play(double[] weights, long seed) {
+        HeadlessTetris game = new HeadlessTetris(weights, seed, boardPercentage);
+        game.startGame();
+        return game.playToEnd();
+    }
+
+    /**
+     * The cost of one optimizer's run.
+     */
+    public static class Result {
+        String name;
+        boolean reached;
+        int generations;
+        long games;
+        long pieces;
+        long millis;
+        double best;
+        double[] weights;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-14s %-8s %6d %8d %10d %9.1f %10.1f", name, reached ? "yes" : "no", generations, games,
+                    pieces, millis / 1000.0, best);
+        }
+    }
+
+    public static void main(String[] args) {
+        double target = args.length > 0 ? Double.parseDouble(args[0]) : 1000;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+        double boardPercentage = args.length > 2 ? Double.parseDouble(args[2]) : JTetrisBrainTrainer.BOARD_PERCENTAGE;
+
+        long[] validation = new long[5];
+        Random r = new Random(42);
+        for (int i = 0; i < validation.length; i++) validation[i] = r.nextLong();
+        OptimizerComparison harness = new OptimizerComparison(JTetrisBrainTrainer.TRIALS, boardPercentage, validation);
+
+        double[] start = new JTetrisBrainIndividual().getWeights();
+        Optimizer[] optimizers = new Optimizer[]{
+            new GeneticOptimizer(JTetrisBrainTrainer.INITIAL_POPULATION_SIZE),
+            new CmaEsOptimizer(start, 0.5),
+            new CrossEntropyOptimizer(50, 0.1, 1, 1, 0.1)
+        };
+
+        Result[] results = new Result[optimizers.length];
+        for (int i = 0; i < optimizers.length; i++) {
+            System.out.println(optimizers[i].getName());
+            results[i] = harness.optimize(optimizers[i], target, budget);
+        }
+
+        System.out.println();
+        System.out.printf("Target %.0f rows on %d held-out seeds, budget %d games, board %.2f%n", target, validation.length, budget,
+                boardPercentage);
+        System.out.printf("%-14s %-8s %6s %8s %10s %9s %10s%n", "Optimizer", "Reached", "Gens", "Games", "Pieces", "Seconds", "Best");
+        for (Result result : results) System.out.println(result);
+    }
+}
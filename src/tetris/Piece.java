@@ -16,54 +16,55 @@ public interface Piece {
         /**
          * The T tetromino.
          */
-        T(new Point[] { new Point(0, 1), new Point(1, 1), new Point(2, 1), new Point(1, 2) }, 3, 3, new Color(138, 43, 223)),
+        T(new Point[] { new Point(0, 1), new Point(1, 1), new Point(2, 1), new Point(1, 2) }, 3, 3, 0x8A2BDF),
 
         /**
          * The square tetromino (also called the "O" tetromino).
          */
-        SQUARE(new Point[] { new Point(0, 0), new Point(0, 1), new Point(1, 0), new Point(1, 1) }, 2, 2, Color.YELLOW),
+        SQUARE(new Point[] { new Point(0, 0), new Point(0, 1), new Point(1, 0), new Point(1, 1) }, 2, 2, 0xFFFF00),
 
         /**
          * The stick tetromino (also called the "I" tetromino).
          */
-        STICK(new Point[] { new Point(0, 2), new Point(1, 2), new Point(2, 2), new Point(3, 2) }, 4, 4, Color.CYAN),
+        STICK(new Point[] { new Point(0, 2), new Point(1, 2), new Point(2, 2), new Point(3, 2) }, 4, 4, 0x00FFFF),
 
         /**
          * The left-facing "L" tetromino.
          */
-        LEFT_L(new Point[] { new Point(0, 1), new Point(1, 1), new Point(2, 1), new Point(0, 2) }, 3, 3, Color.BLUE),
+        LEFT_L(new Point[] { new Point(0, 1), new Point(1, 1), new Point(2, 1), new Point(0, 2) }, 3, 3, 0x0000FF),
 
         /**
          * The right-facing "L" tetromino.
          */
-        RIGHT_L(new Point[] { new Point(0, 1), new Point(1, 1), new Point(2, 1), new Point(2, 2) }, 3, 3, Color.ORANGE),
+        RIGHT_L(new Point[] { new Point(0, 1), new Point(1, 1), new Point(2, 1), new Point(2, 2) }, 3, 3, 0xFFC800),
 
         /**
          * The left dog tetromino (also called the "Z" tetromino).
          */
-        LEFT_DOG(new Point[] { new Point(0, 2), new Point(1, 2), new Point(1, 1), new Point(2, 1) }, 3, 3, Color.RED),
+        LEFT_DOG(new Point[] { new Point(0, 2), new Point(1, 2), new Point(1, 1), new Point(2, 1) }, 3, 3, 0xFF0000),
 
         /**
          * The right dog tetromino (also called the "S" tetromino).
          */
-        RIGHT_DOG(new Point[] { new Point(0, 1), new Point(1, 1), new Point(1, 2), new Point(2, 2) }, 3, 3, Color.GREEN);
+        RIGHT_DOG(new Point[] { new Point(0, 1), new Point(1, 1), new Point(1, 2), new Point(2, 2) }, 3, 3, 0x00FF00);
 
         // The body of the tetromino; these points are relative to the lower-left hand corner
         // of the bounding box of the piece, and represent the piece in it's spawn position.
         private Point[] spawnBody;
 
-        // The color of this tetromino.
-        private Color color;
+        // The color of this tetromino as 0xRRGGBB. It is only turned into a java.awt.Color when something draws it,
+        // since loading Color starts the AWT toolkit, which headless games never need.
+        private int rgb;
 
         // The width and height of the SRS bounding box.
         private int boundingBoxWidth, boundingBoxHeight;
 
         // Private constructor which provides the body.
-        PieceType(Point[] body, int width, int height, Color color) {
+        PieceType(Point[] body, int width, int height, int rgb) {
             this.spawnBody = body;
             this.boundingBoxWidth = width;
             this.boundingBoxHeight = height;
-            this.color = color;
+            this.rgb = rgb;
         }
 
         /**
@@ -78,10 +79,33 @@ public interface Piece {
          */
         public Dimension getBoundingBox() { return new Dimension(boundingBoxWidth, boundingBoxHeight); }
 
+        /**
+         * Return the width of the SRS bounding box.
+         */
+        public int getBoundingBoxWidth() { return boundingBoxWidth; }
+
+        /**
+         * Return the height of the SRS bounding box.
+         */
+        public int getBoundingBoxHeight() { return boundingBoxHeight; }
+
         /**
          * Return the color of this tetromino type.
          */
-        public Color getColor() { return color; }
+        public Color getColor() { return Colors.BY_TYPE[ordinal()]; }
+
+        /**
+         * Return the color of this tetromino type as 0xRRGGBB.
+         */
+        public int getRGB() { return rgb; }
+
+        // Holds the Color objects, so they are only created the first time a piece is drawn
+        private static class Colors {
+            private static final Color[] BY_TYPE = new Color[values().length];
+            static {
+                for (PieceType type : values()) BY_TYPE[type.ordinal()] = new Color(type.rgb);
+            }
+        }
     }
 
     /**
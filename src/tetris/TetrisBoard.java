@@ -69,6 +69,7 @@ public final class TetrisBoard implements Board {
      * @return the copied TetrisBoard
      */
     public TetrisBoard cloneBoard(){
+        if(Metrics.ENABLED) Metrics.BOARDS_CLONED.increment();
         TetrisBoard newBoard = new TetrisBoard(this.width, this.height);
         for(int i = 0; i < width; i++){
             newBoard.grid[i] = this.grid[i].clone();
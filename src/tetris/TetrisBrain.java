@@ -3,7 +3,10 @@ package tetris;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 
@@ -11,10 +14,24 @@ import tetris.Board.Action;
 
 
 public class TetrisBrain {
+    // Every value of getBoardInfo, one bit each, and the ones read from the grid row by row
+    public static final int ALL_FEATURES = (1 << JTetrisBrainTrainer.WEIGHT_COUNT) - 1;
+    private static final int CELL_FEATURES = 1 << 2 | 1 << 3 | 1 << 6 | 1 << 8;
     private int currIndividual;
     private JTetrisBrainIndividual[] population;
     private Queue<Action> moveSequence = new LinkedList<Action>();
 
+    // Decision traces: the game being recorded, and a game on the same seed whose decisions are reused while the
+    // weights are within their safety radius, until the first decision that differs
+    private DecisionTrace recording;
+    private DecisionTrace following;
+    private double followDistance;
+    private int decisionCount;
+    private int reusedDecisions;
+    // Every placement scored for the current piece while recording: its board info (null if over the top) and fitness
+    private List<double[]> candidateInfo = new ArrayList<>();
+    private double[] candidateFitness = new double[64];
+
     /**
      * Sets up a single individual with a specific set of weights obtained from training the brain. 
      */
@@ -90,6 +107,15 @@ public class TetrisBrain {
         population[0].setWeights(weights);
     }
 
+    /**
+     * Create a TetrisBrain around an existing population, such as one restored from a training checkpoint.
+     * @param population, the Individuals making up the population
+     */
+    public TetrisBrain(JTetrisBrainIndividual[] population){
+        this.population = population;
+        currIndividual = 0;
+    }
+
     /**
      * Determines the next sequence of moves the brain should make, as calculated from the fitness scoring method.
      * The sequence is stored in a queue called moveSequence.
@@ -103,6 +129,28 @@ public class TetrisBrain {
 
         // Casts the current board to a tetrisboard to use custom testPlacement method
         TetrisBoard tetrisBoard = (TetrisBoard)currentBoard;
+
+        // Replays the followed game's placement when it is certain this brain would choose the same one
+        TetrisEvents.Decision event = new TetrisEvents.Decision();
+        event.begin();
+        if(following != null && decisionCount < following.size() && followDistance < following.getRadius(decisionCount)){
+            int decision = following.getDecision(decisionCount);
+            if(recording != null) recording.add(decision, following.getRadius(decisionCount) - followDistance);
+            decisionCount++;
+            reusedDecisions++;
+            if(Metrics.ENABLED) Metrics.DECISIONS_REUSED.increment();
+            queueMoves(tetrisBoard, decision);
+            if(event.shouldCommit()){
+                event.piece = tetrisBoard.getCurrentPiece().getType().name();
+                event.reused = true;
+                event.commit();
+            }
+            return moveSequence.poll();
+        }
+        long searchStart = Metrics.ENABLED ? System.nanoTime() : 0;
+        int placements = 0;
+        candidateInfo.clear();
+        int bestCandidate = -1;
         // if(tetrisBoard.getHeldPieceType() == null) return Action.HOLD;
 
         // Sets tracker variables for the ideal x value and rotation index of the piece
@@ -113,7 +161,7 @@ public class TetrisBrain {
         double fitness;
 
         // Gets the current piece to be placed and tries every combination of horizontal position and rotations, assuming the piece is dropped from the top of the board
-        Piece testPiece = new TetrisPiece(tetrisBoard.getCurrentPiece().getType());
+        Piece testPiece = TetrisPiece.getPiece(tetrisBoard.getCurrentPiece().getType());
         for(int i = 0; i < 4; i++){
             for(int x = -2; x < currentBoard.getWidth()+2; x++){
                 if(tetrisBoard.isIntersectTest(testPiece.getBody(), x, currentBoard.getHeight()-4)) continue;
@@ -121,13 +169,15 @@ public class TetrisBrain {
                 Board newBoard = tetrisBoard.testPlacement(testPiece, x);
                 // If the fitness of the current rotation and x value shift is better than the current best fitness, update the tracker values
                 if(newBoard != null){
-                    fitness = calcFitness(newBoard);
+                    fitness = scoreCandidate(newBoard);
+                    placements++;
 
                     if (fitness > maxFitness){
                         maxFitness = fitness;
                         bestX = x;
                         bestRotationIndex = testPiece.getRotationIndex();
                         holdUsed = false;
+                        bestCandidate = candidateInfo.size() - 1;
                     }
                 }
             }
@@ -135,33 +185,66 @@ public class TetrisBrain {
             testPiece = testPiece.clockwisePiece();
         }
 
-        // Hold piece implementation for the bot
-        Piece heldPiece = new TetrisPiece(tetrisBoard.getHeldPieceType());
-        for(int i = 0; i < 4; i++){
-            for(int x = -2; x < currentBoard.getWidth()+2; x++){
-                Board newHeldBoard = tetrisBoard.testPlacement(heldPiece, x);
-                
-                if(newHeldBoard != null){
-                     fitness = calcFitness(newHeldBoard);
-
-                    if (fitness > maxFitness && !tetrisBoard.isHeld()){
-                        maxFitness = fitness;
-                        bestX = x;
-                        bestRotationIndex = heldPiece.getRotationIndex();
-                        holdUsed = true;
+        // Hold piece implementation for the bot, skipped while nothing has been held yet or the hold was already used
+        Piece heldPiece = null;
+        if(tetrisBoard.getHeldPieceType() != null && !tetrisBoard.isHeld()){
+            heldPiece = TetrisPiece.getPiece(tetrisBoard.getHeldPieceType());
+            for(int i = 0; i < 4; i++){
+                for(int x = -2; x < currentBoard.getWidth()+2; x++){
+                    Board newHeldBoard = tetrisBoard.testPlacement(heldPiece, x);
+                    
+                    if(newHeldBoard != null){
+                        fitness = scoreCandidate(newHeldBoard);
+                        placements++;
+
+                        if (fitness > maxFitness){
+                            maxFitness = fitness;
+                            bestX = x;
+                            bestRotationIndex = heldPiece.getRotationIndex();
+                            holdUsed = true;
+                            bestCandidate = candidateInfo.size() - 1;
+                        }
                     }
                 }
+                heldPiece = heldPiece.clockwisePiece();
             }
-            heldPiece = heldPiece.clockwisePiece();
         }
 
+        int decision = encodeDecision(holdUsed, bestX, bestRotationIndex);
+        if(recording != null) recording.add(decision, safetyRadius(bestCandidate));
+        if(following != null && (decisionCount >= following.size() || following.getDecision(decisionCount) != decision)) following = null;
+        decisionCount++;
+        if(Metrics.ENABLED){
+            Metrics.DECISION_NANOS.record(System.nanoTime() - searchStart);
+            Metrics.PLACEMENTS_PER_DECISION.record(placements);
+        }
+
+        queueMoves(tetrisBoard, decision);
+        if(event.shouldCommit()){
+            event.piece = tetrisBoard.getCurrentPiece().getType().name();
+            event.candidates = placements;
+            event.commit();
+        }
+
+        // Return the first move of the sequence
+        return moveSequence.poll();
+    }
+
+    /**
+     * Queues the moves that take the current piece (or the held piece) to a placement and drop it there.
+     */
+    private void queueMoves(TetrisBoard tetrisBoard, int decision) {
+        boolean holdUsed = (decision & 1) != 0;
+        int bestRotationIndex = (decision >> 1) & 3;
+        int bestX = (decision >> 3) - 2;
+
         // Gets the current rotation index and x value of the current Tetris piece
         int currentRotationIndex = tetrisBoard.getCurrentPiece().getRotationIndex();
         int currentX = tetrisBoard.getCurrentPiecePosition().x;
 
         if (holdUsed){
             moveSequence.offer(Action.HOLD);
-            currentX = tetrisBoard.getWidth()/2 - heldPiece.getWidth()/2;
+            currentX = tetrisBoard.getWidth()/2 - TetrisPiece.getPiece(tetrisBoard.getHeldPieceType()).getWidth()/2;
             currentRotationIndex = 0;
         }
 
@@ -192,11 +275,75 @@ public class TetrisBrain {
 
         //The last move of any move sequence should be to drop it
         moveSequence.offer(Action.DROP);
+    }
 
-        // Return the first move of the sequence
-        return moveSequence.poll();
+    private static int encodeDecision(boolean holdUsed, int x, int rotationIndex) {
+        return ((x + 2) << 3) | (rotationIndex << 1) | (holdUsed ? 1 : 0);
+    }
+
+    /**
+     * Scores a placement like calcFitness, also keeping its board info while a trace is being recorded.
+     */
+    private double scoreCandidate(Board board) {
+        if(recording == null) return calcFitness(board);
+
+        double[] info = board.getMaxHeight() > JTetris.HEIGHT ? null : getBoardInfo(board);
+        double fitness = info == null ? -100000 : weightedSum(population[currIndividual].getWeights(), info);
+        int index = candidateInfo.size();
+        if(index == candidateFitness.length) candidateFitness = Arrays.copyOf(candidateFitness, 2 * index);
+        candidateInfo.add(info);
+        candidateFitness[index] = fitness;
+        return fitness;
     }
 
+    /**
+     * How far the weights can move before some other placement could beat the chosen one. Each placement's fitness
+     * is linear in the weights (or constant when over the top), so the chosen placement's lead over another changes
+     * by at most the weight change times the distance between their board infos. A tiny allowance is kept back for
+     * rounding in the sums.
+     */
+    private double safetyRadius(int best) {
+        if(best < 0) return Double.POSITIVE_INFINITY;
+
+        double[] chosen = candidateInfo.get(best);
+        double top = candidateFitness[best], radius = Double.POSITIVE_INFINITY;
+        for(int c = 0; c < candidateInfo.size(); c++){
+            if(c == best) continue;
+            double[] other = candidateInfo.get(c);
+            double distance = 0;
+            for(int i = 0; i < JTetrisBrainTrainer.WEIGHT_COUNT; i++){
+                double d = (chosen == null ? 0 : chosen[i]) - (other == null ? 0 : other[i]);
+                distance += d * d;
+            }
+            // The same board info scores the same for any weights, and the earlier placement keeps winning ties
+            if(distance == 0) continue;
+            double lead = top - candidateFitness[c] - 1e-9 * (1 + Math.abs(top) + Math.abs(candidateFitness[c]));
+            radius = Math.min(radius, lead / Math.sqrt(distance));
+        }
+        return Math.max(0, radius);
+    }
+
+    /**
+     * Records the decisions of the next game in a trace, and optionally reuses the decisions of an earlier game
+     * on the same seed for as long as they are certain to be the ones this brain would make. Call before the game
+     * starts; the traces stay attached until replaced.
+     * @param recording, the trace to append this game's decisions to, or null for none
+     * @param following, a trace of the same seed and game-over height to reuse decisions from, or null for none
+     */
+    public void setTraces(DecisionTrace recording, DecisionTrace following) {
+        this.recording = recording;
+        this.following = following;
+        followDistance = following == null ? 0 : following.distanceTo(population[currIndividual].getWeights());
+        decisionCount = 0;
+        reusedDecisions = 0;
+    }
+
+    /**
+     * Retrieves how many decisions of the current game were taken from the followed trace without searching
+     * @return the number of reused decisions
+     */
+    public int getReusedDecisions() { return reusedDecisions; }
+
     /**
      * A method to sort the weights such that it incentivizes row clears
      * @param board, the current TetrisBoard
@@ -219,11 +366,13 @@ public class TetrisBrain {
         double[] weights = population[currIndividual].getWeights();
         double[] boardInfo = getBoardInfo(currentBoard);
 
-        double fitness = 0;
+        return weightedSum(weights, boardInfo);
+    }
 
-        //Add weight x heuristic for each one
+    //Add weight x heuristic for each one
+    private static double weightedSum(double[] weights, double[] boardInfo) {
+        double fitness = 0;
         for(int i = 0; i < JTetrisBrainTrainer.WEIGHT_COUNT; i++) fitness += weights[i]*boardInfo[i];
-
         return fitness;
     }
 
@@ -243,22 +392,34 @@ public class TetrisBrain {
      * @return the array of doubles that store all of the values
     */
     public double[] getBoardInfo(Board board){
+        if(FeatureProfiler.ENABLED) FeatureProfiler.RUN.observe(board);
+        return getBoardInfo(board, ALL_FEATURES);
+    }
+
+    /**
+     * Computes only some of the values of getBoardInfo, leaving the others 0, so a feature's cost can be measured
+     * on its own in the same loop the brain runs
+     * @param board, the current Tetris Board
+     * @param features, the features to compute, bit i standing for value i of getBoardInfo
+     * @return the array of doubles that store the computed values
+     */
+    public static double[] getBoardInfo(Board board, int features){
         int width = board.getWidth();
         int height = board.getHeight();
 
         double[] rslt = new double[JTetrisBrainTrainer.WEIGHT_COUNT];
 
         // Rows Cleared
-        rslt[5] = ((TetrisBoard)board).getRowsCleared();
+        if((features & 1 << 5) != 0) rslt[5] = board.getRowsCleared();
 
         for(int c = 0; c < width; c++){
             boolean isHole = false;
 
             // Max Height Diff
-            rslt[0] = Math.max(rslt[0], board.getMaxHeight()-board.getColumnHeight(c));
+            if((features & 1 << 0) != 0) rslt[0] = Math.max(rslt[0], board.getMaxHeight()-board.getColumnHeight(c));
 
             // Pillars
-            if(c >= 1 && c < width-1){
+            if((features & 1 << 1) != 0 && c >= 1 && c < width-1){
                 int left, middle, right;
                 left = board.getColumnHeight(c-1);
                 middle = board.getColumnHeight(c);
@@ -267,16 +428,18 @@ public class TetrisBrain {
                 if(left >= 3+middle && right >= 3+middle) rslt[1] += Math.min(left,right)-middle;   
             }
             
-            for(int r = 0; r < Math.min(board.getMaxHeight(), height); r++){
+            for(int r = 0; r < Math.min(board.getMaxHeight(), height) && (features & CELL_FEATURES) != 0; r++){
                 // Holes
-                if (board.getGrid(c, r) == null && board.getColumnHeight(c) > r) rslt[2]++;
+                if ((features & 1 << 2) != 0 && board.getGrid(c, r) == null && board.getColumnHeight(c) > r) rslt[2]++;
 
                 // Pieces Above Holes
-                if(board.getGrid(c, r) == null) isHole = true;
-                if(isHole && board.getGrid(c, r) != null) rslt[3]++;
+                if((features & 1 << 3) != 0){
+                    if(board.getGrid(c, r) == null) isHole = true;
+                    if(isHole && board.getGrid(c, r) != null) rslt[3]++;
+                }
 
                 // Row transitions
-                if(r < board.getMaxHeight() && c < width-1){
+                if((features & 1 << 6) != 0 && r < board.getMaxHeight() && c < width-1){
                     if (board.getGrid(c, r) != null && board.getGrid(c+1, r) == null) {
                         rslt[6]++;
                     }
@@ -286,7 +449,7 @@ public class TetrisBrain {
                 }
 
                 // Column transitions
-                if(r < board.getColumnHeight(c)-1){
+                if((features & 1 << 8) != 0 && r < board.getColumnHeight(c)-1){
                     if (board.getGrid(c, r) != null && board.getGrid(c, r+1) == null) {
                         rslt[8]++;
                     }
@@ -297,17 +460,19 @@ public class TetrisBrain {
             }
 
             // Bumpiness of the columns
-            if(c >= 1){
+            if((features & 1 << 4) != 0 && c >= 1){
                 rslt[4] += Math.abs(board.getColumnHeight(c) - board.getColumnHeight(c-1));
             }
         }
 
         // Edge cases for the pillars not caught in the section above
-        if(width >= 2 && board.getColumnHeight(1) >= 3+board.getColumnHeight(0)) rslt[1] += board.getColumnHeight(1)-board.getColumnHeight(0);
-        if(width >= 2 && board.getColumnHeight(width-2) >= 3+board.getColumnHeight(width-1)) rslt[1] += board.getColumnHeight(width-2)-board.getColumnHeight(width-1);
+        if((features & 1 << 1) != 0){
+            if(width >= 2 && board.getColumnHeight(1) >= 3+board.getColumnHeight(0)) rslt[1] += board.getColumnHeight(1)-board.getColumnHeight(0);
+            if(width >= 2 && board.getColumnHeight(width-2) >= 3+board.getColumnHeight(width-1)) rslt[1] += board.getColumnHeight(width-2)-board.getColumnHeight(width-1);
+        }
 
         // Overall maximum height 
-        rslt[7] = board.getMaxHeight();
+        if((features & 1 << 7) != 0) rslt[7] = board.getMaxHeight();
 
         return rslt;
     }
@@ -337,18 +502,34 @@ public class TetrisBrain {
      * @param toMutate, the Individual whose weights will potentially be changed
      */
     public void mutate(JTetrisBrainIndividual toMutate) {
+        mutate(toMutate, JTetrisBrainTrainer.MUTATION_RATE);
+    }
+
+    /**
+     * Randomly increases or decreases the weight values of an Individual with a given mutation rate
+     * @param toMutate, the Individual whose weights will potentially be changed
+     * @param mutationRate, the chance of each weight being changed
+     */
+    public void mutate(JTetrisBrainIndividual toMutate, double mutationRate) {
         double[] currWeights = toMutate.getWeights();
         Random r = new Random();
         
-        // If a random double between 0 and 1 is less than the mutation rate constant, 
+        // If a random double between 0 and 1 is less than the mutation rate, 
         // add a number from (-1, 1) from a Gaussian distribution to the weight
         for (int i = 0; i < currWeights.length; i++) {
-            currWeights[i] += (r.nextDouble() < JTetrisBrainTrainer.MUTATION_RATE) ? r.nextGaussian() : 0;
+            currWeights[i] += (r.nextDouble() < mutationRate) ? r.nextGaussian() : 0;
         }
 
         toMutate.setWeights(currWeights);
     }
 
+    /**
+     * Throws away any moves left over from the previous piece, so a brain can be reused for a fresh game
+     */
+    public void clearMoves() {
+        moveSequence.clear();
+    }
+
     /**
      * Fetches the array of Individuals
      * @return the array of Individuals representing all of the Individuals in a generation/epoch
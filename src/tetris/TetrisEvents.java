@@ -0,0 +1,117 @@
+package tetris;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the brain, the games and training, so a slow run can be lined up in JMC with
+ * its GC, allocation and lock events. Every event is disabled unless the recording's settings enable it, as
+ * scripts/tetris.jfc does:
+ *   java -XX:StartFlightRecording:settings=default,settings=scripts/tetris.jfc,filename=run.jfr ...
+ * While an event is disabled, begin() and commit() do nothing and shouldCommit() is false, so the recording
+ * sites cost a branch.
+ */
+public final class TetrisEvents {
+    private TetrisEvents() {}
+
+    @Name("tetris.Decision")
+    @Label("Decision")
+    @Category({"Tetris", "Brain"})
+    @Description("TetrisBrain.nextMove choosing where a new piece goes")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Decision extends Event {
+        @Label("Piece")
+        public String piece;
+
+        @Label("Candidates Evaluated")
+        @Description("Placements scored, of the current piece and of the held piece")
+        public int candidates;
+
+        @Label("Reused")
+        @Description("Whether the decision was copied from a followed trace instead of searched")
+        public boolean reused;
+    }
+
+    @Name("tetris.Placement")
+    @Label("Placement")
+    @Category({"Tetris", "Game"})
+    @Description("A piece placed on a game's board, after any rows it completed were cleared")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Placement extends Event {
+        @Label("Piece")
+        public String piece;
+
+        @Label("Rows Cleared")
+        public int rowsCleared;
+
+        @Label("Max Height")
+        public int maxHeight;
+    }
+
+    @Name("tetris.Game")
+    @Label("Game")
+    @Category({"Tetris", "Game"})
+    @Description("A game from its start until it is over")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Game extends Event {
+        @Label("Seed")
+        public long seed;
+
+        @Label("Pieces Placed")
+        public int piecesPlaced;
+
+        @Label("Rows Cleared")
+        public int rowsCleared;
+    }
+
+    @Name("tetris.Generation")
+    @Label("Generation")
+    @Category({"Tetris", "Training"})
+    @Description("One generation of JTetrisBrainTrainer: playing the population and breeding the next")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Generation extends Event {
+        @Label("Generation")
+        public int generation;
+
+        @Label("Population")
+        public int population;
+
+        @Label("Max Rows Cleared")
+        public int maxRowsCleared;
+
+        @Label("Min Rows Cleared")
+        public int minRowsCleared;
+
+        @Label("Max Pieces Placed")
+        public int maxPiecesPlaced;
+
+        @Label("Min Pieces Placed")
+        public int minPiecesPlaced;
+
+        @Label("Average Score")
+        public double averageScore;
+    }
+
+    /**
+     * Records a piece placed in a game, if placements are being recorded
+     * @param board, the board the piece was just placed on
+     * @param piece, the piece that was placed
+     */
+    static void placed(TetrisBoard board, Piece piece) {
+        Placement event = new Placement();
+        if (!event.shouldCommit()) return;
+        event.piece = piece == null ? null : piece.getType().name();
+        event.rowsCleared = board.getRowsCleared();
+        event.maxHeight = board.getMaxHeight();
+        event.commit();
+    }
+}
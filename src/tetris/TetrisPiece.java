@@ -2,7 +2,6 @@ package tetris;
 
 import java.awt.*;
 import java.util.Arrays;
-import java.util.EnumMap;
 
 /**
  * An immutable representation of a tetris piece in a particular rotation.
@@ -26,25 +25,53 @@ public final class TetrisPiece implements Piece {
         new Point[] { new Point(0, 0)}
     };
 
-    public static final EnumMap<PieceType, Point[][]> CLOCKWISE_WALLKICK_MAP = new EnumMap<>(PieceType.class){{
-        put(PieceType.T, NORMAL_CLOCKWISE_WALL_KICKS);
-        put(PieceType.LEFT_DOG, NORMAL_CLOCKWISE_WALL_KICKS);
-        put(PieceType.LEFT_L, NORMAL_CLOCKWISE_WALL_KICKS);
-        put(PieceType.RIGHT_DOG, NORMAL_CLOCKWISE_WALL_KICKS);
-        put(PieceType.RIGHT_L, NORMAL_CLOCKWISE_WALL_KICKS);
-        put(PieceType.SQUARE, SQUARE_WALL_KICKS);
-        put(PieceType.STICK, I_CLOCKWISE_WALL_KICKS);
-    }};
-
-    public static final EnumMap<PieceType, Point[][]> COUNTERCLOCKWISE_WALLKICK_MAP = new EnumMap<>(PieceType.class){{
-        put(PieceType.T, NORMAL_COUNTERCLOCKWISE_WALL_KICKS);
-        put(PieceType.LEFT_DOG, NORMAL_COUNTERCLOCKWISE_WALL_KICKS);
-        put(PieceType.LEFT_L, NORMAL_COUNTERCLOCKWISE_WALL_KICKS);
-        put(PieceType.RIGHT_DOG, NORMAL_COUNTERCLOCKWISE_WALL_KICKS);
-        put(PieceType.RIGHT_L, NORMAL_COUNTERCLOCKWISE_WALL_KICKS);
-        put(PieceType.SQUARE, SQUARE_WALL_KICKS);
-        put(PieceType.STICK, I_COUNTERCLOCKWISE_WALL_KICKS);
-    }};
+    // Wall kicks by piece type ordinal. Plain arrays rather than EnumMaps: an EnumMap looks up the enum's constants
+    // reflectively, which loads every class in PieceType's method signatures, java.awt.Color included.
+    private static final Point[][][] CLOCKWISE_WALL_KICKS_BY_TYPE = new Point[PieceType.values().length][][];
+    private static final Point[][][] COUNTERCLOCKWISE_WALL_KICKS_BY_TYPE = new Point[PieceType.values().length][][];
+    static {
+        for (PieceType type : PieceType.values()) {
+            boolean square = type == PieceType.SQUARE, stick = type == PieceType.STICK;
+            CLOCKWISE_WALL_KICKS_BY_TYPE[type.ordinal()] = square ? SQUARE_WALL_KICKS
+                    : stick ? I_CLOCKWISE_WALL_KICKS : NORMAL_CLOCKWISE_WALL_KICKS;
+            COUNTERCLOCKWISE_WALL_KICKS_BY_TYPE[type.ordinal()] = square ? SQUARE_WALL_KICKS
+                    : stick ? I_COUNTERCLOCKWISE_WALL_KICKS : NORMAL_COUNTERCLOCKWISE_WALL_KICKS;
+        }
+    }
+
+    /**
+     * Retrieves the offsets to try, in order, when rotating a piece of the given type clockwise.
+     * @param type, the type of Tetris piece
+     * @return the wall kicks indexed by the rotation index being rotated from
+     */
+    public static Point[][] getClockwiseWallKicks(PieceType type) {
+        return CLOCKWISE_WALL_KICKS_BY_TYPE[type.ordinal()];
+    }
+
+    /**
+     * Retrieves the offsets to try, in order, when rotating a piece of the given type counterclockwise.
+     * @param type, the type of Tetris piece
+     * @return the wall kicks indexed by the rotation index being rotated from
+     */
+    public static Point[][] getCounterclockwiseWallKicks(PieceType type) {
+        return COUNTERCLOCKWISE_WALL_KICKS_BY_TYPE[type.ordinal()];
+    }
+
+    // Every piece type in its spawn orientation, with all four rotations linked, built once when the class loads.
+    // Pieces are immutable, so these are shared instead of rebuilding the rotations for every new piece.
+    private static final TetrisPiece[] SPAWN_PIECES = new TetrisPiece[PieceType.values().length];
+    static {
+        for (PieceType type : PieceType.values()) SPAWN_PIECES[type.ordinal()] = new TetrisPiece(type);
+    }
+
+    /**
+     * Retrieves the shared piece of the given type in its spawn orientation.
+     * @param type, the type of Tetris piece
+     * @return the spawn orientation of that piece type
+     */
+    public static TetrisPiece getPiece(PieceType type) {
+        return SPAWN_PIECES[type.ordinal()];
+    }
 
     /**
      * Construct a tetris piece of the given type. The piece should be in its spawn orientation,
@@ -64,8 +91,8 @@ public final class TetrisPiece implements Piece {
         this.type = type;
         rotationIndex = 0;
         body = type.getSpawnBody();
-        width = (int)type.getBoundingBox().getWidth();
-        height = (int)type.getBoundingBox().getHeight();
+        width = type.getBoundingBoxWidth();
+        height = type.getBoundingBoxHeight();
 
         if(width < 1 || height < 1 || body == null){
             System.err.println("Invalid piece attributes");
@@ -127,7 +154,7 @@ public final class TetrisPiece implements Piece {
      * Integer.MAX_VALUE (no block exists in that column) or the minimum y-value of the blocks in the column.
      */
     private void calculateSkirt() {
-        skirt = new int[(int) type.getBoundingBox().getWidth()]; //check if bounding box is acc an int
+        skirt = new int[type.getBoundingBoxWidth()];
         Arrays.fill(skirt, Integer.MAX_VALUE);
 
         for(Point p : this.body){
@@ -0,0 +1,397 @@
+package tetris;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records how fast one long headless game runs as it goes, to show whether a long game slows down and why.
+ * Every N pieces a sample is written with the window's pieces per second, the heap in use, the bytes allocated and
+ * the garbage collections, the brain's decision latency, and what the game looked like: the mean stack height and
+ * how often the brain used the hold, and the share of the window the game's thread was on the CPU. The analyzer
+ * then fits the trend of pieces per second over the game, correlates it with height, hold use, allocation and GC
+ * time, and flags the windows well below the game's median, naming which of those were unusually high in them, or
+ * that the thread was kept off the CPU by something else on the machine.
+ *
+ * The series file is plain text, a header comment and one sample per line:
+ *   # seed|game-over height|sample every
+ *   pieces|seconds|pieces/s|heap MB|alloc bytes/piece|GC count|GC ms|decision mean us|decision p99 us|mean height|hold share|CPU share
+ * Usage: ThroughputSeries record [--seed n] [--pieces n] [--every n] [--height h] [--out file] [weight file]
+ *        ThroughputSeries analyze [--threshold fraction] file
+ */
+public class ThroughputSeries {
+    public static final String DEFAULT_FILE = "throughput.txt";
+    // The first window runs while the brain is still being compiled, so it is left out of the median
+    private static final int WARM_UP_SAMPLES = 1;
+    // A factor is blamed for the slowdown when its correlation with pieces per second is at least this negative
+    private static final double CORRELATION = -0.5;
+
+    /**
+     * One window of the game
+     */
+    public static class Sample {
+        private int pieces;
+        private double seconds;
+        private double piecesPerSecond;
+        private double heapMegabytes;
+        private double bytesPerPiece;
+        private long gcCount;
+        private double gcMillis;
+        private double decisionMicros;
+        private double decisionP99Micros;
+        private double meanHeight;
+        private double holdShare;
+        private double cpuShare;
+
+        Sample(int pieces, double seconds, double piecesPerSecond, double heapMegabytes, double bytesPerPiece, long gcCount,
+               double gcMillis, double decisionMicros, double decisionP99Micros, double meanHeight, double holdShare,
+               double cpuShare) {
+            this.pieces = pieces;
+            this.seconds = seconds;
+            this.piecesPerSecond = piecesPerSecond;
+            this.heapMegabytes = heapMegabytes;
+            this.bytesPerPiece = bytesPerPiece;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.decisionMicros = decisionMicros;
+            this.decisionP99Micros = decisionP99Micros;
+            this.meanHeight = meanHeight;
+            this.holdShare = holdShare;
+            this.cpuShare = cpuShare;
+        }
+
+        static Sample parse(String line) {
+            String[] f = line.split("\\|");
+            return new Sample(Integer.parseInt(f[0]), Double.parseDouble(f[1]), Double.parseDouble(f[2]), Double.parseDouble(f[3]),
+                    Double.parseDouble(f[4]), Long.parseLong(f[5]), Double.parseDouble(f[6]), Double.parseDouble(f[7]),
+                    Double.parseDouble(f[8]), Double.parseDouble(f[9]), Double.parseDouble(f[10]), Double.parseDouble(f[11]));
+        }
+
+        String format() {
+            return String.format(Locale.ROOT, "%d|%.3f|%.1f|%.1f|%.0f|%d|%.1f|%.2f|%.2f|%.2f|%.4f|%.3f", pieces, seconds, piecesPerSecond,
+                    heapMegabytes, bytesPerPiece, gcCount, gcMillis, decisionMicros, decisionP99Micros, meanHeight, holdShare, cpuShare);
+        }
+
+        public int getPieces() { return pieces; }
+
+        public double getSeconds() { return seconds; }
+
+        public double getPiecesPerSecond() { return piecesPerSecond; }
+
+        public double getHeapMegabytes() { return heapMegabytes; }
+
+        public double getBytesPerPiece() { return bytesPerPiece; }
+
+        public long getGcCount() { return gcCount; }
+
+        public double getGcMillis() { return gcMillis; }
+
+        public double getDecisionMicros() { return decisionMicros; }
+
+        public double getDecisionP99Micros() { return decisionP99Micros; }
+
+        public double getMeanHeight() { return meanHeight; }
+
+        public double getHoldShare() { return holdShare; }
+
+        public double getCpuShare() { return cpuShare; }
+    }
+
+    /**
+     * Plays one game on a seed, writing a sample every so many pieces until the game ends or reaches the cap
+     * @param weights, the weights of the brain playing
+     * @param seed, the seed of the game
+     * @param boardPercentage, the fraction of the board height the stack may reach before the game is over
+     * @param pieces, the most pieces to place
+     * @param every, the pieces in one window
+     * @param out, where the samples are written, flushed after each one so a killed run keeps what it had
+     * @return the samples
+     */
+    public static List<Sample> record(double[] weights, long seed, double boardPercentage, int pieces, int every, PrintWriter out) {
+        // Times every call of nextMove; a piece's decision is the search plus the queued moves it replays
+        long[] decision = new long[1];
+        int[] holds = new int[1];
+        TetrisBrain brain = new TetrisBrain(weights) {
+            @Override
+            public Board.Action nextMove(Board board) {
+                long start = System.nanoTime();
+                Board.Action action = super.nextMove(board);
+                decision[0] += System.nanoTime() - start;
+                if (action == Board.Action.HOLD) holds[0]++;
+                return action;
+            }
+        };
+        HeadlessTetris tetris = new HeadlessTetris(brain, seed, boardPercentage);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported() ? (com.sun.management.ThreadMXBean)threads : null;
+        boolean cpuTime = threads.isCurrentThreadCpuTimeSupported();
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+        if (out != null) {
+            out.println("# " + seed + "|" + boardPercentage + "|" + every);
+            out.flush();
+        }
+        List<Sample> samples = new ArrayList<>();
+        LogHistogram window = new LogHistogram();
+        double heights = 0;
+        long start = System.nanoTime(), last = start;
+        long allocated = allocation == null ? 0 : allocation.getCurrentThreadAllocatedBytes();
+        long[] gc = collected(collectors);
+        long cpu = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+        int holdsBefore = 0, placed = 0;
+
+        tetris.startGame();
+        while (tetris.isGameOn() && placed < pieces) {
+            tetris.playPiece();
+            placed = tetris.getPiecesPlaced();
+            window.record(decision[0]);
+            decision[0] = 0;
+            heights += tetris.getBoard().getMaxHeight();
+            if (placed % every != 0 && tetris.isGameOn() && placed < pieces) continue;
+
+            long now = System.nanoTime();
+            long allocatedNow = allocation == null ? 0 : allocation.getCurrentThreadAllocatedBytes();
+            long[] gcNow = collected(collectors);
+            long cpuNow = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+            long count = window.getCount();
+            Sample sample = new Sample(placed, (now - start) / 1e9, count * 1e9 / Math.max(1, now - last),
+                    memory.getHeapMemoryUsage().getUsed() / 1048576.0, (double)(allocatedNow - allocated) / count, gcNow[0] - gc[0],
+                    gcNow[1] - gc[1], window.getMean() / 1000, window.getPercentile(99) / 1000, heights / count,
+                    (double)(holds[0] - holdsBefore) / count, cpuTime ? (double)(cpuNow - cpu) / Math.max(1, now - last) : 1);
+            samples.add(sample);
+            if (out != null) {
+                out.println(sample.format());
+                out.flush();
+            }
+            window = new LogHistogram();
+            heights = 0;
+            last = System.nanoTime();
+            allocated = allocation == null ? 0 : allocation.getCurrentThreadAllocatedBytes();
+            gc = gcNow;
+            cpu = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+            holdsBefore = holds[0];
+        }
+        return samples;
+    }
+
+    // Collections and milliseconds collecting so far, over every collector
+    private static long[] collected(List<GarbageCollectorMXBean> collectors) {
+        long[] total = new long[2];
+        for (GarbageCollectorMXBean collector : collectors) {
+            total[0] += Math.max(0, collector.getCollectionCount());
+            total[1] += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Reads a series file
+     * @param fileName, the file record wrote
+     * @return its samples
+     * @throws IOException if the file cannot be read
+     */
+    public static List<Sample> read(String fileName) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) samples.add(Sample.parse(line));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * What the analyzer found in a series
+     */
+    public static class Analysis {
+        private double medianPiecesPerSecond;
+        private double trendPerTenThousand;
+        private String[] factors = {"mean height", "hold share", "alloc bytes/piece", "GC ms"};
+        private double[] correlations = new double[factors.length];
+        private List<Sample> slow = new ArrayList<>();
+        private List<String> causes = new ArrayList<>();
+
+        public double getMedianPiecesPerSecond() { return medianPiecesPerSecond; }
+
+        /**
+         * Retrieves the fitted change in pieces per second over 10000 pieces, as a fraction of the median
+         * @return the trend; negative when the game slows down
+         */
+        public double getTrendPerTenThousand() { return trendPerTenThousand; }
+
+        /**
+         * Retrieves the correlation of each factor with pieces per second, in the order of getFactors
+         * @return the correlations
+         */
+        public double[] getCorrelations() { return correlations.clone(); }
+
+        public String[] getFactors() { return factors.clone(); }
+
+        /**
+         * Retrieves the windows that ran well below the median
+         * @return the slow windows
+         */
+        public List<Sample> getSlowWindows() { return slow; }
+
+        /**
+         * Retrieves, for each slow window, the factors that were unusually high in it, and "off CPU" when the game's
+         * thread ran for a smaller share of the window than usual
+         * @return the causes, comma separated, or "unexplained"
+         */
+        public List<String> getCauses() { return causes; }
+
+        /**
+         * Lays the analysis out as a report
+         * @return the report
+         */
+        public String report() {
+            StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "median %.0f pieces/s, trend %+.1f%% per 10000 pieces%n",
+                    medianPiecesPerSecond, 100 * trendPerTenThousand));
+            for (int f = 0; f < factors.length; f++) {
+                report.append(String.format(Locale.ROOT, "  correlation with %-18s %+.2f%s%n", factors[f] + ":", correlations[f],
+                        correlations[f] <= CORRELATION ? "  <- slows the game" : ""));
+            }
+            report.append(slow.size()).append(" slow windows").append(slow.isEmpty() ? "" : ":").append(String.format("%n"));
+            for (int i = 0; i < slow.size(); i++) {
+                Sample s = slow.get(i);
+                report.append(String.format(Locale.ROOT, "  at %7d pieces: %6.0f pieces/s (%.0f%%), height %.1f, hold %.2f, %.0f B/piece, "
+                        + "%d GCs %.0f ms, CPU %.2f -> %s%n", s.pieces, s.piecesPerSecond, 100 * s.piecesPerSecond / medianPiecesPerSecond,
+                        s.meanHeight, s.holdShare, s.bytesPerPiece, s.gcCount, s.gcMillis, s.cpuShare, causes.get(i)));
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * Fits the trend of a series, correlates its throughput with what may explain it, and flags its slow windows
+     * @param samples, the samples of one game
+     * @param threshold, how far below the median pieces per second a window must be to be flagged, as a fraction
+     * @return the analysis
+     */
+    public static Analysis analyze(List<Sample> samples, double threshold) {
+        Analysis analysis = new Analysis();
+        List<Sample> steady = samples.size() > WARM_UP_SAMPLES ? samples.subList(WARM_UP_SAMPLES, samples.size()) : samples;
+        if (steady.isEmpty()) return analysis;
+
+        int n = steady.size();
+        double[] pps = new double[n], pieces = new double[n];
+        double[][] factors = new double[analysis.factors.length][n];
+        for (int i = 0; i < n; i++) {
+            Sample s = steady.get(i);
+            pps[i] = s.piecesPerSecond;
+            pieces[i] = s.pieces;
+            factors[0][i] = s.meanHeight;
+            factors[1][i] = s.holdShare;
+            factors[2][i] = s.bytesPerPiece;
+            factors[3][i] = s.gcMillis;
+        }
+        analysis.medianPiecesPerSecond = median(pps);
+        analysis.trendPerTenThousand = slope(pieces, pps) * 10000 / analysis.medianPiecesPerSecond;
+        // Too few windows to say what goes with what, but a slow one is still worth flagging
+        double[] medians = new double[factors.length], spreads = new double[factors.length];
+        for (int f = 0; f < factors.length; f++) {
+            analysis.correlations[f] = n < 3 ? 0 : correlation(factors[f], pps);
+            medians[f] = median(factors[f]);
+            double[] deviations = new double[n];
+            for (int i = 0; i < n; i++) deviations[i] = Math.abs(factors[f][i] - medians[f]);
+            spreads[f] = median(deviations);
+        }
+
+        double[] cpu = steady.stream().mapToDouble(Sample::getCpuShare).toArray();
+        double cpuMedian = median(cpu);
+
+        // A factor explains a slow window when it is further above its median than most windows are
+        for (int i = 0; i < n; i++) {
+            if (pps[i] >= (1 - threshold) * analysis.medianPiecesPerSecond) continue;
+            List<String> causes = new ArrayList<>();
+            for (int f = 0; f < factors.length; f++) {
+                if (factors[f][i] > medians[f] + 3 * Math.max(spreads[f], 1e-9)) causes.add(analysis.factors[f]);
+            }
+            // Time the thread spent waiting for the CPU is the machine's doing, not the game's
+            if (cpu[i] < cpuMedian - 0.1) causes.add("off CPU");
+            analysis.slow.add(steady.get(i));
+            analysis.causes.add(causes.isEmpty() ? "unexplained" : String.join(", ", causes));
+        }
+        return analysis;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        return n == 0 ? 0 : n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    // The least-squares slope of y over x
+    private static double slope(double[] x, double[] y) {
+        double mx = Arrays.stream(x).average().orElse(0), my = Arrays.stream(y).average().orElse(0);
+        double sxy = 0, sxx = 0;
+        for (int i = 0; i < x.length; i++) {
+            sxy += (x[i] - mx) * (y[i] - my);
+            sxx += (x[i] - mx) * (x[i] - mx);
+        }
+        return sxx == 0 ? 0 : sxy / sxx;
+    }
+
+    private static double correlation(double[] x, double[] y) {
+        double mx = Arrays.stream(x).average().orElse(0), my = Arrays.stream(y).average().orElse(0);
+        double sxy = 0, sxx = 0, syy = 0;
+        for (int i = 0; i < x.length; i++) {
+            sxy += (x[i] - mx) * (y[i] - my);
+            sxx += (x[i] - mx) * (x[i] - mx);
+            syy += (y[i] - my) * (y[i] - my);
+        }
+        return sxx == 0 || syy == 0 ? 0 : sxy / Math.sqrt(sxx * syy);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("analyze")) {
+            double threshold = 0.2;
+            String file = DEFAULT_FILE;
+            for (int a = 1; a < args.length; a++) {
+                if (args[a].equals("--threshold")) threshold = Double.parseDouble(args[++a]);
+                else file = args[a];
+            }
+            System.out.print(analyze(read(file), threshold).report());
+            return;
+        }
+
+        long seed = 1;
+        int pieces = 100000, every = 1000;
+        double height = JTetrisBrainTrainer.BOARD_PERCENTAGE;
+        String out = DEFAULT_FILE, weightFile = null;
+        for (int a = args.length > 0 && args[0].equals("record") ? 1 : 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--seed": seed = Long.parseLong(args[++a]); break;
+                case "--pieces": pieces = Integer.parseInt(args[++a]); break;
+                case "--every": every = Integer.parseInt(args[++a]); break;
+                case "--height": height = Double.parseDouble(args[++a]); break;
+                case "--out": out = args[++a]; break;
+                default: weightFile = args[a];
+            }
+        }
+        double[] weights = weightFile != null ? JTetrisBrainHallOfFame.readWeights(weightFile, 1).get(0)
+                : new TetrisBrain().getPopulation()[0].getWeights();
+
+        List<Sample> samples;
+        try (PrintWriter writer = new PrintWriter(new FileWriter(out))) {
+            samples = record(weights, seed, height, pieces, every, writer);
+        }
+        System.out.printf("%d samples written to %s%n", samples.size(), out);
+        System.out.print(analyze(samples, 0.2).report());
+    }
+}
@@ -0,0 +1,75 @@
+package tetris;
+
+/**
+ * Running statistics of an individual's per-game rows cleared (and final-board fitness) over every game it has played.
+ */
+public class TrialStats {
+    private int trials;
+    private double rowsSum;
+    private double rowsSquaredSum;
+    private double fitnessSum;
+
+    /**
+     * Adds one game to the statistics
+     * @param result, the outcome of the game
+     */
+    public void add(GameResult result) {
+        trials++;
+        rowsSum += result.getRowsCleared();
+        rowsSquaredSum += (double)result.getRowsCleared() * result.getRowsCleared();
+        fitnessSum += result.getFitness();
+    }
+
+    /**
+     * Adds every game recorded in another set of statistics to this one
+     * @param other, the statistics to merge in
+     */
+    public void merge(TrialStats other) {
+        trials += other.trials;
+        rowsSum += other.rowsSum;
+        rowsSquaredSum += other.rowsSquaredSum;
+        fitnessSum += other.fitnessSum;
+    }
+
+    /**
+     * Retrieves the number of games recorded
+     * @return the number of games
+     */
+    public int getTrials() { return trials; }
+
+    /**
+     * Retrieves the mean rows cleared per game, which the trainer uses as the score
+     * @return the mean rows cleared, or 0 if no games were recorded
+     */
+    public double getMean() {
+        return trials == 0 ? 0 : rowsSum / trials;
+    }
+
+    /**
+     * Retrieves the mean final-board fitness per game
+     * @return the mean fitness, or 0 if no games were recorded
+     */
+    public double getFitness() {
+        return trials == 0 ? 0 : fitnessSum / trials;
+    }
+
+    /**
+     * Retrieves the sample variance of the rows cleared per game
+     * @return the sample variance, or infinity with fewer than two games
+     */
+    public double getVariance() {
+        if (trials < 2) return Double.POSITIVE_INFINITY;
+        double mean = getMean();
+        return Math.max(0, (rowsSquaredSum - trials * mean * mean) / (trials - 1));
+    }
+
+    /**
+     * Retrieves the half width of the confidence interval around the mean
+     * @param z, the number of standard errors the interval spans on each side
+     * @return the half width, or infinity with fewer than two games
+     */
+    public double getHalfWidth(double z) {
+        if (trials < 2) return Double.POSITIVE_INFINITY;
+        return z * Math.sqrt(getVariance() / trials);
+    }
+}
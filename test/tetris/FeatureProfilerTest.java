@@ -0,0 +1,44 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class FeatureProfilerTest {
+    @Test
+    void testFeaturesMatchGetBoardInfo() {
+        TetrisBrain brain = new TetrisBrain();
+        double[] weights = brain.getPopulation()[0].getWeights();
+        FeatureProfiler profiler = new FeatureProfiler(10000);
+        profiler.register("open cells", board -> board.getWidth() * board.getMaxHeight());
+
+        int checked = 0;
+        for (long seed = 1; seed <= 3; seed++) {
+            // A weak brain builds ragged stacks with holes, pillars and transitions to compare on
+            HeadlessTetris tetris = new HeadlessTetris(new double[]{0, 0, -1, 0, -0.1, 1, 0, -0.5, 0}, seed, 0.75);
+            tetris.startGame();
+            while (tetris.playPiece()) {
+                TetrisBoard board = tetris.getBoard();
+                double[] info = brain.getBoardInfo(board);
+                for (int f = 0; f < info.length; f++) assertEquals(info[f], FeatureProfiler.feature(f).evaluate(board), 1e-9, "feature " + f);
+                for (int i = 0; i < 64 * 4; i++) profiler.observe(board);
+                checked++;
+            }
+        }
+        assertTrue(checked > 50);
+        assertEquals(checked * 64L * 4, profiler.getCalls());
+        assertTrue(profiler.getSampleSize() > 0);
+
+        List<FeatureProfiler.Cost> costs = profiler.profile(weights);
+        assertEquals(11, costs.size());
+        assertEquals("getBoardInfo (all nine, fused)", costs.get(10).getName());
+        for (int i = 1; i < 10; i++) assertTrue(costs.get(i - 1).getNanos() >= costs.get(i).getNanos());
+        FeatureProfiler.Cost holes = costs.stream().filter(c -> c.getName().equals("holes")).findFirst().get();
+        assertEquals(weights[2], holes.getWeight());
+        assertTrue(holes.getCells() > 0);
+        assertEquals(12, FeatureProfiler.table(costs).split("\n").length);
+    }
+}
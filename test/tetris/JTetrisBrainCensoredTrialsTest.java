@@ -0,0 +1,37 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainCensoredTrialsTest {
+    @Test
+    void testUncensoredEstimateIsMeanRows(){
+        GameResult[] games = new GameResult[]{new GameResult(1, 40, 100, 0), new GameResult(2, 80, 200, 0)};
+        assertEquals(60, JTetrisBrainCensoredTrials.expectedRows(games, 1000), 1e-9);
+    }
+
+    @Test
+    void testSurvivorsOutrankPlayersWhoToppedOut(){
+        GameResult[] survivor = new GameResult[]{new GameResult(1, 400, 1000, 0), new GameResult(2, 400, 1000, 0)};
+        GameResult[] oneLoss = new GameResult[]{new GameResult(1, 396, 990, 0), new GameResult(2, 400, 1000, 0)};
+        GameResult[] twoLosses = new GameResult[]{new GameResult(1, 396, 990, 0), new GameResult(2, 392, 980, 0)};
+
+        double best = JTetrisBrainCensoredTrials.expectedRows(survivor, 1000);
+        double middle = JTetrisBrainCensoredTrials.expectedRows(oneLoss, 1000);
+        double worst = JTetrisBrainCensoredTrials.expectedRows(twoLosses, 1000);
+        assertTrue(best > middle);
+        assertTrue(middle > worst);
+        assertTrue(middle > 400);
+    }
+
+    @Test
+    void testGamesStopAtBudget(){
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[]{new JTetrisBrainIndividual(new double[]{-3.079854632964414, -7.449884706642696, -16.62165886851931, -2.1674633428837424, -0.5474455153196136, -1.1402069503570305, -4.7857142119386635, -0.36342677092258685, -7.136217177275804})};
+        JTetrisBrainCensoredTrials.Report report = new JTetrisBrainCensoredTrials(50, 0.75).evaluate(pop, new long[]{1, 2}, null);
+
+        assertEquals(2, report.getCensored());
+        assertEquals(50, report.getMaxPiecesPlaced());
+    }
+}
@@ -0,0 +1,97 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JTetrisBrainCheckpointTest {
+    @TempDir
+    Path dir;
+
+    private JTetrisBrainIndividual[] population(int size){
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[size];
+        for(int i = 0; i < size; i++){
+            pop[i] = new JTetrisBrainIndividual();
+            pop[i].setScore(i);
+        }
+        return pop;
+    }
+
+    @Test
+    void testResumeMidGeneration() throws IOException {
+        String file = dir.resolve("run.ckpt").toString();
+        JTetrisBrainIndividual[] first = population(4);
+        JTetrisBrainIndividual[] second = population(4);
+
+        try(JTetrisBrainCheckpoint checkpoint = new JTetrisBrainCheckpoint(file, JTetrisBrainTrainer.WEIGHT_COUNT)){
+            checkpoint.startGeneration(0, first, new long[]{5, 6});
+            checkpoint.recordGame(0, 0, 0, new GameResult(5, 10, 30, -1.5));
+            checkpoint.endGeneration(0, first);
+            checkpoint.startGeneration(1, second, new long[]{5, 6});
+            checkpoint.recordGame(1, 2, 1, new GameResult(6, 7, 21, -2.5));
+        }
+
+        try(JTetrisBrainCheckpoint checkpoint = new JTetrisBrainCheckpoint(file, JTetrisBrainTrainer.WEIGHT_COUNT)){
+            JTetrisBrainCheckpoint.Generation resumed = checkpoint.resume();
+            assertEquals(1, resumed.getNumber());
+            assertTrue(resumed.isStarted());
+            assertArrayEquals(new long[]{5, 6}, resumed.getSeeds());
+            assertArrayEquals(second[3].getWeights(), resumed.getPopulation()[3].getWeights());
+            assertEquals(7, resumed.getCompleted(2, 1).getRowsCleared());
+            assertNull(resumed.getCompleted(0, 0));
+            assertNull(resumed.getSorted());
+
+            JTetrisBrainCheckpoint.Generation history = checkpoint.loadGeneration(0);
+            assertEquals(10, history.getCompleted(0, 0).getRowsCleared());
+            assertEquals(3, history.getSorted()[3].getScore(), 0.0001);
+        }
+    }
+
+    @Test
+    void testTornRecordIsDropped() throws IOException {
+        String file = dir.resolve("torn.ckpt").toString();
+        try(JTetrisBrainCheckpoint checkpoint = new JTetrisBrainCheckpoint(file, JTetrisBrainTrainer.WEIGHT_COUNT)){
+            checkpoint.startGeneration(0, population(3), new long[]{1});
+            checkpoint.recordGame(0, 1, 0, new GameResult(1, 4, 12, 0));
+        }
+        long intact = new File(file).length();
+        try(FileOutputStream out = new FileOutputStream(file, true)){
+            out.write(new byte[]{2, 0, 0, 0, 36, 1, 2, 3});
+        }
+        new File(file + ".idx").delete();
+
+        try(JTetrisBrainCheckpoint checkpoint = new JTetrisBrainCheckpoint(file, JTetrisBrainTrainer.WEIGHT_COUNT)){
+            assertEquals(intact, new File(file).length());
+            assertEquals(0, checkpoint.getLastGeneration());
+            assertNotNull(checkpoint.resume().getCompleted(1, 0));
+        }
+    }
+
+    @Test
+    void testEndedGenerationResumesSortedForBreeding() throws IOException {
+        String file = dir.resolve("ended.ckpt").toString();
+        JTetrisBrainIndividual[] pop = population(2);
+        try(JTetrisBrainCheckpoint checkpoint = new JTetrisBrainCheckpoint(file, JTetrisBrainTrainer.WEIGHT_COUNT)){
+            checkpoint.startGeneration(3, pop, new long[]{9});
+            assertFalse(checkpoint.resume().isEnded());
+            checkpoint.endGeneration(3, pop);
+
+            JTetrisBrainCheckpoint.Generation resumed = checkpoint.resume();
+            assertEquals(3, resumed.getNumber());
+            assertTrue(resumed.isEnded());
+            assertArrayEquals(pop[1].getWeights(), resumed.getSorted()[1].getWeights());
+            assertEquals(pop[1].getScore(), resumed.getSorted()[1].getScore(), 0.0001);
+        }
+    }
+}
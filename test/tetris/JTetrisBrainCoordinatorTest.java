@@ -0,0 +1,199 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainCoordinatorTest {
+    private JTetrisBrainIndividual[] population(int size){
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[size];
+        for(int i = 0; i < size; i++) pop[i] = new JTetrisBrainIndividual();
+        return pop;
+    }
+
+    private Thread startWorker(int port){
+        Thread worker = new Thread(new JTetrisBrainWorker("localhost", port, 1000));
+        worker.setDaemon(true);
+        worker.start();
+        return worker;
+    }
+
+    @Test
+    void testWorkersMatchLocalGames() throws Exception {
+        JTetrisBrainIndividual[] pop = population(5);
+        long[] seeds = new long[]{8, 9};
+        try(JTetrisBrainCoordinator coordinator = new JTetrisBrainCoordinator("localhost", 0, 5000)){
+            startWorker(coordinator.getPort());
+            startWorker(coordinator.getPort());
+            JTetrisBrainCoordinator.Report report = coordinator.evaluate(pop, seeds, null, 0.3);
+            assertEquals(10, report.getGames());
+        }
+
+        for(JTetrisBrainIndividual ind : pop){
+            TrialStats stats = new TrialStats();
+            for(long seed : seeds){
+                HeadlessTetris game = new HeadlessTetris(ind.getWeights(), seed, 0.3);
+                game.startGame();
+                stats.add(game.playToEnd());
+            }
+            assertEquals(stats.getMean(), ind.getScore(), 1e-9);
+        }
+    }
+
+    @Test
+    void testDeadWorkersGamesAreReassigned() throws Exception {
+        try(JTetrisBrainCoordinator coordinator = new JTetrisBrainCoordinator("localhost", 0, 300)){
+            // One worker takes a game and disconnects, another takes a game and never answers
+            Socket crashed = new Socket("localhost", coordinator.getPort());
+            Socket hung = new Socket("localhost", coordinator.getPort());
+            Thread fakes = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        takeTask(crashed);
+                        takeTask(hung);
+                        crashed.close();
+                    }
+                    catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            fakes.start();
+
+            JTetrisBrainIndividual[] pop = population(3);
+            Thread late = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        fakes.join();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    startWorker(coordinator.getPort());
+                }
+            });
+            late.start();
+            JTetrisBrainCoordinator.Report report = coordinator.evaluate(pop, new long[]{1}, null, 0.3);
+
+            assertEquals(3, report.getGames());
+            assertEquals(1, report.getReassigned());
+            assertTrue(report.getExpired() >= 1);
+            hung.close();
+        }
+    }
+
+    @Test
+    void testLateAnswerFromExpiredLeaseIsKept() throws Exception {
+        JTetrisBrainIndividual[] pop = population(1);
+        HeadlessTetris local = new HeadlessTetris(pop[0].getWeights(), 1, 0.3);
+        local.startGame();
+        GameResult expected = local.playToEnd();
+
+        try(JTetrisBrainCoordinator coordinator = new JTetrisBrainCoordinator("localhost", 0, 300)){
+            // The first worker's lease runs out and the game goes to the second, then the first answers anyway
+            Socket late = new Socket("localhost", coordinator.getPort());
+            Socket next = new Socket("localhost", coordinator.getPort());
+            Thread fakes = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        long id = takeTask(late);
+                        takeTask(next);
+                        sendResult(late, id, expected);
+                        late.close();
+                    }
+                    catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            fakes.start();
+            JTetrisBrainCoordinator.Report report = coordinator.evaluate(pop, new long[]{1}, null, 0.3);
+
+            assertEquals(1, report.getGames());
+            assertEquals(1, report.getExpired());
+            assertEquals(0, report.getReassigned());
+            assertEquals(expected.getRowsCleared(), pop[0].getScore(), 1e-9);
+
+            // Neither worker holds a lease any more, so the next generation is played once by a real worker
+            next.close();
+            startWorker(coordinator.getPort());
+            JTetrisBrainCoordinator.Report second = coordinator.evaluate(population(2), new long[]{1}, null, 0.3);
+            assertEquals(2, second.getGames());
+            assertEquals(0, second.getReassigned());
+        }
+    }
+
+    @Test
+    void testExpiredWorkerDoesNotGiveBackTheNextLease() throws Exception {
+        JTetrisBrainIndividual[] pop = population(1);
+        HeadlessTetris local = new HeadlessTetris(pop[0].getWeights(), 1, 0.3);
+        local.startGame();
+        GameResult expected = local.playToEnd();
+
+        try(JTetrisBrainCoordinator coordinator = new JTetrisBrainCoordinator("localhost", 0, 300)){
+            // The first worker's lease runs out and it disconnects while the second worker plays the game
+            Socket expired = new Socket("localhost", coordinator.getPort());
+            Socket next = new Socket("localhost", coordinator.getPort());
+            Thread fakes = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        takeTask(expired);
+                        long id = takeTask(next);
+                        expired.close();
+                        Thread.sleep(200);
+                        sendResult(next, id, expected);
+                    }
+                    catch (IOException | InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            fakes.start();
+            JTetrisBrainCoordinator.Report report = coordinator.evaluate(pop, new long[]{1}, null, 0.3);
+
+            assertEquals(1, report.getGames());
+            assertEquals(1, report.getExpired());
+            assertEquals(0, report.getReassigned());
+            next.close();
+        }
+    }
+
+    private static void sendResult(Socket socket, long id, GameResult result) throws IOException {
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeByte(JTetrisBrainCoordinator.RESULT);
+        out.writeLong(id);
+        out.writeLong(result.getSeed());
+        out.writeInt(result.getRowsCleared());
+        out.writeInt(result.getPiecesPlaced());
+        out.writeDouble(result.getFitness());
+        out.flush();
+    }
+
+    private static long takeTask(Socket socket) throws IOException {
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        out.writeInt(JTetrisBrainCoordinator.MAGIC);
+        out.writeByte(JTetrisBrainCoordinator.REQUEST);
+        out.flush();
+        while(in.readByte() != JTetrisBrainCoordinator.TASK){
+            out.writeByte(JTetrisBrainCoordinator.REQUEST);
+            out.flush();
+        }
+        long id = in.readLong();
+        in.readDouble();
+        in.readLong();
+        int weights = in.readInt();
+        for(int i = 0; i < weights; i++) in.readDouble();
+        return id;
+    }
+}
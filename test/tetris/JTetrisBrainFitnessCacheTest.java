@@ -0,0 +1,54 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainFitnessCacheTest {
+    private static final double[] WEIGHTS = new double[]{-3.079854632964414, -7.449884706642696, -16.62165886851931, -2.1674633428837424, -0.5474455153196136, -1.1402069503570305, -4.7857142119386635, -0.36342677092258685, -7.136217177275804};
+
+    @Test
+    void testRoundingOnlyDropsNoise(){
+        double[] noisy = WEIGHTS.clone();
+        noisy[0] = Math.nextUp(noisy[0]);
+        double[] zeros = new double[]{-0.0, 0.0};
+
+        assertArrayEquals(JTetrisBrainFitnessCache.round(WEIGHTS), JTetrisBrainFitnessCache.round(noisy));
+        assertArrayEquals(new double[]{0.0, 0.0}, JTetrisBrainFitnessCache.round(zeros));
+        assertEquals(0, Double.compare(0.0, JTetrisBrainFitnessCache.round(zeros)[0]));
+    }
+
+    @Test
+    void testScaledCopyIsADifferentBrain(){
+        JTetrisBrainFitnessCache cache = new JTetrisBrainFitnessCache(10);
+        double[] doubled = new double[WEIGHTS.length];
+        for(int i = 0; i < WEIGHTS.length; i++) doubled[i] = WEIGHTS[i] * 2;
+
+        GenerationStats first = new GenerationStats();
+        cache.evaluate(WEIGHTS, new long[]{1, 2}, 0.3, first);
+        GenerationStats second = new GenerationStats();
+        cache.evaluate(doubled, new long[]{1, 2}, 0.3, second);
+        GenerationStats third = new GenerationStats();
+        cache.evaluate(WEIGHTS.clone(), new long[]{1, 2}, 0.3, third);
+
+        assertEquals(2, first.getGames());
+        assertEquals(2, second.getGames());
+        assertEquals(0, third.getGames());
+        assertEquals(2, third.getCachedGames());
+    }
+
+    @Test
+    void testNewSeedsMergeIntoStoredStats(){
+        JTetrisBrainFitnessCache cache = new JTetrisBrainFitnessCache(10);
+        cache.evaluate(WEIGHTS, new long[]{1, 2}, 0.3, new GenerationStats());
+
+        GenerationStats stats = new GenerationStats();
+        TrialStats merged = cache.evaluate(WEIGHTS, new long[]{2, 3}, 0.3, stats);
+
+        assertEquals(1, stats.getGames());
+        assertEquals(3, merged.getTrials());
+        assertNull(cache.lookup(WEIGHTS, 0.5, new long[]{1})[0]);
+    }
+}
@@ -0,0 +1,45 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainHallOfFameTest {
+    @Test
+    void testOnlyMissingGamesArePlayed() throws IOException, InterruptedException {
+        File store = File.createTempFile("hall", ".txt");
+        store.delete();
+        store.deleteOnExit();
+
+        JTetrisBrainHallOfFame hallOfFame = new JTetrisBrainHallOfFame(store.getPath());
+        double[] good = new TetrisBrain().getPopulation()[0].getWeights();
+        double[] bad = new double[]{1, 1, 1, 1, 1, 1, 1, 1, 1};
+        hallOfFame.add("good", good);
+        hallOfFame.add("bad", bad);
+        assertEquals("good", hallOfFame.add("again", good).getName());
+
+        JTetrisBrainHallOfFame.Suite two = JTetrisBrainHallOfFame.Suite.version(1, 2, 0.3, 300);
+        assertEquals(4, hallOfFame.score(two, 2).getGames());
+
+        // Reopened from the file, the suite needs nothing and a grown suite needs one game per entry
+        JTetrisBrainHallOfFame reopened = new JTetrisBrainHallOfFame(store.getPath());
+        assertEquals(2, reopened.getEntries().size());
+        JTetrisBrainHallOfFame.Report again = reopened.score(two, 2);
+        assertEquals(0, again.getGames());
+        assertEquals(4, again.getCachedGames());
+
+        JTetrisBrainHallOfFame.Suite three = JTetrisBrainHallOfFame.Suite.version(1, 3, 0.3, 300);
+        assertEquals(two.getSeeds()[1], three.getSeeds()[1]);
+        assertEquals(2, reopened.score(three, 2).getGames());
+
+        List<JTetrisBrainHallOfFame.Standing> standings = reopened.leaderboard(three);
+        assertEquals("good", standings.get(0).getEntry().getName());
+        assertTrue(standings.get(0).isComplete());
+        assertTrue(standings.get(0).getMean() > standings.get(1).getMean());
+    }
+}
@@ -0,0 +1,45 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainIslandsTest {
+    private JTetrisBrainIndividual[] population(int size){
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[size];
+        for(int i = 0; i < size; i++) pop[i] = new JTetrisBrainIndividual();
+        return pop;
+    }
+
+    @Test
+    void testIslandsReachGenerationLimit() throws InterruptedException {
+        JTetrisBrainIslands islands = new JTetrisBrainIslands(population(8), 2, 1, 1, JTetrisBrainIslands.Topology.FULL, 1, 0.3);
+        JTetrisBrainIslands.Report report = islands.run(60000, 2, null, 60000);
+
+        assertArrayEquals(new int[]{2, 2}, report.generations);
+        assertEquals(16, report.getGames());
+
+        JTetrisBrainIndividual[] merged = islands.merged();
+        assertEquals(8, merged.length);
+        for(int i = 1; i < merged.length; i++) assertTrue(merged[i - 1].getScore() >= merged[i].getScore());
+    }
+
+    @Test
+    void testStartingPopulationIsCopied() throws InterruptedException {
+        JTetrisBrainIndividual[] pop = population(6);
+        double[] before = pop[0].getWeights().clone();
+        new JTetrisBrainIslands(pop, 3, 1, 1, JTetrisBrainIslands.Topology.RANDOM, 1, 0.3).run(60000, 3, null, 60000);
+
+        assertArrayEquals(before, pop[0].getWeights());
+    }
+
+    @Test
+    void testIslandCountKeepsMinimumIslandSize() {
+        assertEquals(5, JTetrisBrainIslands.islandCount(100, 20));
+        assertEquals(4, JTetrisBrainIslands.islandCount(99, 20));
+        assertEquals(1, JTetrisBrainIslands.islandCount(10, 20));
+        assertEquals(1, JTetrisBrainIslands.islandCount(0, 20));
+    }
+}
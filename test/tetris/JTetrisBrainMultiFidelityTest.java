@@ -0,0 +1,51 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainMultiFidelityTest {
+    @Test
+    void testPromotedIndividualsRankFirst(){
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[8];
+        for(int i = 0; i < pop.length; i++) pop[i] = new JTetrisBrainIndividual();
+
+        JTetrisBrainMultiFidelity multiFidelity = new JTetrisBrainMultiFidelity(0.2, 50, 0.25, 3, 0, 0.3, true);
+        JTetrisBrainMultiFidelity.Report report = multiFidelity.evaluate(pop, new long[]{1, 2}, null);
+
+        assertEquals(3, report.getPromoted());
+        assertEquals(6, report.getGames());
+        double lowestPromoted = Double.POSITIVE_INFINITY, highestOther = Double.NEGATIVE_INFINITY;
+        for(JTetrisBrainIndividual ind : pop){
+            if(!ind.isEstimated()) lowestPromoted = Math.min(lowestPromoted, ind.getScore());
+            else highestOther = Math.max(highestOther, ind.getScore());
+        }
+        assertTrue(highestOther < lowestPromoted);
+    }
+
+    @Test
+    void testScreenedOutIndividualsNeverTie(){
+        // Every brain is the same, so every screening and full score ties unless the ranking breaks it
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[6];
+        for(int i = 0; i < pop.length; i++) pop[i] = new JTetrisBrainIndividual(new double[JTetrisBrainTrainer.WEIGHT_COUNT]);
+
+        new JTetrisBrainMultiFidelity(0.2, 50, 0.5, 1, 0, 0.3, false).evaluate(pop, new long[]{1}, null);
+
+        double lowestPromoted = Double.POSITIVE_INFINITY;
+        for(JTetrisBrainIndividual ind : pop) if(!ind.isEstimated()) lowestPromoted = Math.min(lowestPromoted, ind.getScore());
+        double[] others = Arrays.stream(pop).filter(JTetrisBrainIndividual::isEstimated).mapToDouble(JTetrisBrainIndividual::getScore).sorted().toArray();
+        assertEquals(3, others.length);
+        for(int k = 1; k < others.length; k++) assertTrue(others[k - 1] < others[k]);
+        assertTrue(others[others.length - 1] < lowestPromoted);
+    }
+
+    @Test
+    void testSpearmanHandlesTies(){
+        assertEquals(1, JTetrisBrainMultiFidelity.spearman(Arrays.asList(new double[]{1, 10}, new double[]{2, 20}, new double[]{3, 30})), 1e-9);
+        assertEquals(-1, JTetrisBrainMultiFidelity.spearman(Arrays.asList(new double[]{1, 3}, new double[]{2, 2}, new double[]{3, 1})), 1e-9);
+        assertEquals(Math.sqrt(0.75), JTetrisBrainMultiFidelity.spearman(Arrays.asList(new double[]{1, 1}, new double[]{2, 1}, new double[]{3, 2})), 1e-9);
+    }
+}
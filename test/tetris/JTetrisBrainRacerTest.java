@@ -0,0 +1,49 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainRacerTest {
+    private static final double[] WEIGHTS = new double[]{-3.079854632964414, -7.449884706642696, -16.62165886851931, -2.1674633428837424, -0.5474455153196136, -1.1402069503570305, -4.7857142119386635, -0.36342677092258685, -7.136217177275804};
+
+    @Test
+    void testSameSeedSameGame(){
+        HeadlessTetris first = new HeadlessTetris(WEIGHTS, 42, 0.3);
+        HeadlessTetris second = new HeadlessTetris(WEIGHTS, 42, 0.3);
+        first.startGame();
+        second.startGame();
+
+        GameResult a = first.playToEnd();
+        GameResult b = second.playToEnd();
+
+        assertEquals(a.getRowsCleared(), b.getRowsCleared());
+        assertEquals(a.getPiecesPlaced(), b.getPiecesPlaced());
+        assertTrue(first.getBoard().equals(second.getBoard()));
+    }
+
+    @Test
+    void testRacingKeepsSelection(){
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[12];
+        for(int i = 0; i < pop.length; i++) pop[i] = new JTetrisBrainIndividual();
+        pop[0] = new JTetrisBrainIndividual(WEIGHTS.clone());
+
+        JTetrisBrainRacer racer = new JTetrisBrainRacer(2, 4, 10, 0.3, true);
+        JTetrisBrainRacer.Report report = racer.race(pop, new long[]{7, 11});
+
+        assertEquals(0, report.survivorChanges);
+        assertEquals(0, report.parentChanges);
+        assertTrue(report.fullPieces >= report.getPiecesSimulated());
+    }
+
+    @Test
+    void testChangedMembers(){
+        double[] a = new double[]{5, 4, 3, 2, 1};
+        double[] b = new double[]{5, 1, 3, 2, 4};
+
+        assertEquals(0, JTetrisBrainRacer.changedMembers(a, b, 1));
+        assertEquals(1, JTetrisBrainRacer.changedMembers(a, b, 2));
+        assertEquals(0, JTetrisBrainRacer.changedMembers(a, b, 5));
+    }
+}
@@ -0,0 +1,27 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainSchedulerTest {
+    private static final double[] WEIGHTS = new double[]{-3.079854632964414, -7.449884706642696, -16.62165886851931, -2.1674633428837424, -0.5474455153196136, -1.1402069503570305, -4.7857142119386635, -0.36342677092258685, -7.136217177275804};
+
+    @Test
+    void testChunkedScoresMatchWholeGames() throws InterruptedException {
+        JTetrisBrainIndividual[] whole = new JTetrisBrainIndividual[6];
+        JTetrisBrainIndividual[] chunked = new JTetrisBrainIndividual[6];
+        for(int i = 0; i < whole.length; i++){
+            whole[i] = new JTetrisBrainIndividual();
+            chunked[i] = new JTetrisBrainIndividual(whole[i].getWeights().clone());
+            chunked[i].setScore(i);
+        }
+        long[] seeds = new long[]{3, 4};
+
+        new JTetrisBrainScheduler(1, 0, false, 0.3).evaluate(whole, seeds, null);
+        JTetrisBrainScheduler.Report report = new JTetrisBrainScheduler(3, 5, true, 0.3).evaluate(chunked, seeds, null);
+
+        assertEquals(12, report.getGames());
+        for(int i = 0; i < whole.length; i++) assertEquals(whole[i].getScore(), chunked[i].getScore(), 1e-9);
+    }
+}
@@ -0,0 +1,64 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainSequentialTrialsTest {
+    private static final double[] WEIGHTS = new double[]{-3.079854632964414, -7.449884706642696, -16.62165886851931, -2.1674633428837424, -0.5474455153196136, -1.1402069503570305, -4.7857142119386635, -0.36342677092258685, -7.136217177275804};
+    private static final long[] SEEDS = new long[]{3, 5, 7, 11, 13, 17, 19, 23, 29, 31};
+
+    // The good weights, followed by copies with one weight's sign flipped
+    private static JTetrisBrainIndividual[] population() {
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[8];
+        pop[0] = new JTetrisBrainIndividual(WEIGHTS.clone());
+        for (int i = 1; i < pop.length; i++) {
+            double[] weights = WEIGHTS.clone();
+            weights[i - 1] = -weights[i - 1];
+            pop[i] = new JTetrisBrainIndividual(weights);
+        }
+        return pop;
+    }
+
+    @Test
+    void testSettledIndividualsStopEarly(){
+        JTetrisBrainIndividual[] pop = population();
+        JTetrisBrainSequentialTrials sequential = new JTetrisBrainSequentialTrials(1, 2, 2, 10, 1000, 2.5, 0.3);
+        JTetrisBrainSequentialTrials.Report report = sequential.evaluate(pop, SEEDS);
+
+        assertEquals(2, report.minTrials);
+        assertTrue(report.getGames() < pop.length * 10, report.toString());
+        assertEquals(0, report.unplayed);
+        assertEquals(0, report.unsettled);
+    }
+
+    @Test
+    void testBudgetIsNeverOverrun(){
+        for (int budget : new int[]{5, 8, 12}) {
+            JTetrisBrainIndividual[] pop = population();
+            for (JTetrisBrainIndividual individual : pop) {
+                individual.setScore(-1);
+                individual.setEstimated(true);
+            }
+            JTetrisBrainSequentialTrials sequential = new JTetrisBrainSequentialTrials(1, 2, 2, 10, budget, 2.5, 0.3);
+            JTetrisBrainSequentialTrials.Report report = sequential.evaluate(pop, SEEDS);
+
+            assertTrue(report.getGames() <= budget, report.toString());
+            assertEquals(Math.max(0, pop.length - budget), report.unplayed);
+            // Individuals the budget did not reach are estimated and rank below everybody who played
+            double lowestPlayed = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < Math.min(budget, pop.length); i++) {
+                assertTrue(pop[i].getScore() >= 0);
+                assertFalse(pop[i].isEstimated());
+                lowestPlayed = Math.min(lowestPlayed, pop[i].getScore());
+            }
+            for (int i = budget; i < pop.length; i++) {
+                assertTrue(pop[i].isEstimated());
+                assertTrue(pop[i].getScore() < lowestPlayed);
+                for (int j = budget; j < i; j++) assertTrue(pop[i].getScore() != pop[j].getScore());
+            }
+        }
+    }
+}
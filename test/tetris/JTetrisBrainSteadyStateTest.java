@@ -0,0 +1,24 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainSteadyStateTest {
+    @Test
+    void testChildrenOnlyReplaceWorseMembers() throws InterruptedException {
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[6];
+        for(int i = 0; i < pop.length; i++) pop[i] = new JTetrisBrainIndividual();
+
+        JTetrisBrainSteadyState steadyState = new JTetrisBrainSteadyState(pop, 2, 2, 1, 0.3);
+        JTetrisBrainSteadyState.Report report = steadyState.run(20, null, 60000);
+        JTetrisBrainIndividual[] first = steadyState.getPopulation();
+
+        assertEquals(20, report.getEvaluations());
+        assertTrue(report.getInserted() >= pop.length);
+        assertEquals(pop.length, first.length);
+        for(int i = 1; i < first.length; i++) assertTrue(first[i - 1].getScore() >= first[i].getScore());
+        assertTrue(first[first.length - 1].getScore() > Double.NEGATIVE_INFINITY);
+    }
+}
@@ -0,0 +1,91 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainSurrogateTest {
+    @Test
+    void testLearnsAQuadraticScore(){
+        JTetrisBrainSurrogate surrogate = new JTetrisBrainSurrogate(500, 50, 2, 0, 4, 0.3, 1);
+        Random r = new Random(1);
+        for(int i = 0; i < 300; i++){
+            double[] w = new double[9];
+            for(int k = 0; k < w.length; k++) w[k] = -10 * r.nextDouble();
+            surrogate.observe(w, Math.expm1(5 - 0.1 * (w[0] + 5) * (w[0] + 5) + 0.2 * w[1]));
+        }
+
+        double[] good = new double[9], bad = new double[9];
+        Arrays.fill(good, -5);
+        Arrays.fill(bad, -5);
+        bad[0] = -9;
+        bad[1] = -8;
+        assertEquals(5 - 1, Math.log1p(surrogate.predict(good)), 0.15);
+        assertEquals(5 - 1.6 - 1.6, Math.log1p(surrogate.predict(bad)), 0.15);
+    }
+
+    private JTetrisBrainSurrogate trained(double auditRate){
+        JTetrisBrainSurrogate surrogate = new JTetrisBrainSurrogate(500, 20, 1, auditRate, 2, 0.3, 3);
+        Random r = new Random(2);
+        for(int i = 0; i < 100; i++){
+            double[] w = new double[9];
+            for(int k = 0; k < w.length; k++) w[k] = -r.nextDouble();
+            surrogate.observe(w, Math.expm1(-20 * w[0]));
+        }
+        return surrogate;
+    }
+
+    private JTetrisBrainIndividual[] twoGoodFourBad(){
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[6];
+        for(int i = 0; i < pop.length; i++){
+            double[] w = new double[9];
+            w[0] = i < 2 ? -0.9 : -0.05 - 0.01 * i;
+            pop[i] = new JTetrisBrainIndividual(w);
+        }
+        return pop;
+    }
+
+    @Test
+    void testSkipsIndividualsPredictedFarBelowTheCutoff(){
+        JTetrisBrainSurrogate surrogate = trained(0);
+        JTetrisBrainIndividual[] pop = twoGoodFourBad();
+        JTetrisBrainSurrogate.Report report = surrogate.evaluate(pop, new long[]{1, 2}, null);
+
+        assertEquals(4, report.getSkipped());
+        assertEquals(8, report.getGamesSaved());
+        assertEquals(4, report.getGames());
+        assertEquals(102, surrogate.getHistorySize());
+        double lowestPlayed = Math.min(pop[0].getScore(), pop[1].getScore());
+        for(int i = 2; i < pop.length; i++){
+            assertTrue(pop[i].isEstimated());
+            assertTrue(pop[i].getScore() < lowestPlayed);
+            for(int j = 2; j < i; j++) assertTrue(pop[i].getScore() != pop[j].getScore());
+        }
+    }
+
+    @Test
+    void testAuditedIndividualsKeepTheirMeasuredScores(){
+        JTetrisBrainSurrogate surrogate = trained(1);
+        JTetrisBrainIndividual[] pop = twoGoodFourBad();
+        long[] seeds = new long[]{1, 2};
+        JTetrisBrainSurrogate.Report report = surrogate.evaluate(pop, seeds, null);
+
+        assertEquals(4, report.getSkipped());
+        assertEquals(0, report.getGamesSaved());
+        for(JTetrisBrainIndividual ind : pop){
+            TrialStats stats = new TrialStats();
+            for(long seed : seeds){
+                HeadlessTetris game = new HeadlessTetris(ind.getWeights(), seed, 0.3);
+                game.startGame();
+                stats.add(game.playToEnd());
+            }
+            assertFalse(ind.isEstimated());
+            assertEquals(stats.getMean(), ind.getScore(), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainSweepTest {
+    @Test
+    void testRunsEveryRecipeOnTheSharedPool() throws InterruptedException, IOException {
+        JTetrisBrainRecipe small = new JTetrisBrainRecipe(0.05, 0, 0.2, 0.5, 1, 6, 0.3);
+        List<JTetrisBrainRecipe> recipes = List.of(small, small.with("trials", 2), small.with("mutation", 0.2));
+        JTetrisBrainSweep sweep = new JTetrisBrainSweep(2, 4, 2, 200, new long[]{-1, -2}, 0.3);
+        List<JTetrisBrainSweep.Result> results = sweep.run(recipes, 7);
+
+        assertEquals(3, results.size());
+        for(JTetrisBrainSweep.Result result : results){
+            assertTrue(result.getGenerations() == 4 || (result.isStopped() && result.getGenerations() == 2));
+            assertTrue(result.getCpuNanos() > 0);
+            assertTrue(result.getBestWeights() != null);
+        }
+        assertEquals(2, results.get(1).getRecipe().getTrials());
+
+        File csv = File.createTempFile("sweep", ".csv");
+        csv.deleteOnExit();
+        JTetrisBrainSweep.writeCsv(csv.getPath(), results);
+        assertEquals(4, Files.readAllLines(csv.toPath()).size());
+        assertEquals(4, JTetrisBrainSweep.table(results).split("\n").length);
+    }
+
+    private static JTetrisBrainSweep.Result training(double... curve){
+        JTetrisBrainSweep.Result result = new JTetrisBrainSweep.Result(JTetrisBrainRecipe.defaults());
+        for(int k = 0; k < curve.length; k += 2){
+            result.curve.add(new double[]{curve[k], curve[k + 1]});
+            result.best = Math.max(result.best, curve[k + 1]);
+        }
+        return result;
+    }
+
+    @Test
+    void testStopsTrainingsBelowTheMedianOfTheirPeersAtTheSameCpu(){
+        // Seconds of CPU and validation score pairs
+        JTetrisBrainSweep.Result slow = training(1, 10, 3, 30);
+        JTetrisBrainSweep.Result fast = training(1, 20, 2, 25);
+        JTetrisBrainSweep.Result losing = training(1.5, 14);
+        JTetrisBrainSweep.Result level = training(1.5, 16);
+
+        // At 1.5s the others had 10 and 20, whatever they reached later
+        assertTrue(JTetrisBrainSweep.isLosing(losing, List.of(slow, fast, losing), 1.5));
+        assertTrue(JTetrisBrainSweep.isLosing(losing, List.of(losing, fast, slow), 1.5));
+        assertFalse(JTetrisBrainSweep.isLosing(level, List.of(level, slow, fast), 1.5));
+
+        // A training only just validated is not compared with scores that took the others more CPU
+        JTetrisBrainSweep.Result cheap = training(0.5, 5);
+        assertFalse(JTetrisBrainSweep.isLosing(cheap, List.of(slow, fast, cheap), 0.5));
+        assertTrue(JTetrisBrainSweep.isLosing(cheap, List.of(slow, fast, cheap), 2.5));
+    }
+
+    @Test
+    void testRejectsAnOptionWithoutAValue(){
+        assertThrows(IllegalArgumentException.class, () -> JTetrisBrainSweep.main(new String[]{"--generations", "2", "--out"}));
+    }
+}
@@ -0,0 +1,118 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainTournamentTest {
+    @Test
+    void testHistogramPercentiles() {
+        for (int b = 1; b < 1800; b++) {
+            assertEquals(b, LogHistogram.bucket(LogHistogram.lowerBound(b)));
+            assertEquals(b - 1, LogHistogram.bucket(LogHistogram.lowerBound(b) - 1));
+        }
+
+        LogHistogram histogram = new LogHistogram();
+        Random r = new Random(5);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long)Math.exp(12 * r.nextDouble());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double p : new double[]{1, 10, 50, 90, 99}) {
+            long exact = values[(int)Math.ceil(p / 100 * values.length) - 1];
+            assertEquals(exact, histogram.getPercentile(p), Math.max(1, 0.03 * exact));
+        }
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getPercentile(100));
+    }
+
+    @Test
+    void testHistogramRecordsFromManyThreads() throws InterruptedException {
+        LogHistogram histogram = new LogHistogram();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int first = t;
+            threads[t] = new Thread(() -> {
+                for (int v = first; v < 80000; v += 8) histogram.record(v);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(80000, histogram.getCount());
+        assertEquals(79999L * 80000 / 2, histogram.getSum());
+        assertEquals(0, histogram.getMin());
+        assertEquals(79999, histogram.getMax());
+        LogHistogram copy = histogram.copy();
+        assertEquals(0, copy.getMin());
+        assertEquals(79999, copy.getMax());
+    }
+
+    @Test
+    void testBagDealsEveryPieceOncePerSeven() {
+        JTetrisBrainTournament.BagTetris tetris = new JTetrisBrainTournament.BagTetris(
+                new TetrisBrain().getPopulation()[0].getWeights(), 3, 0.5);
+        tetris.random = new Random(3);
+        for (int bag = 0; bag < 20; bag++) {
+            boolean[] seen = new boolean[HeadlessTetris.PIECES.length];
+            for (int i = 0; i < seen.length; i++) {
+                Piece piece = tetris.pickNextPiece();
+                for (int k = 0; k < seen.length; k++) {
+                    if (HeadlessTetris.PIECES[k] == piece) {
+                        assertTrue(!seen[k]);
+                        seen[k] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testEveryContestantPlaysTheSameSeeds() throws IOException, InterruptedException {
+        JTetrisBrainTournament tournament = new JTetrisBrainTournament(3, 200, 0.75, 7);
+        tournament.add("default", new TetrisBrain().getPopulation()[0].getWeights());
+        tournament.add("flat", new double[]{1, 1, 1, 1, 1, 1, 1, 1, 1});
+
+        StringWriter games = new StringWriter();
+        JTetrisBrainTournament.Standing[][] standings = tournament.run(2, new BufferedWriter(games));
+        String[] lines = games.toString().split("\n");
+        assertEquals(1 + 3 * 2 * 2, lines.length);
+        for (JTetrisBrainTournament.Standing[] contestant : standings) {
+            for (JTetrisBrainTournament.Standing standing : contestant) assertEquals(3, standing.getRows().getCount());
+        }
+
+        // The default brain survives the 200 pieces, so none of its games count towards the pieces before topping out,
+        // and the same game seeds are dealt to both contestants
+        assertEquals(3, standings[0][0].getCapped());
+        assertEquals(3, standings[0][1].getCapped());
+        assertEquals(0, standings[0][0].getPieces().getCount());
+        for (JTetrisBrainTournament.Standing standing : standings[1]) {
+            assertEquals(3, standing.getCapped() + standing.getPieces().getCount());
+        }
+        long seeds = Arrays.stream(lines).skip(1).map(line -> line.split(",")[3]).distinct().count();
+        assertEquals(3, seeds);
+
+        File summary = File.createTempFile("tournament", ".csv");
+        summary.deleteOnExit();
+        JTetrisBrainTournament.writeSummary(summary.getPath(), standings);
+        assertEquals(1 + 2 * 2, Files.readAllLines(summary.toPath()).size());
+        assertEquals(1 + 2 * 2, JTetrisBrainTournament.table(standings).split("\n").length);
+
+        // A second run plays every game again
+        StringWriter again = new StringWriter();
+        standings = tournament.run(2, new BufferedWriter(again));
+        assertEquals(lines.length, again.toString().split("\n").length);
+        assertEquals(3, standings[1][0].getRows().getCount());
+    }
+}
@@ -0,0 +1,73 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class JTetrisBrainTraceReuseTest {
+    double[] parent = new double[]{-3.079854632964414, -7.449884706642696, -16.62165886851931, -2.1674633428837424,
+        -0.5474455153196136, -1.1402069503570305, -4.7857142119386635, -0.36342677092258685, -7.136217177275804};
+
+    @Test
+    void testReusedGamesMatchFullGames(){
+        double[][] weights = new double[][]{parent, parent.clone(), parent.clone(), parent.clone()};
+        weights[1][3] += 0.01;
+        weights[2][6] -= 0.5;
+        weights[3][0] = -10;
+
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[weights.length];
+        for(int i = 0; i < pop.length; i++) pop[i] = new JTetrisBrainIndividual(weights[i]);
+        long[] seeds = new long[]{1, 2};
+        JTetrisBrainTraceReuse.Report report = new JTetrisBrainTraceReuse(0.4, 1000000).evaluate(pop, seeds, null);
+
+        for(int i = 0; i < pop.length; i++){
+            double rows = 0;
+            for(long seed : seeds){
+                HeadlessTetris game = new HeadlessTetris(weights[i], seed, 0.4);
+                game.startGame();
+                rows += game.playToEnd().getRowsCleared();
+            }
+            assertEquals(rows / seeds.length, pop[i].getScore());
+        }
+        assertTrue(report.getReused() > 0);
+        assertTrue(report.getReused() < report.getDecisions());
+    }
+
+    @Test
+    void testReplayingTheSameWeightsSkipsTheSearch(){
+        JTetrisBrainTraceReuse reuse = new JTetrisBrainTraceReuse(0.4, 1000000);
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[]{new JTetrisBrainIndividual(parent)};
+        reuse.evaluate(pop, new long[]{3}, null);
+        double score = pop[0].getScore();
+
+        JTetrisBrainTraceReuse.Report report = reuse.evaluate(pop, new long[]{3}, null);
+        assertEquals(score, pop[0].getScore());
+        assertTrue(report.getReusedFraction() > 0.9);
+    }
+
+    @Test
+    void testTracesOfDroppedSeedsAreForgotten(){
+        JTetrisBrainTraceReuse reuse = new JTetrisBrainTraceReuse(0.4, 1000000);
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[]{new JTetrisBrainIndividual(parent)};
+        reuse.evaluate(pop, new long[]{4, 5}, null);
+        assertEquals(2, reuse.getSeedCount());
+
+        reuse.retainSeeds(new long[]{5, 6});
+        assertEquals(1, reuse.getSeedCount());
+        assertEquals(1, reuse.getTraceCount());
+        JTetrisBrainTraceReuse.Report report = reuse.evaluate(pop, new long[]{5}, null);
+        assertTrue(report.getReusedFraction() > 0.9);
+        assertEquals(report.getDecisions(), report.storedDecisions);
+    }
+
+    @Test
+    void testEvictedSeedsLeaveNoEmptyList(){
+        // A budget of one decision keeps only the newest trace
+        JTetrisBrainTraceReuse reuse = new JTetrisBrainTraceReuse(0.4, 1);
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[]{new JTetrisBrainIndividual(parent)};
+        reuse.evaluate(pop, new long[]{7, 8, 9}, null);
+        assertEquals(1, reuse.getTraceCount());
+        assertEquals(1, reuse.getSeedCount());
+    }
+}
@@ -0,0 +1,47 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricsTest {
+    @Test
+    void testHistogramSinceCopy() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < 100; i++) histogram.record(10);
+        LogHistogram earlier = histogram.copy();
+        for (int i = 0; i < 50; i++) histogram.record(5000);
+
+        LogHistogram interval = histogram.since(earlier);
+        assertEquals(50, interval.getCount());
+        assertEquals(5000, interval.getMean(), 1e-9);
+        assertEquals(5000, interval.getPercentile(50), 0.03 * 5000);
+        assertTrue(interval.getMin() > 10);
+        assertEquals(150, histogram.getCount());
+    }
+
+    @Test
+    void testSnapshotsReportTheInterval() throws IOException {
+        assertSame(Metrics.counter("test_events"), Metrics.counter("test_events"));
+        File file = File.createTempFile("metrics", ".jsonl");
+        file.deleteOnExit();
+
+        Metrics.Exporter exporter = new Metrics.Exporter(file.getPath(), 60000);
+        exporter.snapshot();
+        Metrics.counter("test_events").add(7);
+        Metrics.histogram("test_nanos").record(1000);
+        String line = exporter.snapshot();
+        assertTrue(line.startsWith("{") && line.endsWith("}"));
+        assertTrue(line.contains("\"test_events\":7"), line);
+        assertTrue(line.contains("\"test_nanos\":{\"count\":1,"), line);
+        assertTrue(line.contains("\"pieces_per_s\":"), line);
+
+        // The next snapshot only has what was recorded after this one
+        assertTrue(exporter.snapshot().contains("\"test_nanos\":{\"count\":0,"));
+    }
+}
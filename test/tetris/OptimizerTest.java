@@ -0,0 +1,73 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class OptimizerTest {
+    private static final double[] TARGET = new double[]{-3, -7, -16, -2, -0.5, -1, -4.5, -0.3, -7};
+
+    // Scores candidates by how close they are to a known point, so the search can be checked without playing
+    private double run(Optimizer optimizer, int generations){
+        for(int g = 0; g < generations; g++){
+            JTetrisBrainIndividual[] batch = optimizer.ask();
+            for(JTetrisBrainIndividual candidate : batch) candidate.setScore(-distance(candidate.getWeights()));
+            optimizer.tell(batch);
+        }
+        return distance(optimizer.getBest().getWeights());
+    }
+
+    private double distance(double[] weights){
+        double sum = 0;
+        for(int i = 0; i < TARGET.length; i++) sum += (weights[i] - TARGET[i]) * (weights[i] - TARGET[i]);
+        return Math.sqrt(sum);
+    }
+
+    @Test
+    void testCmaEsConverges(){
+        CmaEsOptimizer cma = new CmaEsOptimizer(new double[JTetrisBrainTrainer.WEIGHT_COUNT], 5);
+        assertEquals(10, cma.ask().length);
+        assertTrue(run(cma, 300) < 1e-3);
+    }
+
+    @Test
+    void testCrossEntropyConverges(){
+        assertTrue(run(new CrossEntropyOptimizer(50, 0.2, 100, 1, 0.05), 200) < 0.1);
+    }
+
+    @Test
+    void testGeneticKeepsBest(){
+        GeneticOptimizer ga = new GeneticOptimizer(20);
+        double first = run(ga, 1);
+        assertTrue(run(ga, 30) <= first);
+    }
+
+    @Test
+    void testCmaEsTakesCandidatesInAnyOrder(){
+        CmaEsOptimizer cma = new CmaEsOptimizer(new double[JTetrisBrainTrainer.WEIGHT_COUNT], 5);
+        for(int g = 0; g < 300; g++){
+            JTetrisBrainIndividual[] batch = cma.ask();
+            JTetrisBrainIndividual[] reversed = new JTetrisBrainIndividual[batch.length];
+            for(int k = 0; k < batch.length; k++){
+                reversed[batch.length - 1 - k] = batch[k];
+                batch[k].setScore(-distance(batch[k].getWeights()));
+            }
+            cma.tell(reversed);
+        }
+        assertTrue(distance(cma.getBest().getWeights()) < 1e-3);
+    }
+
+    @Test
+    void testSearchesStartFromGivenPopulation(){
+        JTetrisBrainIndividual[] pop = new JTetrisBrainIndividual[10];
+        for(int i = 0; i < pop.length; i++) pop[i] = new JTetrisBrainIndividual(TARGET.clone());
+        assertSame(pop, new GeneticOptimizer(pop).ask());
+
+        CrossEntropyOptimizer ce = new CrossEntropyOptimizer(TARGET, 10, 0.2, 1e-6, 0, 0);
+        assertArrayEquals(TARGET, ce.getBest().getWeights());
+        for(JTetrisBrainIndividual candidate : ce.ask()) assertTrue(distance(candidate.getWeights()) < 0.1);
+    }
+}
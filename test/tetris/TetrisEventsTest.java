@@ -0,0 +1,53 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TetrisEventsTest {
+    @Test
+    void testEventsAreOffUnlessEnabled() {
+        assertFalse(new TetrisEvents.Decision().shouldCommit());
+        assertFalse(new TetrisEvents.Game().shouldCommit());
+    }
+
+    @Test
+    void testGameIsRecorded() throws IOException {
+        Path file = Files.createTempFile("tetris", ".jfr");
+        HeadlessTetris tetris = new HeadlessTetris(new double[]{1, 1, 1, 1, 1, 1, 1, 1, 1}, 4, 0.5);
+        try (Recording recording = new Recording()) {
+            recording.enable("tetris.Game");
+            recording.enable("tetris.Decision");
+            recording.enable("tetris.Placement");
+            recording.start();
+            tetris.startGame();
+            tetris.playToEnd();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        long games = events.stream().filter(e -> e.getEventType().getName().equals("tetris.Game")).count();
+        long decisions = events.stream().filter(e -> e.getEventType().getName().equals("tetris.Decision")).count();
+        long placements = events.stream().filter(e -> e.getEventType().getName().equals("tetris.Placement")).count();
+        assertEquals(1, games);
+        assertEquals(tetris.getPiecesPlaced(), placements);
+        assertTrue(decisions >= placements);
+
+        RecordedEvent game = events.stream().filter(e -> e.getEventType().getName().equals("tetris.Game")).findFirst().get();
+        assertEquals(4, game.getLong("seed"));
+        assertEquals(tetris.getRowsCleared(), game.getInt("rowsCleared"));
+    }
+}
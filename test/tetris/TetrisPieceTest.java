@@ -208,4 +208,24 @@ public class TetrisPieceTest {
 
         assertTrue(first.equals(second));
     }
+
+    @Test
+    void testSharedSpawnPieces(){
+        for(PieceType type : PieceType.values()){
+            Piece shared = TetrisPiece.getPiece(type);
+            assertTrue(shared == TetrisPiece.getPiece(type));
+            assertTrue(shared.equals(new TetrisPiece(type)));
+            assertEquals(0, shared.getRotationIndex());
+            assertTrue(shared == shared.clockwisePiece().clockwisePiece().clockwisePiece().clockwisePiece());
+        }
+    }
+
+    @Test
+    void testWallKicksByType(){
+        assertTrue(TetrisPiece.getClockwiseWallKicks(PieceType.STICK) == Piece.I_CLOCKWISE_WALL_KICKS);
+        assertTrue(TetrisPiece.getCounterclockwiseWallKicks(PieceType.SQUARE) == TetrisPiece.SQUARE_WALL_KICKS);
+        assertTrue(TetrisPiece.getCounterclockwiseWallKicks(PieceType.LEFT_DOG) == Piece.NORMAL_COUNTERCLOCKWISE_WALL_KICKS);
+        assertEquals(0xFF0000, PieceType.LEFT_DOG.getRGB());
+        assertEquals(PieceType.T.getRGB(), PieceType.T.getColor().getRGB() & 0xFFFFFF);
+    }
 }
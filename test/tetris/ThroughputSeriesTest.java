@@ -0,0 +1,56 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ThroughputSeriesTest {
+    @Test
+    void testSeriesIsWrittenAndReadBack() throws IOException {
+        File file = File.createTempFile("throughput", ".txt");
+        file.deleteOnExit();
+        double[] weights = new TetrisBrain().getPopulation()[0].getWeights();
+        List<ThroughputSeries.Sample> samples;
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            samples = ThroughputSeries.record(weights, 2, 0.75, 500, 100, writer);
+        }
+
+        List<ThroughputSeries.Sample> read = ThroughputSeries.read(file.getPath());
+        assertEquals(samples.size(), read.size());
+        assertEquals(500, read.get(read.size() - 1).getPieces());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(100 * (i + 1), read.get(i).getPieces());
+            assertTrue(read.get(i).getPiecesPerSecond() > 0);
+            assertTrue(read.get(i).getDecisionMicros() > 0);
+            assertTrue(read.get(i).getMeanHeight() > 0);
+        }
+    }
+
+    @Test
+    void testSlowdownIsBlamedOnHeight() {
+        List<ThroughputSeries.Sample> samples = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            double height = i % 10 == 5 ? 12 : 4 + 0.1 * (i % 3);
+            double pps = 10000 - 500 * (height - 4) + 10 * (i % 4);
+            samples.add(new ThroughputSeries.Sample(1000 * i, i, pps, 20, 98000, 8, 3, 90, 200, height, 0, 0.95));
+        }
+        samples.set(19, new ThroughputSeries.Sample(20000, 20, 6000, 20, 98000, 8, 3, 90, 200, 4, 0, 0.5));
+
+        ThroughputSeries.Analysis analysis = ThroughputSeries.analyze(samples, 0.2);
+        assertTrue(analysis.getCorrelations()[0] < -0.8, "" + analysis.getCorrelations()[0]);
+        assertEquals(0, analysis.getTrendPerTenThousand(), 0.02);
+        assertEquals(5, analysis.getSlowWindows().size());
+        for (int i = 0; i < analysis.getSlowWindows().size(); i++) {
+            if (analysis.getSlowWindows().get(i).getPieces() == 20000) assertEquals("off CPU", analysis.getCauses().get(i));
+            else assertEquals("mean height", analysis.getCauses().get(i));
+        }
+    }
+}